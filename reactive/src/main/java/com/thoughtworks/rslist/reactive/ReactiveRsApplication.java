@@ -0,0 +1,14 @@
+package com.thoughtworks.rslist.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+public class ReactiveRsApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveRsApplication.class, args);
+    }
+
+}
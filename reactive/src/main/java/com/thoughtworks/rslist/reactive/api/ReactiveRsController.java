@@ -0,0 +1,74 @@
+package com.thoughtworks.rslist.reactive.api;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.exception.BuyFailedException;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.reactive.service.ReactiveRsService;
+import com.thoughtworks.rslist.service.RsEventRanking;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+public class ReactiveRsController {
+    @Autowired
+    ReactiveRsService rsService;
+
+    @GetMapping("/rs/list")
+    public Mono<ResponseEntity<List<RsEvent>>> getRsEventListBetween(
+            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end,
+            @RequestParam(required = false) String mode) {
+        return rsService.getRsEventList(RsEventRanking.order(mode))
+                .map(rsEvents -> start == null || end == null
+                        ? ResponseEntity.ok(rsEvents)
+                        : ResponseEntity.ok(rsEvents.subList(start - 1, end)));
+    }
+
+    @GetMapping("/rs/{index}")
+    public Mono<ResponseEntity<RsEvent>> getRsEvent(@PathVariable int index) {
+        return rsService.getRsEvents().collectList()
+                .flatMap(rsEvents -> index < 1 || index > rsEvents.size()
+                        ? Mono.error(new RequestNotValidException("invalid index"))
+                        : Mono.just(ResponseEntity.ok(rsEvents.get(index - 1))));
+    }
+
+    @PostMapping("/rs/event")
+    public Mono<ResponseEntity<Void>> addRsEvent(@RequestBody @Valid RsEvent rsEvent) {
+        return rsService.addRsEvent(rsEvent)
+                .map(added -> added
+                        ? ResponseEntity.created(null).<Void>build()
+                        : ResponseEntity.badRequest().<Void>build());
+    }
+
+    @PostMapping("/rs/vote/{id}")
+    public Mono<ResponseEntity<Void>> vote(@PathVariable int id, @RequestBody Vote vote) {
+        return rsService.vote(vote, id).thenReturn(ResponseEntity.ok().build());
+    }
+
+    @PostMapping("/rs/buy/{id}")
+    public Mono<ResponseEntity<Void>> buy(@PathVariable int id, @RequestBody Trade trade) {
+        return rsService.buy(trade, id)
+                .thenReturn(ResponseEntity.ok().<Void>build())
+                .onErrorReturn(BuyFailedException.class, ResponseEntity.badRequest().build());
+    }
+
+    @ExceptionHandler(RequestNotValidException.class)
+    public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+        Error error = new Error();
+        error.setError(e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+}
@@ -0,0 +1,277 @@
+package com.thoughtworks.rslist.reactive.repository;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeRecordDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import io.r2dbc.spi.Row;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.data.r2dbc.mapping.SettableValue;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+public class ReactiveRsRepository {
+    private static final String RS_EVENT_COLUMNS =
+            "e.id, e.event_name, e.keyword, e.vote_num, e.hot_score, e.unique_voters, e.user_id";
+
+    final DatabaseClient databaseClient;
+
+    public ReactiveRsRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<RsEventDto> findAllRsEvents() {
+        return databaseClient.execute("select " + RS_EVENT_COLUMNS + " from rs_event e order by e.id")
+                .map((row, metadata) -> toRsEventDto(row))
+                .all();
+    }
+
+    public Mono<RsEventDto> findRsEventById(int id) {
+        return databaseClient.execute("select " + RS_EVENT_COLUMNS + " from rs_event e where e.id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toRsEventDto(row))
+                .one();
+    }
+
+    // the event's totals are read and rewritten by a vote, so concurrent votes on it take turns
+    public Mono<RsEventDto> findRsEventForUpdate(int id) {
+        return databaseClient.execute("select " + RS_EVENT_COLUMNS + " from rs_event e where e.id = :id for update")
+                .bind("id", id)
+                .map((row, metadata) -> toRsEventDto(row))
+                .one();
+    }
+
+    /**
+     * @return the generated id
+     */
+    public Mono<Integer> saveRsEvent(RsEventDto rsEventDto) {
+        return databaseClient.insert().into("rs_event")
+                .value("event_name", rsEventDto.getEventName())
+                .value("keyword", rsEventDto.getKeyword())
+                .value("vote_num", rsEventDto.getVoteNum())
+                .value("unique_voters", rsEventDto.getUniqueVoters())
+                .value("user_id", rsEventDto.getUser().getId())
+                .map((row, metadata) -> row.get("id", Integer.class))
+                .one();
+    }
+
+    public Mono<Integer> updateRsEventVotes(RsEventDto rsEventDto) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.execute("update rs_event "
+                + "set vote_num = :voteNum, hot_score = :hotScore, unique_voters = :uniqueVoters where id = :id")
+                .bind("voteNum", rsEventDto.getVoteNum())
+                .bind("uniqueVoters", rsEventDto.getUniqueVoters())
+                .bind("id", rsEventDto.getId());
+        spec = rsEventDto.getHotScore() == null
+                ? spec.bindNull("hotScore", Double.class)
+                : spec.bind("hotScore", rsEventDto.getHotScore());
+        return spec.fetch().rowsUpdated();
+    }
+
+    public Mono<Void> deleteRsEvent(int id) {
+        return databaseClient.execute("delete from trade where rs_event_id = :id")
+                .bind("id", id)
+                .then()
+                .then(databaseClient.execute("delete from rs_event where id = :id")
+                        .bind("id", id)
+                        .then())
+                .then(databaseClient.execute("delete from vote_summary where rs_event_id = :id")
+                        .bind("id", id)
+                        .then())
+                .then(databaseClient.execute("delete from vote_archive where rs_event_id = :id")
+                        .bind("id", id)
+                        .then());
+    }
+
+    public Mono<UserDto> findUserById(int id) {
+        return databaseClient.execute("select id, name, gender, age, email, phone, vote_num from user where id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> UserDto.builder()
+                        .id(row.get("id", Integer.class))
+                        .userName(row.get("name", String.class))
+                        .gender(row.get("gender", String.class))
+                        .age(row.get("age", Integer.class))
+                        .email(row.get("email", String.class))
+                        .phone(row.get("phone", String.class))
+                        .voteNum(row.get("vote_num", Integer.class))
+                        .build())
+                .one();
+    }
+
+    // checks and spends the balance in one statement, so concurrent votes can't overspend it
+    public Mono<Integer> spendVotes(int userId, int voteNum) {
+        return databaseClient.execute("update user set vote_num = vote_num - :voteNum "
+                + "where id = :id and vote_num >= :voteNum")
+                .bind("voteNum", voteNum)
+                .bind("id", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * @return the generated id
+     */
+    public Mono<Integer> saveVote(VoteDto voteDto) {
+        return databaseClient.insert().into("vote")
+                .value("local_date_time", voteDto.getLocalDateTime())
+                .value("num", voteDto.getNum())
+                .value("user_id", voteDto.getUser().getId())
+                .value("rs_event_id", voteDto.getRsEvent().getId())
+                .map((row, metadata) -> row.get("id", Integer.class))
+                .one();
+    }
+
+    public Mono<Integer> addVoteSummary(int userId, int rsEventId, int num, LocalDateTime time) {
+        return databaseClient.execute("insert into vote_summary "
+                + "(user_id, rs_event_id, total_num, last_vote_time, revision, updated_at) "
+                + "values (:userId, :rsEventId, :num, :time, 1, :now) on duplicate key update "
+                + "total_num = total_num + values(total_num), "
+                + "last_vote_time = greatest(last_vote_time, values(last_vote_time)), "
+                + "revision = revision + 1, updated_at = values(updated_at)")
+                .bind("userId", userId)
+                .bind("rsEventId", rsEventId)
+                .bind("num", num)
+                .bind("time", time)
+                .bind("now", LocalDateTime.now())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Integer> countVotes(String table, int userId, int rsEventId) {
+        return databaseClient.execute("select count(*) as votes from " + table
+                + " where user_id = :userId and rs_event_id = :rsEventId")
+                .bind("userId", userId)
+                .bind("rsEventId", rsEventId)
+                .map((row, metadata) -> row.get("votes", Long.class).intValue())
+                .one();
+    }
+
+    public Flux<VoteDto> findVotes(String table, int userId, int rsEventId, int offset, int limit) {
+        return databaseClient.execute("select id, local_date_time, num from " + table
+                + " where user_id = :userId and rs_event_id = :rsEventId order by id limit :size offset :offset")
+                .bind("userId", userId)
+                .bind("rsEventId", rsEventId)
+                .bind("size", limit)
+                .bind("offset", offset)
+                .map((row, metadata) -> VoteDto.builder()
+                        .id(row.get("id", Integer.class))
+                        .localDateTime(row.get("local_date_time", LocalDateTime.class))
+                        .num(row.get("num", Integer.class))
+                        .user(UserDto.builder().id(userId).build())
+                        .rsEvent(RsEventDto.builder().id(rsEventId).build())
+                        .build())
+                .all();
+    }
+
+    public Flux<TradeDto> findAllTrades() {
+        return databaseClient.execute("select t.id as trade_id, t.amount, t.rank, " + RS_EVENT_COLUMNS
+                + " from trade t join rs_event e on e.id = t.rs_event_id")
+                .map((row, metadata) -> toTradeDto(row))
+                .all();
+    }
+
+    // bids on a rank take turns from reading its trade until they commit
+    public Mono<TradeDto> findTradeByRankForUpdate(int rank) {
+        return databaseClient.execute("select t.id as trade_id, t.amount, t.rank, " + RS_EVENT_COLUMNS
+                + " from trade t join rs_event e on e.id = t.rs_event_id where t.rank = :rank for update")
+                .bind("rank", rank)
+                .map((row, metadata) -> toTradeDto(row))
+                .one();
+    }
+
+    public Mono<Integer> findRankOfRsEvent(int rsEventId) {
+        return databaseClient.execute("select rank from trade where rs_event_id = :rsEventId")
+                .bind("rsEventId", rsEventId)
+                .map((row, metadata) -> row.get("rank", Integer.class))
+                .one();
+    }
+
+    public Mono<Void> deleteTradeByRank(int rank) {
+        return databaseClient.execute("delete from trade where rank = :rank")
+                .bind("rank", rank)
+                .then();
+    }
+
+    public Mono<Integer> saveTrade(TradeDto tradeDto) {
+        return databaseClient.execute("insert into trade (amount, rank, rs_event_id) values (:amount, :rank, :rsEventId)")
+                .bind("amount", tradeDto.getAmount())
+                .bind("rank", tradeDto.getRank())
+                .bind("rsEventId", tradeDto.getRsEventDto().getId())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Integer> saveTradeRecord(TradeRecordDto tradeRecordDto) {
+        return databaseClient.insert().into("trade_ledger")
+                .value("rank", tradeRecordDto.getRank())
+                .value("amount", tradeRecordDto.getAmount())
+                .value("rs_event_id", tradeRecordDto.getRsEventId())
+                .value("user_id", SettableValue.fromOrEmpty(tradeRecordDto.getUserId(), Integer.class))
+                .value("accepted", tradeRecordDto.isAccepted())
+                .value("replaced_rs_event_id", SettableValue.fromOrEmpty(tradeRecordDto.getReplacedRsEventId(), Integer.class))
+                .value("time", tradeRecordDto.getTime())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Integer> saveChange(ChangeLogDto changeLogDto) {
+        return databaseClient.insert().into("change_log")
+                .value("type", changeLogDto.getType().name())
+                .value("origin", changeLogDto.getOrigin())
+                .value("rs_event_id", SettableValue.fromOrEmpty(changeLogDto.getRsEventId(), Integer.class))
+                .value("user_id", SettableValue.fromOrEmpty(changeLogDto.getUserId(), Integer.class))
+                .value("rank", SettableValue.fromOrEmpty(changeLogDto.getRank(), Integer.class))
+                .value("vote_id", SettableValue.fromOrEmpty(changeLogDto.getVoteId(), Integer.class))
+                .value("created_at", changeLogDto.getCreatedAt())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<byte[]> findVoterSketch(int rsEventId) {
+        return databaseClient.execute("select sketch from voter_sketch where rs_event_id = :rsEventId")
+                .bind("rsEventId", rsEventId)
+                .map((row, metadata) -> row.get("sketch", byte[].class))
+                .one();
+    }
+
+    public Mono<Integer> saveVoterSketch(int rsEventId, byte[] sketch) {
+        return databaseClient.execute("update voter_sketch set sketch = :sketch where rs_event_id = :rsEventId")
+                .bind("sketch", sketch)
+                .bind("rsEventId", rsEventId)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(updated -> updated > 0
+                        ? Mono.just(updated)
+                        : databaseClient.execute("insert into voter_sketch (rs_event_id, sketch) values (:rsEventId, :sketch)")
+                                .bind("rsEventId", rsEventId)
+                                .bind("sketch", sketch)
+                                .fetch()
+                                .rowsUpdated());
+    }
+
+    private static RsEventDto toRsEventDto(Row row) {
+        return RsEventDto.builder()
+                .id(row.get("id", Integer.class))
+                .eventName(row.get("event_name", String.class))
+                .keyword(row.get("keyword", String.class))
+                .voteNum(row.get("vote_num", Integer.class))
+                .hotScore(row.get("hot_score", Double.class))
+                .uniqueVoters(row.get("unique_voters", Integer.class))
+                .user(UserDto.builder().id(row.get("user_id", Integer.class)).build())
+                .build();
+    }
+
+    private static TradeDto toTradeDto(Row row) {
+        return TradeDto.builder()
+                .id(row.get("trade_id", Integer.class))
+                .amount(row.get("amount", Integer.class))
+                .rank(row.get("rank", Integer.class))
+                .rsEventDto(toRsEventDto(row))
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.thoughtworks.rslist.reactive.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeRecordDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.exception.BuyFailedException;
+import com.thoughtworks.rslist.reactive.repository.ReactiveRsRepository;
+import com.thoughtworks.rslist.service.HotnessCalculator;
+import com.thoughtworks.rslist.service.RsEventRanking;
+import com.thoughtworks.rslist.sketch.HyperLogLog;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+public class ReactiveRsService {
+    final ReactiveRsRepository rsRepository;
+    final HotnessCalculator hotnessCalculator;
+    final TransactionalOperator transactionalOperator;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ReactiveRsService(ReactiveRsRepository rsRepository,
+                             HotnessCalculator hotnessCalculator,
+                             TransactionalOperator transactionalOperator) {
+        this.rsRepository = rsRepository;
+        this.hotnessCalculator = hotnessCalculator;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public Mono<List<RsEvent>> getRsEventList(Comparator<RsEventDto> order) {
+        return Mono.zip(rsRepository.findAllRsEvents().collectList(), rsRepository.findAllTrades().collectList())
+                .map(tuple -> RsEventRanking.mergeWithTrades(tuple.getT1(), tuple.getT2(), order));
+    }
+
+    public Flux<RsEvent> getRsEvents() {
+        return rsRepository.findAllRsEvents().map(RsEventRanking::transform);
+    }
+
+    public Mono<Boolean> addRsEvent(RsEvent rsEvent) {
+        return rsRepository.findUserById(rsEvent.getUserId())
+                .flatMap(userDto -> rsRepository.saveRsEvent(RsEventDto.builder()
+                        .keyword(rsEvent.getKeyword())
+                        .eventName(rsEvent.getEventName())
+                        .voteNum(0)
+                        .user(userDto)
+                        .build()))
+                .flatMap(id -> recordChange(ChangeLogDto.Type.RS_EVENT_ADDED, id, rsEvent.getUserId(), null, null))
+                .map(saved -> true)
+                .defaultIfEmpty(false)
+                .as(transactionalOperator::transactional);
+    }
+
+    public Mono<Void> vote(Vote vote, int rsEventId) {
+        LocalDateTime time = vote.getTime() != null ? vote.getTime() : LocalDateTime.now();
+        return rsRepository.findUserById(vote.getUserId())
+                .zipWith(rsRepository.findRsEventForUpdate(rsEventId))
+                .switchIfEmpty(Mono.error(new RuntimeException()))
+                .flatMap(tuple -> rsRepository.spendVotes(vote.getUserId(), vote.getVoteNum())
+                        .filter(spent -> spent > 0)
+                        .switchIfEmpty(Mono.error(new RuntimeException()))
+                        .thenReturn(tuple))
+                .flatMap(tuple -> {
+                    UserDto user = tuple.getT1();
+                    RsEventDto rsEvent = tuple.getT2();
+                    rsEvent.setVoteNum(rsEvent.getVoteNum() + vote.getVoteNum());
+                    rsEvent.setHotScore(hotnessCalculator.addVote(rsEvent.getHotScore(), vote.getVoteNum(), time));
+                    return rsRepository.saveVote(VoteDto.builder()
+                            .localDateTime(time)
+                            .num(vote.getVoteNum())
+                            .rsEvent(rsEvent)
+                            .user(user)
+                            .build())
+                            .flatMap(voteId -> addVoter(rsEventId, user.getId())
+                                    .flatMap(uniqueVoters -> {
+                                        rsEvent.setUniqueVoters(uniqueVoters);
+                                        return rsRepository.updateRsEventVotes(rsEvent);
+                                    })
+                                    .then(rsRepository.addVoteSummary(user.getId(), rsEventId, vote.getVoteNum(), time))
+                                    .then(recordChange(ChangeLogDto.Type.RS_EVENT_VOTED, rsEventId, user.getId(), null, voteId)));
+                })
+                .then()
+                .as(transactionalOperator::transactional);
+    }
+
+    public Mono<Void> buy(Trade trade, int id) {
+        return rsRepository.findRsEventById(id)
+                .switchIfEmpty(Mono.error(new NoSuchElementException()))
+                .flatMap(rsEventDto -> rsRepository.findRankOfRsEvent(id)
+                        .defaultIfEmpty(trade.getRank())
+                        .flatMap(rank -> rank != trade.getRank()
+                                // an event holds at most one rank
+                                ? rsRepository.saveTradeRecord(record(trade, id, false, null)).thenReturn(false)
+                                : replace(trade, rsEventDto)))
+                .as(transactionalOperator::transactional)
+                // rejected bids stay in the ledger, so the transaction commits before the failure is raised
+                .flatMap(accepted -> accepted ? Mono.<Void>empty() : Mono.error(new BuyFailedException()));
+    }
+
+    private Mono<Boolean> replace(Trade trade, RsEventDto rsEventDto) {
+        int id = rsEventDto.getId();
+        return rsRepository.findTradeByRankForUpdate(trade.getRank())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(previous -> {
+                    if (previous.isPresent() && previous.get().getAmount() >= trade.getAmount()) {
+                        return rsRepository.saveTradeRecord(record(trade, id, false, null)).thenReturn(false);
+                    }
+                    Integer replacedId = previous.map(oldTrade -> oldTrade.getRsEventDto().getId()).orElse(null);
+                    Mono<?> removal = replacedId == null
+                            ? Mono.empty()
+                            : replacedId == id
+                            ? rsRepository.deleteTradeByRank(trade.getRank())
+                            : rsRepository.deleteRsEvent(replacedId)
+                            .then(recordChange(ChangeLogDto.Type.RS_EVENT_REMOVED, replacedId, null, null, null));
+                    return removal
+                            .then(rsRepository.saveTrade(TradeDto.builder()
+                                    .amount(trade.getAmount())
+                                    .rank(trade.getRank())
+                                    .rsEventDto(rsEventDto)
+                                    .build()))
+                            .then(rsRepository.saveTradeRecord(record(trade, id, true, replacedId)))
+                            .then(recordChange(ChangeLogDto.Type.RS_EVENT_TRADED, id, trade.getUserId(), trade.getRank(), null))
+                            .thenReturn(true);
+                });
+    }
+
+    public Flux<Vote> getVoteRecord(int userId, int rsEventId, int pageIndex) {
+        int offset = (pageIndex - 1) * 5;
+        // archived votes are older than every live one, so they come first
+        return rsRepository.countVotes("vote_archive", userId, rsEventId)
+                .flatMapMany(archived -> {
+                    int fromArchive = Math.max(Math.min(archived - offset, 5), 0);
+                    return Flux.concat(
+                            fromArchive > 0
+                                    ? rsRepository.findVotes("vote_archive", userId, rsEventId, offset, fromArchive)
+                                    : Flux.<VoteDto>empty(),
+                            fromArchive < 5
+                                    ? rsRepository.findVotes("vote", userId, rsEventId, Math.max(offset - archived, 0), 5 - fromArchive)
+                                    : Flux.<VoteDto>empty());
+                })
+                .map(item -> Vote.builder()
+                        .voteNum(item.getNum())
+                        .userId(item.getUser().getId())
+                        .time(item.getLocalDateTime())
+                        .rsEventId(item.getRsEvent().getId())
+                        .build());
+    }
+
+    private Mono<Integer> recordChange(ChangeLogDto.Type type, Integer rsEventId, Integer userId, Integer rank, Integer voteId) {
+        return rsRepository.saveChange(ChangeLogDto.builder()
+                .type(type)
+                .origin(nodeId)
+                .rsEventId(rsEventId)
+                .userId(userId)
+                .rank(rank)
+                .voteId(voteId)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private static TradeRecordDto record(Trade trade, int rsEventId, boolean accepted, Integer replacedRsEventId) {
+        return TradeRecordDto.builder()
+                .rank(trade.getRank())
+                .amount(trade.getAmount())
+                .rsEventId(rsEventId)
+                .userId(trade.getUserId())
+                .accepted(accepted)
+                .replacedRsEventId(replacedRsEventId)
+                .time(LocalDateTime.now())
+                .build();
+    }
+
+    private Mono<Integer> addVoter(int rsEventId, int userId) {
+        return rsRepository.findVoterSketch(rsEventId)
+                .map(HyperLogLog::fromBytes)
+                .switchIfEmpty(Mono.fromSupplier(HyperLogLog::new))
+                .flatMap(hyperLogLog -> {
+                    hyperLogLog.add(userId);
+                    return rsRepository.saveVoterSketch(rsEventId, hyperLogLog.toBytes())
+                            .thenReturn((int) hyperLogLog.estimate());
+                });
+    }
+}
@@ -0,0 +1,83 @@
+create table if not exists user (
+    id int auto_increment primary key,
+    name varchar(255),
+    gender varchar(255),
+    age int not null,
+    email varchar(255),
+    phone varchar(255),
+    vote_num int not null
+);
+
+create table if not exists rs_event (
+    id int auto_increment primary key,
+    event_name varchar(255),
+    keyword varchar(255),
+    vote_num int not null,
+    hot_score double,
+    unique_voters int not null,
+    user_id int,
+    foreign key (user_id) references user (id)
+);
+
+create table if not exists vote (
+    id int auto_increment primary key,
+    local_date_time timestamp,
+    num int not null,
+    user_id int,
+    rs_event_id int,
+    foreign key (user_id) references user (id),
+    foreign key (rs_event_id) references rs_event (id)
+);
+
+create table if not exists trade (
+    id int auto_increment primary key,
+    amount int not null,
+    rank int not null unique,
+    rs_event_id int unique,
+    foreign key (rs_event_id) references rs_event (id)
+);
+
+create table if not exists voter_sketch (
+    rs_event_id int primary key,
+    sketch varbinary(1025)
+);
+
+create table if not exists trade_ledger (
+    id int auto_increment primary key,
+    rank int not null,
+    amount int not null,
+    rs_event_id int not null,
+    user_id int,
+    accepted boolean not null,
+    replaced_rs_event_id int,
+    time timestamp
+);
+
+create table if not exists change_log (
+    id int auto_increment primary key,
+    type varchar(255),
+    origin varchar(255),
+    rs_event_id int,
+    user_id int,
+    rank int,
+    vote_id int,
+    created_at timestamp
+);
+
+create table if not exists vote_summary (
+    user_id int not null,
+    rs_event_id int not null,
+    total_num int not null,
+    last_vote_time timestamp,
+    revision bigint not null default 0,
+    updated_at timestamp,
+    primary key (user_id, rs_event_id)
+);
+
+create table if not exists vote_archive (
+    id int primary key,
+    user_id int not null,
+    rs_event_id int not null,
+    num int not null,
+    local_date_time timestamp
+);
@@ -0,0 +1,198 @@
+package com.thoughtworks.rslist.reactive.api;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+class ReactiveRsControllerTest {
+    @Autowired
+    WebTestClient webTestClient;
+    @Autowired
+    DatabaseClient databaseClient;
+    private int userId;
+
+    @BeforeEach
+    void setUp() {
+        for (String table : new String[]{"trade", "trade_ledger", "change_log", "vote_summary", "vote_archive",
+                "vote", "voter_sketch", "rs_event", "user"}) {
+            databaseClient.execute("delete from " + table).then().block();
+        }
+        databaseClient.execute("insert into user (name, gender, age, email, phone, vote_num) "
+                + "values ('idolice', 'female', 19, 'a@b.com', '188888888888', 10)")
+                .then()
+                .block();
+        userId = databaseClient.execute("select id from user")
+                .map((row, metadata) -> row.get("id", Integer.class))
+                .one()
+                .block();
+    }
+
+    @Test
+    public void shouldAddAndGetRsEvents() {
+        addRsEvent("第一条事件", "无分类");
+        addRsEvent("第二条事件", "无分类");
+
+        webTestClient.get().uri("/rs/list").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].eventName").isEqualTo("第一条事件")
+                .jsonPath("$[0].userId").isEqualTo(userId)
+                .jsonPath("$[0].user").doesNotExist();
+        webTestClient.get().uri("/rs/2").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.eventName").isEqualTo("第二条事件");
+    }
+
+    @Test
+    public void shouldGetErrorWhenIndexInvalid() {
+        webTestClient.get().uri("/rs/4").exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("invalid index");
+    }
+
+    @Test
+    public void shouldRejectEventOfUnknownUser() {
+        webTestClient.post().uri("/rs/event")
+                .bodyValue(RsEvent.builder().eventName("第一条事件").keyword("无分类").userId(userId + 1).build())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void shouldVoteAndGetVoteRecord() {
+        addRsEvent("第一条事件", "无分类");
+        addRsEvent("第二条事件", "无分类");
+        int rsEventId = rsEventId("第二条事件");
+
+        vote(rsEventId, 3).expectStatus().isOk();
+        vote(rsEventId, 8).expectStatus().is5xxServerError();
+
+        webTestClient.get().uri("/rs/list").exchange()
+                .expectBody()
+                .jsonPath("$[0].eventName").isEqualTo("第二条事件")
+                .jsonPath("$[0].voteNum").isEqualTo(3)
+                .jsonPath("$[0].uniqueVoters").isEqualTo(1);
+        webTestClient.get()
+                .uri("/voteRecord?userId={userId}&rsEventId={rsEventId}&pageIndex=1", userId, rsEventId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].voteNum").isEqualTo(3);
+        assertEquals(3, count("select total_num from vote_summary where rs_event_id = " + rsEventId));
+        assertEquals(1, count("select count(*) from change_log where type = 'RS_EVENT_VOTED'"));
+    }
+
+    @Test
+    public void shouldGetArchivedVotesBeforeLiveOnes() {
+        addRsEvent("第一条事件", "无分类");
+        int rsEventId = rsEventId("第一条事件");
+        databaseClient.execute("insert into vote_archive (id, user_id, rs_event_id, num, local_date_time) "
+                + "values (1000, :userId, :rsEventId, 1, :time)")
+                .bind("userId", userId)
+                .bind("rsEventId", rsEventId)
+                .bind("time", LocalDateTime.now().minusDays(100))
+                .then()
+                .block();
+        for (int i = 0; i < 5; i++) {
+            vote(rsEventId, 2).expectStatus().isOk();
+        }
+
+        webTestClient.get()
+                .uri("/voteRecord?userId={userId}&rsEventId={rsEventId}&pageIndex=1", userId, rsEventId)
+                .exchange()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(5)
+                .jsonPath("$[0].voteNum").isEqualTo(1)
+                .jsonPath("$[1].voteNum").isEqualTo(2);
+        webTestClient.get()
+                .uri("/voteRecord?userId={userId}&rsEventId={rsEventId}&pageIndex=2", userId, rsEventId)
+                .exchange()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].voteNum").isEqualTo(2);
+    }
+
+    @Test
+    public void shouldBuyRankAndReplaceCheaperTrade() {
+        addRsEvent("第一条事件", "无分类");
+        addRsEvent("第二条事件", "无分类");
+        addRsEvent("第三条事件", "无分类");
+
+        buy(rsEventId("第三条事件"), 100, 1).expectStatus().isOk();
+        buy(rsEventId("第二条事件"), 50, 1).expectStatus().isBadRequest();
+        buy(rsEventId("第二条事件"), 200, 1).expectStatus().isOk();
+
+        webTestClient.get().uri("/rs/list").exchange()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].eventName").isEqualTo("第二条事件")
+                .jsonPath("$[1].eventName").isEqualTo("第一条事件");
+        assertEquals(2, count("select count(*) from trade_ledger where accepted"));
+        assertEquals(1, count("select count(*) from trade_ledger where not accepted"));
+        assertEquals(1, count("select count(*) from change_log where type = 'RS_EVENT_REMOVED'"));
+    }
+
+    @Test
+    public void shouldNotBuySecondRankForSameEvent() {
+        addRsEvent("第一条事件", "无分类");
+        int rsEventId = rsEventId("第一条事件");
+
+        buy(rsEventId, 100, 1).expectStatus().isOk();
+        buy(rsEventId, 100, 2).expectStatus().isBadRequest();
+        buy(rsEventId, 200, 1).expectStatus().isOk();
+
+        assertEquals(1, count("select count(*) from trade"));
+        assertEquals(200, count("select amount from trade where rank = 1"));
+    }
+
+    private void addRsEvent(String eventName, String keyword) {
+        webTestClient.post().uri("/rs/event")
+                .bodyValue(RsEvent.builder().eventName(eventName).keyword(keyword).userId(userId).build())
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    private int rsEventId(String eventName) {
+        return databaseClient.execute("select id from rs_event where event_name = :eventName")
+                .bind("eventName", eventName)
+                .map((row, metadata) -> row.get("id", Integer.class))
+                .one()
+                .block();
+    }
+
+    private long count(String sql) {
+        return databaseClient.execute(sql)
+                .map((row, metadata) -> row.get(0, Number.class).longValue())
+                .one()
+                .block();
+    }
+
+    private WebTestClient.ResponseSpec vote(int rsEventId, int voteNum) {
+        return webTestClient.post().uri("/rs/vote/{id}", rsEventId)
+                .bodyValue(Vote.builder().userId(userId).voteNum(voteNum).time(LocalDateTime.now()).build())
+                .exchange();
+    }
+
+    private WebTestClient.ResponseSpec buy(int rsEventId, int amount, int rank) {
+        return webTestClient.post().uri("/rs/buy/{id}", rsEventId)
+                .bodyValue(Trade.builder().amount(amount).rank(rank).build())
+                .exchange();
+    }
+}
@@ -0,0 +1,90 @@
+package com.thoughtworks.rslist.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.Vote;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes a {@code /rs/list} and a {@code /voteRecord} sized payload in each format the API can
+ * answer with. Payload sizes are printed once per trial, since JMH only reports times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ResponseFormatBenchmark {
+    @Param({"1000", "100000"})
+    int entries;
+
+    @Param({"json", "json-gzip", "cbor"})
+    String format;
+
+    ObjectMapper mapper;
+    boolean gzip;
+    List<RsEvent> rsEvents;
+    List<Vote> votes;
+
+    @Setup
+    public void setUp() throws IOException {
+        // same builder Boot configures the HTTP converters from
+        mapper = format.equals("cbor")
+                ? Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()
+                : Jackson2ObjectMapperBuilder.json().build();
+        gzip = format.equals("json-gzip");
+        Random random = new Random(42);
+        rsEvents = new ArrayList<>(entries);
+        votes = new ArrayList<>(entries);
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < entries; i++) {
+            rsEvents.add(new RsEvent("event " + Long.toString(random.nextLong(), 36), "keyword " + random.nextInt(50),
+                    random.nextInt(100000), random.nextInt(10000), i + 1, random.nextInt(5000)));
+            votes.add(new Vote(random.nextInt(10000), random.nextInt(100000),
+                    time.plusSeconds(random.nextInt(10_000_000)), 1 + random.nextInt(10)));
+        }
+        System.out.printf("%n%s, %d entries: rs list %d bytes, vote records %d bytes%n",
+                format, entries, rsList().length, voteRecords().length);
+    }
+
+    @Benchmark
+    public byte[] rsList() throws IOException {
+        return encode(rsEvents);
+    }
+
+    @Benchmark
+    public byte[] voteRecords() throws IOException {
+        return encode(votes);
+    }
+
+    private byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes, 8192) : bytes) {
+            mapper.writeValue(out, value);
+        }
+        return bytes.toByteArray();
+    }
+}
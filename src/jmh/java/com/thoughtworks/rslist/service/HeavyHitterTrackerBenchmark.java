@@ -0,0 +1,58 @@
+package com.thoughtworks.rslist.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeavyHitterTrackerBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    HeavyHitterTracker heavyHitterTracker;
+    int[] userIds;
+    int[] rsEventIds;
+    int next;
+
+    @Setup
+    public void setUp() {
+        heavyHitterTracker = new HeavyHitterTracker(64, Duration.ofMinutes(10), 10);
+        Random random = new Random(42);
+        userIds = new int[KEYS];
+        rsEventIds = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            // skewed ids so a few keys dominate, like a real brigade
+            userIds[i] = (int) Math.abs(random.nextGaussian() * 1000);
+            rsEventIds[i] = (int) Math.abs(random.nextGaussian() * 200);
+        }
+    }
+
+    @Benchmark
+    public void recordVote() {
+        int i = next++ & (KEYS - 1);
+        heavyHitterTracker.recordVote(userIds[i], rsEventIds[i], 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordVoteContended() {
+        int i = (int) (Thread.currentThread().getId() + System.nanoTime()) & (KEYS - 1);
+        heavyHitterTracker.recordVote(userIds[i], rsEventIds[i], 1);
+    }
+}
@@ -0,0 +1,65 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run with {@code -prof gc}: gc.alloc.rate.norm is the garbage one /rs/list request leaves behind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RsEventRankingBenchmark {
+    @Param({"1000", "100000"})
+    int events;
+
+    List<RsEventDto> rsEventDtos;
+    List<TradeDto> tradeDtos;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        UserDto userDto = UserDto.builder().id(1).userName("user").build();
+        rsEventDtos = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            rsEventDtos.add(RsEventDto.builder().id(1000 + i).eventName("event " + i).keyword("keyword")
+                    .voteNum(random.nextInt(events)).hotScore(random.nextDouble()).user(userDto).build());
+        }
+        tradeDtos = new ArrayList<>();
+        for (int rank = 1; rank <= 5; rank++) {
+            tradeDtos.add(TradeDto.builder().rank(rank).amount(100)
+                    .rsEventDto(rsEventDtos.get(random.nextInt(events))).build());
+        }
+    }
+
+    @Benchmark
+    public List<RsEvent> list() {
+        return RsEventRanking.mergeWithTrades(rsEventDtos, tradeDtos, RsEventRanking.order(null));
+    }
+
+    @Benchmark
+    public List<RsEvent> listByHotness() {
+        return RsEventRanking.mergeWithTrades(rsEventDtos, tradeDtos, RsEventRanking.order("hot"));
+    }
+}
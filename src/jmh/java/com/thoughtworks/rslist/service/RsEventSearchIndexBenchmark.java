@@ -0,0 +1,67 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class RsEventSearchIndexBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param("1000000")
+    int events;
+
+    RsEventSearchIndex rsEventSearchIndex;
+    String[] queries;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rsEventSearchIndex = new RsEventSearchIndex(null);
+        for (int i = 0; i < events; i++) {
+            rsEventSearchIndex.add(RsEventDto.builder()
+                    .id(i)
+                    .eventName(randomText(random, 6 + random.nextInt(10)))
+                    .keyword(randomText(random, 2))
+                    .voteNum(random.nextInt(1000))
+                    .build());
+        }
+        queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = randomText(random, 2 + random.nextInt(3));
+        }
+    }
+
+    // common CJK block, so bigram frequencies resemble real headlines more than random code points
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) (0x4E00 + (int) Math.abs(random.nextGaussian() * 600)));
+        }
+        return text.toString();
+    }
+
+    @Benchmark
+    public List<Integer> search() {
+        return rsEventSearchIndex.search(queries[next++ & (QUERIES - 1)], 10);
+    }
+}
@@ -0,0 +1,60 @@
+package com.thoughtworks.rslist.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserRateLimiterBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    UserRateLimiter rateLimiter;
+    UserRateLimiter fullRateLimiter;
+    Integer[] userIds;
+    int next;
+
+    @Setup
+    public void setUp() {
+        rateLimiter = new UserRateLimiter(5, 20, 100_000);
+        // smaller than the key space, so new users keep triggering eviction
+        fullRateLimiter = new UserRateLimiter(5, 20, 10_000);
+        Random random = new Random(42);
+        userIds = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            userIds[i] = (int) Math.abs(random.nextGaussian() * 20_000);
+        }
+    }
+
+    @Benchmark
+    public long acquire() {
+        return rateLimiter.acquire(userIds[next++ & (KEYS - 1)], System.nanoTime());
+    }
+
+    @Benchmark
+    public long acquireWithEviction() {
+        return fullRateLimiter.acquire(userIds[next++ & (KEYS - 1)], System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long acquireContended() {
+        int i = (int) (Thread.currentThread().getId() + System.nanoTime()) & (KEYS - 1);
+        return rateLimiter.acquire(userIds[i], System.nanoTime());
+    }
+}
@@ -0,0 +1,62 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.VoteAggregate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of the vote columns: grouping by a dictionary-encoded user attribute, and grouping
+ * by hour under an event filter. 100M votes take about 1.6GB of columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class VoteColumnStoreBenchmark {
+    @Param({"10000000", "100000000"})
+    int votes;
+
+    VoteColumnStore voteColumnStore;
+    LocalDateTime from = LocalDateTime.of(2020, 5, 1, 0, 0);
+
+    @Setup
+    public void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource();
+        voteColumnStore = new VoteColumnStore(dataSource, new DataSourceTransactionManager(dataSource), null, 0, 1000);
+        Random random = new Random(42);
+        String[] genders = {"female", "male", null};
+        for (int i = 0; i < votes; i++) {
+            int userId = random.nextInt(100_000);
+            voteColumnStore.append(userId, genders[userId % 3], 18 + userId % 60, random.nextInt(10_000),
+                    1 + random.nextInt(10), from.plusSeconds(random.nextInt(30 * 24 * 3600)));
+        }
+    }
+
+    @Benchmark
+    public List<VoteAggregate> groupByAgeBand() {
+        return voteColumnStore.aggregate(VoteColumnStore.GroupBy.AGE_BAND, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public List<VoteAggregate> groupEventByHour() {
+        return voteColumnStore.aggregate(VoteColumnStore.GroupBy.HOUR, null, 42, null, from, from.plusDays(30));
+    }
+}
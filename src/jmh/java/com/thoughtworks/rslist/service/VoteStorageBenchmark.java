@@ -0,0 +1,100 @@
+package com.thoughtworks.rslist.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert and paged lookup latency against a vote history of {@code rows} votes, either all kept in
+ * {@code vote} or with everything but the last {@value #HOT_ROWS} moved to {@code vote_archive}.
+ * Run with {@code -p rows=10000000 -jvmArgs -Xmx8g} for the full-size history; an in-memory H2
+ * needs about that much heap to hold it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class VoteStorageBenchmark {
+    private static final int HOT_ROWS = 100_000;
+    private static final int USERS = 10_000;
+    private static final int RS_EVENTS = 100;
+
+    @Param({"1000000", "3000000"})
+    int rows;
+    @Param({"true", "false"})
+    boolean archived;
+
+    SingleConnectionDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    VoteHistory voteHistory;
+    Random random = new Random(42);
+    int nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:votes", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        for (String table : VoteHistory.TABLES_OLDEST_FIRST) {
+            jdbcTemplate.execute("create table " + table + " (id integer not null, local_date_time timestamp, "
+                    + "num integer not null, rs_event_id integer, user_id integer, primary key (id))");
+            jdbcTemplate.execute("create index idx_" + table + "_pair on " + table + " (user_id, rs_event_id, id)");
+        }
+        jdbcTemplate.execute("create index idx_vote_time on vote (local_date_time)");
+        int cold = archived ? rows - HOT_ROWS : 0;
+        load("vote_archive", 1, cold);
+        load("vote", cold + 1, rows);
+        voteHistory = new VoteHistory(dataSource);
+        nextId = rows + 1;
+    }
+
+    private void load(String table, int first, int last) {
+        if (first > last) {
+            return;
+        }
+        jdbcTemplate.update("insert into " + table + " (id, local_date_time, num, rs_event_id, user_id) "
+                        + "select x, dateadd('SECOND', x, timestamp '2020-01-01 00:00:00'), 1, "
+                        + "mod(x / ?, ?), mod(x, ?) from system_range(?, ?)",
+                USERS, RS_EVENTS, USERS, first, last);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.execute("drop all objects");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public int insertVote() {
+        int id = nextId++;
+        return jdbcTemplate.update("insert into vote (id, local_date_time, num, rs_event_id, user_id) "
+                        + "values (?, ?, 1, ?, ?)",
+                id, Timestamp.valueOf(LocalDateTime.now()), random.nextInt(RS_EVENTS), random.nextInt(USERS));
+    }
+
+    @Benchmark
+    public List<?> findVotePage() {
+        int votesPerPair = Math.max(1, rows / (USERS * RS_EVENTS));
+        int offset = random.nextInt(votesPerPair) / 5 * 5;
+        return voteHistory.findVotes(random.nextInt(USERS), random.nextInt(RS_EVENTS), offset, 5);
+    }
+}
@@ -0,0 +1,219 @@
+package com.thoughtworks.rslist.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load generator: for each target and each concurrency level, N clients issue GET requests
+ * back to back for a fixed duration. The concurrency ceiling of a target is the highest level that still
+ * meets the p99 limit with at most 1% errors. With {@code --writers} a fixed number of extra clients POST
+ * {@code --write-body} to {@code --write-path} at the same time, to see how reads hold up under a write storm.
+ *
+ * <pre>
+ * ./gradlew loadTest -PloadTestArgs="--target=servlet=http://localhost:8080 --target=reactive=http://localhost:8081
+ *     --path=/rs/list --levels=16,64,256,1024 --duration=10 --p99-limit-ms=200"
+ * ./gradlew loadTest -PloadTestArgs="--path=/rs/list --writers=64 --write-path=/rs/vote/1
+ *     --write-body={\"userId\":1,\"voteNum\":0}"
+ * </pre>
+ */
+public class LoadHarness {
+    private final Map<String, String> targets = new LinkedHashMap<>();
+    private String path = "/rs/list";
+    private int[] levels = {8, 16, 32, 64, 128, 256, 512};
+    private int durationSeconds = 10;
+    private long p99LimitMicros = 200_000;
+    private int writers;
+    private String writePath = "/rs/vote/1";
+    private String writeBody = "{}";
+
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness = new LoadHarness();
+        for (String arg : args) {
+            harness.parse(arg);
+        }
+        if (harness.targets.isEmpty()) {
+            harness.targets.put("servlet", "http://localhost:8080");
+        }
+        harness.run();
+    }
+
+    private void parse(String arg) {
+        String[] option = arg.split("=", 2);
+        switch (option[0]) {
+            case "--target":
+                String[] target = option[1].split("=", 2);
+                targets.put(target[0], target[1]);
+                break;
+            case "--path":
+                path = option[1];
+                break;
+            case "--levels":
+                levels = Arrays.stream(option[1].split(",")).mapToInt(Integer::parseInt).toArray();
+                break;
+            case "--duration":
+                durationSeconds = Integer.parseInt(option[1]);
+                break;
+            case "--p99-limit-ms":
+                p99LimitMicros = Long.parseLong(option[1]) * 1000;
+                break;
+            case "--writers":
+                writers = Integer.parseInt(option[1]);
+                break;
+            case "--write-path":
+                writePath = option[1];
+                break;
+            case "--write-body":
+                writeBody = option[1];
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + arg);
+        }
+    }
+
+    private void run() throws Exception {
+        System.setProperty("http.maxConnections", String.valueOf(Arrays.stream(levels).max().orElse(5) + writers));
+        for (Map.Entry<String, String> target : targets.entrySet()) {
+            URL url = new URL(target.getValue() + path);
+            URL writeUrl = new URL(target.getValue() + writePath);
+            System.out.printf("%s %s%s%n%8s %12s %10s %10s %8s%s%n",
+                    target.getKey(), url, writers == 0 ? "" : " with " + writers + " writers on " + writeUrl,
+                    "clients", "req/s", "p50 ms", "p99 ms", "errors",
+                    writers == 0 ? "" : String.format(" %12s %10s %8s", "writes/s", "p99 ms", "errors"));
+            int ceiling = 0;
+            for (int level : levels) {
+                Result[] results = runLevel(url, level, writeUrl);
+                Result result = results[0];
+                System.out.printf("%8d %12.1f %10.2f %10.2f %7.2f%%", level, result.throughput(),
+                        result.percentile(0.50) / 1000.0, result.percentile(0.99) / 1000.0, result.errorRate() * 100);
+                if (writers > 0) {
+                    System.out.printf(" %12.1f %10.2f %7.2f%%", results[1].throughput(),
+                            results[1].percentile(0.99) / 1000.0, results[1].errorRate() * 100);
+                }
+                System.out.println();
+                if (result.percentile(0.99) <= p99LimitMicros && result.errorRate() <= 0.01) {
+                    ceiling = level;
+                }
+            }
+            System.out.printf("%s concurrency ceiling: %d clients%n%n", target.getKey(), ceiling);
+        }
+    }
+
+    private Result[] runLevel(URL url, int clients, URL writeUrl) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients + writers);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Future<Client>> reads = new ArrayList<>();
+        List<Future<Client>> writes = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            writes.add(executor.submit(() -> new Client(writeUrl, writeBody).runUntil(deadline)));
+        }
+        for (int i = 0; i < clients; i++) {
+            reads.add(executor.submit(() -> new Client(url, null).runUntil(deadline)));
+        }
+        Result[] results = {new Result(durationSeconds), new Result(durationSeconds)};
+        for (Future<Client> future : reads) {
+            results[0].add(future.get());
+        }
+        for (Future<Client> future : writes) {
+            results[1].add(future.get());
+        }
+        executor.shutdown();
+        return results;
+    }
+
+    private static class Client {
+        private final URL url;
+        private final byte[] body;
+        private final byte[] buffer = new byte[8192];
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        Client(URL url, String body) {
+            this.url = url;
+            this.body = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        Client runUntil(long deadline) {
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                if (!request()) {
+                    errors++;
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = (System.nanoTime() - start) / 1000;
+            }
+            return this;
+        }
+
+        private boolean request() {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                if (body != null) {
+                    connection.setRequestMethod("POST");
+                    connection.setRequestProperty("Content-Type", "application/json");
+                    connection.setDoOutput(true);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(body);
+                    }
+                }
+                int status = connection.getResponseCode();
+                try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    while (body != null && body.read(buffer) != -1) {
+                    }
+                }
+                return status < 400;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class Result {
+        private final int durationSeconds;
+        private long[] latencies = new long[0];
+        private long errors;
+
+        Result(int durationSeconds) {
+            this.durationSeconds = durationSeconds;
+        }
+
+        void add(Client client) {
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + client.count);
+            System.arraycopy(client.latencies, 0, latencies, offset, client.count);
+            errors += client.errors;
+        }
+
+        double throughput() {
+            return (double) latencies.length / durationSeconds;
+        }
+
+        double errorRate() {
+            return latencies.length == 0 ? 1 : (double) errors / latencies.length;
+        }
+
+        long percentile(double p) {
+            if (latencies.length == 0) {
+                return Long.MAX_VALUE;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+        }
+    }
+}
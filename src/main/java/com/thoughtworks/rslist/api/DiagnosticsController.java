@@ -0,0 +1,87 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.service.AdaptiveLimiter;
+import com.thoughtworks.rslist.service.HandlerExecutor;
+import com.thoughtworks.rslist.service.HeavyHitterTracker;
+import com.thoughtworks.rslist.service.UniqueVoterCounter;
+import com.thoughtworks.rslist.service.VoteColumnStore;
+import com.thoughtworks.rslist.service.VoteSummaryService;
+import com.thoughtworks.rslist.sketch.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+public class DiagnosticsController {
+    @Autowired
+    HeavyHitterTracker heavyHitterTracker;
+    @Autowired
+    UniqueVoterCounter uniqueVoterCounter;
+    @Autowired
+    VoteSummaryService voteSummaryService;
+    @Autowired
+    VoteColumnStore voteColumnStore;
+    @Autowired
+    @Qualifier("readExecutor")
+    HandlerExecutor readExecutor;
+    @Autowired
+    @Qualifier("writeExecutor")
+    HandlerExecutor writeExecutor;
+    @Autowired
+    @Qualifier("readLimiter")
+    AdaptiveLimiter readLimiter;
+    @Autowired
+    @Qualifier("writeLimiter")
+    AdaptiveLimiter writeLimiter;
+
+    @GetMapping("/diagnostics/heavy-hitters")
+    public ResponseEntity<Map<String, List<Counter>>> getHeavyHitters(
+            @RequestParam(defaultValue = "10") int limit) {
+        Map<String, List<Counter>> heavyHitters = new LinkedHashMap<>();
+        heavyHitters.put("rsEvents", heavyHitterTracker.topRsEvents(limit));
+        heavyHitters.put("users", heavyHitterTracker.topUsers(limit));
+        return ResponseEntity.ok(heavyHitters);
+    }
+
+    @GetMapping("/diagnostics/executors")
+    public ResponseEntity<Map<String, Map<String, Object>>> getExecutors() {
+        Map<String, Map<String, Object>> executors = new LinkedHashMap<>();
+        executors.put("read", readExecutor.metrics());
+        executors.put("write", writeExecutor.metrics());
+        return ResponseEntity.ok(executors);
+    }
+
+    @GetMapping("/diagnostics/concurrency-limits")
+    public ResponseEntity<Map<String, Map<String, Object>>> getConcurrencyLimits() {
+        Map<String, Map<String, Object>> limits = new LinkedHashMap<>();
+        limits.put("read", readLimiter.metrics());
+        limits.put("write", writeLimiter.metrics());
+        return ResponseEntity.ok(limits);
+    }
+
+    @PostMapping("/diagnostics/unique-voters/rebuild")
+    public ResponseEntity rebuildUniqueVoters() {
+        uniqueVoterCounter.rebuild();
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/diagnostics/vote-summaries/rebuild")
+    public ResponseEntity rebuildVoteSummaries() throws InterruptedException {
+        voteSummaryService.rebuild();
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/diagnostics/vote-columns/rebuild")
+    public ResponseEntity rebuildVoteColumns() {
+        voteColumnStore.rebuild();
+        return ResponseEntity.ok().build();
+    }
+}
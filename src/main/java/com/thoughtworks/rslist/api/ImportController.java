@@ -0,0 +1,42 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.domain.ImportReport;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.service.BulkImporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.sql.SQLException;
+
+@RestController
+public class ImportController {
+  @Autowired BulkImporter bulkImporter;
+
+  @PostMapping("/import/users")
+  public ResponseEntity<ImportReport> importUsers(
+      HttpServletRequest request, @RequestParam(defaultValue = "ndjson") String format)
+      throws IOException, SQLException {
+    return ResponseEntity.ok(bulkImporter.importUsers(request.getInputStream(), format));
+  }
+
+  @PostMapping("/import/rs-events")
+  public ResponseEntity<ImportReport> importRsEvents(
+      HttpServletRequest request, @RequestParam(defaultValue = "ndjson") String format)
+      throws IOException, SQLException {
+    return ResponseEntity.ok(bulkImporter.importRsEvents(request.getInputStream(), format));
+  }
+
+  @ExceptionHandler(RequestNotValidException.class)
+  public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+    Error error = new Error();
+    error.setError(e.getMessage());
+    return ResponseEntity.badRequest().body(error);
+  }
+}
@@ -1,31 +1,54 @@
 package com.thoughtworks.rslist.api;
 
+import com.thoughtworks.rslist.config.ReplicaRoutingDataSource;
 import com.thoughtworks.rslist.domain.RsEvent;
 import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.TradeRecord;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RsEventDto;
-import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.exception.BuyFailedException;
 import com.thoughtworks.rslist.exception.Error;
 import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.exception.TooManyRequestsException;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.DuplicateEventIndex;
+import com.thoughtworks.rslist.service.HandlerExecutor;
+import com.thoughtworks.rslist.service.IdempotencyKeys;
+import com.thoughtworks.rslist.service.KeywordLeaderboards;
+import com.thoughtworks.rslist.service.LeaderboardSnapshots;
+import com.thoughtworks.rslist.service.RankingVersion;
+import com.thoughtworks.rslist.service.RsEventRanking;
+import com.thoughtworks.rslist.service.RsEventSearchIndex;
 import com.thoughtworks.rslist.service.RsService;
+import com.thoughtworks.rslist.service.UserRateLimiter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -38,103 +61,206 @@ public class RsController {
     @Autowired
     TradeRepository tradeRepository;
     @Autowired
+    TradeRecordRepository tradeRecordRepository;
+    @Autowired
     RsService rsService;
+    @Autowired
+    RsEventSearchIndex rsEventSearchIndex;
+    @Autowired
+    DuplicateEventIndex duplicateEventIndex;
+    @Autowired
+    RankingVersion rankingVersion;
+    @Autowired
+    KeywordLeaderboards keywordLeaderboards;
+    @Autowired
+    LeaderboardSnapshots leaderboardSnapshots;
+    @Autowired
+    IdempotencyKeys idempotencyKeys;
+    @Autowired
+    @Qualifier("readExecutor")
+    HandlerExecutor readExecutor;
+    @Autowired
+    @Qualifier("writeExecutor")
+    HandlerExecutor writeExecutor;
+    @Autowired
+    @Qualifier("voteRateLimiter")
+    UserRateLimiter voteRateLimiter;
+    @Autowired
+    @Qualifier("buyRateLimiter")
+    UserRateLimiter buyRateLimiter;
 
     @GetMapping("/rs/list")
-    public ResponseEntity<List<RsEvent>> getRsEventListBetween(
-            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end) {
-
-        List<RsEventDto> rsEventDtos = rsEventRepository.findAll();
-        List<RsEvent> rsEvents = new ArrayList<>();
-        for (int i = 0; i < rsEventDtos.size(); i++) {
-            rsEvents.add(null);
-        }
-
-        List<TradeDto> tradeDtos = tradeRepository.findAll();
-        tradeDtos.forEach(tradeDto ->
-                rsEvents.set(tradeDto.getRank() - 1, transform(tradeDto.getRsEventDto())));
-
-        Iterator<RsEvent> rsEventIterator = rsEventDtos.stream()
-                .filter(rsEventDto -> tradeDtos.stream()
-                        .noneMatch(tradeDto -> tradeDto.getRsEventDto().getId() == rsEventDto.getId()))
-                .sorted(Comparator.comparing(RsEventDto::getVoteNum).reversed())
-                .map(this::transform)
-                .collect(Collectors.toList())
-                .iterator();
-
-        for (int i = 0; i < rsEvents.size(); i++) {
-            if (rsEvents.get(i) == null) {
-                rsEvents.set(i, rsEventIterator.next());
+    public CompletableFuture<ResponseEntity<List<RsEvent>>> getRsEventListBetween(
+            @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end,
+            @RequestParam(required = false) String mode, @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at,
+            WebRequest webRequest) {
+        if (at != null) {
+            if (mode != null || keyword != null) {
+                throw new RequestNotValidException("at only supports the default ranking");
             }
+            return readExecutor.submit(() -> {
+                List<RsEvent> rsEvents = leaderboardSnapshots.at(at);
+                return ResponseEntity.ok(start == null || end == null ? rsEvents : rsEvents.subList(start - 1, end));
+            });
         }
-
-        if (start == null || end == null) {
-            return ResponseEntity.ok(rsEvents);
+        String etag = rankingVersion.etag(
+                webRequest.getHeader(HttpHeaders.ACCEPT) + webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
         }
-        return ResponseEntity.ok(rsEvents.subList(start - 1, end));
-    }
-
-    private RsEvent transform(RsEventDto rsEventDto) {
-        return RsEvent.builder()
-                .eventName(rsEventDto.getEventName())
-                .keyword(rsEventDto.getKeyword())
-                .voteNum(rsEventDto.getVoteNum())
-                .userId(rsEventDto.getUser().getId())
-                .build();
+        // a lagging replica's rows would be cached under the current version's tag
+        ReplicaRoutingDataSource.reset();
+        return readExecutor.submit(() -> {
+            if (keyword != null) {
+                List<RsEvent> rsEvents = keywordLeaderboards.list(keyword, RsEventRanking.order(mode));
+                return ResponseEntity.ok().eTag(etag)
+                        .body(start == null || end == null ? rsEvents : rsEvents.subList(start - 1, end));
+            }
+            // only the page asked for is turned into response objects
+            List<RsEventDto> merged = RsEventRanking.mergeTrades(
+                    rsEventRepository.findAll(), tradeRepository.findAll(), RsEventRanking.order(mode));
+            return ResponseEntity.ok().eTag(etag)
+                    .body(RsEventRanking.transform(start == null || end == null ? merged : merged.subList(start - 1, end)));
+        });
     }
 
     @GetMapping("/rs/{index}")
-    public ResponseEntity<RsEvent> getRsEvent(@PathVariable int index) {
-        List<RsEvent> rsEvents =
-                rsEventRepository.findAll().stream()
-                        .map(
-                                item ->
-                                        RsEvent.builder()
-                                                .eventName(item.getEventName())
-                                                .keyword(item.getKeyword())
-                                                .userId(item.getId())
-                                                .voteNum(item.getVoteNum())
-                                                .build())
-                        .collect(Collectors.toList());
-        if (index < 1 || index > rsEvents.size()) {
-            throw new RequestNotValidException("invalid index");
+    public CompletableFuture<ResponseEntity<RsEvent>> getRsEvent(@PathVariable int index, WebRequest webRequest) {
+        String etag = rankingVersion.etag(
+                webRequest.getHeader(HttpHeaders.ACCEPT) + webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (webRequest.checkNotModified(etag)) {
+            return notModified(etag);
         }
-        return ResponseEntity.ok(rsEvents.get(index - 1));
+        ReplicaRoutingDataSource.reset();
+        return readExecutor.submit(() -> {
+            List<RsEventDto> rsEventDtos = index < 1
+                    ? Collections.emptyList()
+                    : rsEventRepository.findAllByOrderById(PageRequest.of(index - 1, 1));
+            if (rsEventDtos.isEmpty()) {
+                throw new RequestNotValidException("invalid index");
+            }
+            return ResponseEntity.ok().eTag(etag).body(RsEventRanking.transform(rsEventDtos.get(0)));
+        });
     }
 
     @PostMapping("/rs/event")
-    public ResponseEntity addRsEvent(@RequestBody @Valid RsEvent rsEvent) {
-        Optional<UserDto> userDto = userRepository.findById(rsEvent.getUserId());
-        if (!userDto.isPresent()) {
-            return ResponseEntity.badRequest().build();
+    public CompletableFuture<ResponseEntity> addRsEvent(@RequestBody @Valid RsEvent rsEvent) {
+        return writeExecutor.submit(() -> {
+            Optional<UserDto> userDto = userRepository.findById(rsEvent.getUserId());
+            if (!userDto.isPresent()) {
+                return ResponseEntity.badRequest().build();
+            }
+            int reservation = duplicateEventIndex.reserve(rsEvent.getEventName(), rsEvent.getKeyword())
+                    .orElseThrow(() -> new RequestNotValidException("duplicate event"));
+            RsEventDto build =
+                    RsEventDto.builder()
+                            .keyword(rsEvent.getKeyword())
+                            .eventName(rsEvent.getEventName())
+                            .voteNum(0)
+                            .user(userDto.get())
+                            .build();
+            // the event is indexed under its own id by the time its transaction has committed
+            try {
+                rsService.addRsEvent(build);
+            } finally {
+                duplicateEventIndex.remove(reservation);
+            }
+            return ResponseEntity.created(null).build();
+        });
+    }
+
+    @GetMapping("/rs/search")
+    public CompletableFuture<ResponseEntity<List<RsEvent>>> search(
+            @RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        if (q.trim().isEmpty() || limit < 1) {
+            throw new RequestNotValidException("invalid query");
         }
-        RsEventDto build =
-                RsEventDto.builder()
-                        .keyword(rsEvent.getKeyword())
-                        .eventName(rsEvent.getEventName())
-                        .voteNum(0)
-                        .user(userDto.get())
-                        .build();
-        rsEventRepository.save(build);
-        return ResponseEntity.created(null).build();
+        return readExecutor.submit(() -> {
+            List<Integer> ids = rsEventSearchIndex.search(q, limit);
+            Map<Integer, RsEventDto> rsEventDtos = new HashMap<>();
+            rsEventRepository.findAllById(ids).forEach(rsEventDto -> rsEventDtos.put(rsEventDto.getId(), rsEventDto));
+            return ResponseEntity.ok(ids.stream()
+                    .filter(rsEventDtos::containsKey)
+                    .map(id -> RsEventRanking.transform(rsEventDtos.get(id)))
+                    .collect(Collectors.toList()));
+        });
     }
 
     @PostMapping("/rs/vote/{id}")
-    public ResponseEntity vote(@PathVariable int id, @RequestBody Vote vote) {
-        rsService.vote(vote, id);
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity> vote(@PathVariable int id, @RequestBody Vote vote,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        Supplier<ResponseEntity> write = () -> {
+            rsService.vote(vote, id);
+            return ResponseEntity.ok().build();
+        };
+        if (idempotencyKey == null) {
+            admit(voteRateLimiter, vote.getUserId(), vote.getUserId());
+            return writeExecutor.submit(write);
+        }
+        // a retry of a finished vote is answered from its key without spending the user's rate
+        return idempotencyKeys.submit(vote.getUserId(), idempotencyKey, "vote/" + id + vote, writeExecutor,
+                () -> admit(voteRateLimiter, vote.getUserId(), vote.getUserId()), write);
     }
 
     @PostMapping("/rs/buy/{id}")
-    public ResponseEntity buy(@PathVariable int id, @RequestBody Trade trade) {
-        try {
-            rsService.buy(trade, id);
-            return ResponseEntity.ok().build();
-        } catch (BuyFailedException e) {
-            return ResponseEntity.badRequest().build();
+    public CompletableFuture<ResponseEntity> buy(
+            @PathVariable int id, @RequestBody Trade trade,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        // bids that name no user are limited per event they are placed for
+        Object limitKey = trade.getUserId() != null ? trade.getUserId() : "rs/" + id;
+        Supplier<ResponseEntity> write = () -> {
+            try {
+                rsService.buy(trade, id);
+                return ResponseEntity.ok().build();
+            } catch (BuyFailedException | PessimisticLockingFailureException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        };
+        if (idempotencyKey == null) {
+            admit(buyRateLimiter, limitKey, trade.getUserId());
+            return writeExecutor.submit(write);
+        }
+        return idempotencyKeys.submit(limitKey, idempotencyKey, "buy/" + id + trade, writeExecutor,
+                () -> admit(buyRateLimiter, limitKey, trade.getUserId()), write);
+    }
+
+    // the limiter goes first, so a flood of made-up user ids is throttled before it reaches the database
+    private void admit(UserRateLimiter rateLimiter, Object key, Integer userId) {
+        rateLimiter.check(key);
+        if (userId != null && !userRepository.existsById(userId)) {
+            throw new RequestNotValidException("invalid user");
+        }
+    }
+
+    @GetMapping("/rs/trades")
+    public CompletableFuture<ResponseEntity<List<TradeRecord>>> getTrades(
+            @RequestParam(required = false) Integer rank, @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1) {
+            throw new RequestNotValidException("invalid limit");
         }
+        return readExecutor.submit(() -> {
+            PageRequest page = PageRequest.of(0, limit);
+            return ResponseEntity.ok((rank == null
+                    ? tradeRecordRepository.findAllByOrderByIdDesc(page)
+                    : tradeRecordRepository.findAllByRankOrderByIdDesc(rank, page)).stream()
+                    .map(tradeRecordDto -> TradeRecord.builder()
+                            .rank(tradeRecordDto.getRank())
+                            .amount(tradeRecordDto.getAmount())
+                            .rsEventId(tradeRecordDto.getRsEventId())
+                            .userId(tradeRecordDto.getUserId())
+                            .accepted(tradeRecordDto.isAccepted())
+                            .replacedRsEventId(tradeRecordDto.getReplacedRsEventId())
+                            .time(tradeRecordDto.getTime())
+                            .build())
+                    .collect(Collectors.toList()));
+        });
     }
 
+    // the version is read before any query, so an unchanged ranking costs no database work at all
+    private static <T> CompletableFuture<ResponseEntity<T>> notModified(String etag) {
+        return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+    }
 
     @ExceptionHandler(RequestNotValidException.class)
     public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
@@ -142,4 +268,13 @@ public class RsController {
         error.setError(e.getMessage());
         return ResponseEntity.badRequest().body(error);
     }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Error> handleTooManyRequests(TooManyRequestsException e) {
+        Error error = new Error();
+        error.setError(e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(error);
+    }
 }
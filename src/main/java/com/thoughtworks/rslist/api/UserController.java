@@ -2,7 +2,7 @@ package com.thoughtworks.rslist.api;
 
 import com.thoughtworks.rslist.domain.User;
 import com.thoughtworks.rslist.dto.UserDto;
-import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -15,7 +15,7 @@ import javax.validation.Valid;
 
 @RestController
 public class UserController {
-  @Autowired UserRepository userRepository;
+  @Autowired UserService userService;
 
   @PostMapping("/user")
   public void register(@RequestBody @Valid User user) {
@@ -26,12 +26,12 @@ public class UserController {
     userDto.setAge(user.getAge());
     userDto.setEmail(user.getEmail());
     userDto.setUserName(user.getUserName());
-    userRepository.save(userDto);
+    userService.register(userDto);
   }
 
   @DeleteMapping("/user/{id}")
   public ResponseEntity deleteUser(@PathVariable int id) {
-    userRepository.deleteById(id);
+    userService.deleteUser(id);
     return ResponseEntity.ok().build();
   }
 }
@@ -1,36 +1,166 @@
 package com.thoughtworks.rslist.api;
 
 import com.thoughtworks.rslist.domain.Vote;
-import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.domain.VoteAggregate;
+import com.thoughtworks.rslist.domain.VoteSummary;
+import com.thoughtworks.rslist.dto.VoteSummaryDto;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.service.HandlerExecutor;
+import com.thoughtworks.rslist.service.VoteColumnStore;
+import com.thoughtworks.rslist.service.VoteExporter;
+import com.thoughtworks.rslist.service.VoteHistory;
+import com.thoughtworks.rslist.service.VoteSummaryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
 public class VoteController {
-  @Autowired VoteRepository voteRepository;
+  private static final String EXPORT_TIMEOUT = VoteController.class.getName() + ".exportTimeout";
+
+  @Autowired VoteHistory voteHistory;
+  @Autowired @Qualifier("readExecutor") HandlerExecutor readExecutor;
+  @Autowired VoteExporter voteExporter;
+  @Autowired VoteSummaryService voteSummaryService;
+  @Autowired VoteColumnStore voteColumnStore;
+  @Value("${rs.export.timeout:30m}") Duration exportTimeout;
 
   @GetMapping("/voteRecord")
-  public ResponseEntity<List<Vote>> getVoteRecord(
-      @RequestParam int userId, @RequestParam int rsEventId, @RequestParam int pageIndex) {
+  public CompletableFuture<ResponseEntity<List<Vote>>> getVoteRecord(
+      @RequestParam int userId, @RequestParam int rsEventId, @RequestParam int pageIndex, WebRequest webRequest) {
     Pageable pageable = PageRequest.of(pageIndex - 1, 5);
-    return ResponseEntity.ok(
-        voteRepository.findAllByUserIdAndRsEventId(userId, rsEventId, pageable).stream()
-            .map(
-                item ->
-                    Vote.builder()
-                        .voteNum(item.getNum())
-                        .userId(item.getUser().getId())
-                        .time(item.getLocalDateTime())
-                        .rsEventId(item.getRsEvent().getId())
-                        .build())
-            .collect(Collectors.toList()));
+    String variant = webRequest.getHeader(HttpHeaders.ACCEPT) + webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return readExecutor.submit(() -> {
+      // the pair's summary revision moves with every vote on it, so it validates any page in one key lookup
+      Optional<VoteSummaryDto> summary = voteSummaryService.find(userId, rsEventId);
+      if (!summary.isPresent() || summary.get().getUpdatedAt() == null) {
+        return ResponseEntity.ok(
+            voteHistory.findVotes(userId, rsEventId, (int) pageable.getOffset(), pageable.getPageSize()));
+      }
+      long lastModified = summary.get().getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+      // Last-Modified only has second precision, the ETag tells apart votes within the same second; it is
+      // weak so Tomcat still compresses the body
+      String etag = "W/\"" + summary.get().getRevision() + "-" + lastModified + "-"
+          + Integer.toHexString(variant.hashCode()) + "\"";
+      if (webRequest.checkNotModified(etag, lastModified)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).lastModified(lastModified).build();
+      }
+      return ResponseEntity.ok().eTag(etag).lastModified(lastModified).body(
+          voteHistory.findVotes(userId, rsEventId, (int) pageable.getOffset(), pageable.getPageSize()));
+    });
+  }
+
+  @GetMapping("/voteRecord/summary")
+  public CompletableFuture<ResponseEntity<List<VoteSummary>>> getVoteSummary(
+      @RequestParam(required = false) Integer userId,
+      @RequestParam(required = false) Integer rsEventId,
+      @RequestParam(defaultValue = "100") int limit) {
+    if (userId == null && rsEventId == null) {
+      throw new RequestNotValidException("userId or rsEventId required");
+    }
+    return readExecutor.submit(() -> {
+      List<VoteSummaryDto> summaries;
+      if (rsEventId == null) {
+        summaries = voteSummaryService.findByUser(userId);
+      } else if (userId == null) {
+        summaries = voteSummaryService.findByRsEvent(rsEventId, limit);
+      } else {
+        summaries = voteSummaryService.find(userId, rsEventId)
+            .map(Collections::singletonList)
+            .orElse(Collections.emptyList());
+      }
+      return ResponseEntity.ok(summaries.stream()
+          .map(
+              item ->
+                  VoteSummary.builder()
+                      .userId(item.getUserId())
+                      .rsEventId(item.getRsEventId())
+                      .totalNum(item.getTotalNum())
+                      .lastVoteTime(item.getLastVoteTime())
+                      .build())
+          .collect(Collectors.toList()));
+    });
+  }
+
+  @GetMapping("/voteRecord/analytics")
+  public CompletableFuture<ResponseEntity<List<VoteAggregate>>> getVoteAnalytics(
+      @RequestParam String groupBy,
+      @RequestParam(required = false) Integer userId,
+      @RequestParam(required = false) Integer rsEventId,
+      @RequestParam(required = false) String gender,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+    VoteColumnStore.GroupBy group = Arrays.stream(VoteColumnStore.GroupBy.values())
+        .filter(value -> value.name().replace("_", "").equalsIgnoreCase(groupBy))
+        .findFirst()
+        .orElseThrow(() -> new RequestNotValidException("invalid groupBy"));
+    return readExecutor.submit(() ->
+        ResponseEntity.ok(voteColumnStore.aggregate(group, userId, rsEventId, gender, from, to)));
+  }
+
+  @GetMapping("/voteRecord/export")
+  public ResponseEntity<StreamingResponseBody> exportVoteRecord(
+      @RequestParam(required = false) Integer userId,
+      @RequestParam(required = false) Integer rsEventId,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+      @RequestParam(defaultValue = "ndjson") String format, NativeWebRequest webRequest) {
+    // only exports stream for this long; every other async request keeps the default timeout
+    WebAsyncUtils.getAsyncManager(webRequest).registerCallableInterceptor(EXPORT_TIMEOUT,
+        new CallableProcessingInterceptor() {
+          @Override
+          public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            ((AsyncWebRequest) request).setTimeout(exportTimeout.toMillis());
+          }
+        });
+    if ("csv".equals(format)) {
+      return ResponseEntity.ok()
+          .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+          .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=votes.csv")
+          .body(out -> voteExporter.writeCsv(userId, rsEventId, from, to, out));
+    }
+    if ("ndjson".equals(format)) {
+      return ResponseEntity.ok()
+          .contentType(new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+          .body(out -> voteExporter.writeNdjson(userId, rsEventId, from, to, out));
+    }
+    throw new RequestNotValidException("invalid format");
+  }
+
+  @ExceptionHandler(RequestNotValidException.class)
+  public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+    Error error = new Error();
+    error.setError(e.getMessage());
+    return ResponseEntity.badRequest().body(error);
   }
 }
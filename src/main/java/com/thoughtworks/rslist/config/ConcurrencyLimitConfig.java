@@ -0,0 +1,70 @@
+package com.thoughtworks.rslist.config;
+
+import com.thoughtworks.rslist.service.AdaptiveLimiter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class ConcurrencyLimitConfig implements WebMvcConfigurer {
+
+    @Bean
+    @ConfigurationProperties("rs.concurrency")
+    public ConcurrencyProperties concurrencyProperties() {
+        return new ConcurrencyProperties();
+    }
+
+    @Bean
+    public AdaptiveLimiter writeLimiter() {
+        Limit write = concurrencyProperties().getWrite();
+        return new AdaptiveLimiter(write.getInitialLimit(), write.getMinLimit(), write.getMaxLimit());
+    }
+
+    @Bean
+    public AdaptiveLimiter readLimiter() {
+        Limit read = concurrencyProperties().getRead();
+        return new AdaptiveLimiter(read.getInitialLimit(), read.getMinLimit(), read.getMaxLimit());
+    }
+
+    // a fixed limit: an export streams for minutes and would only skew the adaptive read limit
+    @Bean
+    public AdaptiveLimiter exportLimiter() {
+        int limit = concurrencyProperties().getExports();
+        return new AdaptiveLimiter(limit, limit, limit);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        long retryAfter = concurrencyProperties().getRetryAfter().getSeconds();
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(writeLimiter(), false, retryAfter))
+                .addPathPatterns("/rs/event", "/rs/vote/**", "/rs/buy/**", "/user");
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(readLimiter(), true, retryAfter))
+                .addPathPatterns("/rs/**", "/voteRecord", "/voteRecord/summary", "/voteRecord/analytics");
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(exportLimiter(), true, retryAfter))
+                .addPathPatterns("/voteRecord/export");
+    }
+
+    @Data
+    public static class ConcurrencyProperties {
+        private Duration retryAfter = Duration.ofSeconds(1);
+        private Limit write = new Limit(20, 4, 200);
+        private Limit read = new Limit(50, 8, 500);
+        private int exports = 2;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+    }
+}
@@ -0,0 +1,57 @@
+package com.thoughtworks.rslist.config;
+
+import com.thoughtworks.rslist.service.AdaptiveLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Holds a slot of the limiter from the first dispatch until the request completes, including
+ * time spent queued on a handler executor, and sheds requests with 503 when no slot is free.
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+    private final AdaptiveLimiter limiter;
+    private final boolean reads;
+    private final String attribute;
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitInterceptor(AdaptiveLimiter limiter, boolean reads, long retryAfterSeconds) {
+        this.limiter = limiter;
+        this.reads = reads;
+        this.attribute = ConcurrencyLimitInterceptor.class.getName() + (reads ? ".read" : ".write");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (reads != "GET".equals(request.getMethod()) || request.getAttribute(attribute) != null) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"server busy\"}");
+            return false;
+        }
+        request.setAttribute(attribute, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(attribute);
+        if (start == null) {
+            return;
+        }
+        request.removeAttribute(attribute);
+        limiter.release(System.nanoTime() - (Long) start,
+                ex != null || response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+    }
+}
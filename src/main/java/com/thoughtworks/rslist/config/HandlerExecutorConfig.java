@@ -0,0 +1,27 @@
+package com.thoughtworks.rslist.config;
+
+import com.thoughtworks.rslist.service.HandlerExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class HandlerExecutorConfig {
+
+    @Bean
+    public HandlerExecutor readExecutor(PlatformTransactionManager transactionManager,
+                                        @Value("${rs.executor.read.pool-size:16}") int poolSize,
+                                        @Value("${rs.executor.read.queue-capacity:256}") int queueCapacity) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return new HandlerExecutor("read", poolSize, queueCapacity, readOnly);
+    }
+
+    @Bean
+    public HandlerExecutor writeExecutor(@Value("${rs.executor.write.pool-size:4}") int poolSize,
+                                         @Value("${rs.executor.write.queue-capacity:64}") int queueCapacity) {
+        return new HandlerExecutor("write", poolSize, queueCapacity, null);
+    }
+}
@@ -0,0 +1,24 @@
+package com.thoughtworks.rslist.config;
+
+import com.thoughtworks.rslist.service.UserRateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Bean
+    public UserRateLimiter voteRateLimiter(@Value("${rs.rate-limit.vote.per-second:5}") double perSecond,
+                                           @Value("${rs.rate-limit.vote.burst:20}") int burst,
+                                           @Value("${rs.rate-limit.max-users:100000}") int maxUsers) {
+        return new UserRateLimiter(perSecond, burst, maxUsers);
+    }
+
+    @Bean
+    public UserRateLimiter buyRateLimiter(@Value("${rs.rate-limit.buy.per-second:1}") double perSecond,
+                                          @Value("${rs.rate-limit.buy.burst:10}") int burst,
+                                          @Value("${rs.rate-limit.max-users:100000}") int maxUsers) {
+        return new UserRateLimiter(perSecond, burst, maxUsers);
+    }
+}
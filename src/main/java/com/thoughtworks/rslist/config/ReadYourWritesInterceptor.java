@@ -0,0 +1,62 @@
+package com.thoughtworks.rslist.config;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * Lets GET requests read from replicas, except for clients that wrote within the replica lag:
+ * every write stamps a cookie, and reads carrying a recent stamp stay on the primary.
+ * Handlers that run on a {@code HandlerExecutor} carry the choice over to the worker thread.
+ */
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor {
+    static final String COOKIE = "rs-last-write";
+
+    private final Duration replicaLag;
+
+    public ReadYourWritesInterceptor(Duration replicaLag) {
+        this.replicaLag = replicaLag;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long now = System.currentTimeMillis();
+        if (!"GET".equals(request.getMethod())) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(now));
+            cookie.setPath("/");
+            cookie.setMaxAge((int) Math.max(1, replicaLag.getSeconds()));
+            response.addCookie(cookie);
+            return true;
+        }
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (COOKIE.equals(cookie.getName()) && isRecent(cookie.getValue(), now)) {
+                    return true;
+                }
+            }
+        }
+        ReplicaRoutingDataSource.useReplicas();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaRoutingDataSource.reset();
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaRoutingDataSource.reset();
+    }
+
+    private boolean isRecent(String lastWrite, long now) {
+        try {
+            return now - Long.parseLong(lastWrite) < replicaLag.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.thoughtworks.rslist.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty("rs.datasource.replicas[0].url")
+public class ReplicaDataSourceConfig implements WebMvcConfigurer {
+
+    @Bean
+    @ConfigurationProperties("rs.datasource")
+    public ReplicaProperties replicaProperties() {
+        return new ReplicaProperties();
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties primaryProperties, ReplicaProperties replicaProperties) {
+        DataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primary);
+        List<Replica> replicas = replicaProperties.getReplicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            targets.put(ReplicaRoutingDataSource.replica(i), DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .driverClassName(replica.getDriverClassName())
+                    .build());
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(replicas.size());
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadYourWritesInterceptor(replicaProperties().getReplicaLag()))
+                .addPathPatterns("/rs/**", "/voteRecord", "/voteRecord/summary", "/user/**");
+    }
+
+    @Data
+    public static class ReplicaProperties {
+        private List<Replica> replicas = new ArrayList<>();
+        private Duration replicaLag = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+    }
+}
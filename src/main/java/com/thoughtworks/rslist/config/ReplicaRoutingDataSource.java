@@ -0,0 +1,51 @@
+package com.thoughtworks.rslist.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections for read-only transactions to the replicas in turn, but only on threads that
+ * opted in with {@link #useReplicas()}: Spring Data runs every finder read-only, including the ones
+ * that load entities for a write. Must sit behind a {@code LazyConnectionDataSourceProxy}, since the
+ * read-only flag is only bound after the transaction manager has asked for a connection.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+
+    private static final ThreadLocal<Boolean> REPLICAS_ALLOWED = new ThreadLocal<>();
+
+    private final int replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(int replicas) {
+        this.replicas = replicas;
+    }
+
+    static String replica(int index) {
+        return "replica-" + index;
+    }
+
+    public static void useReplicas() {
+        REPLICAS_ALLOWED.set(Boolean.TRUE);
+    }
+
+    public static void reset() {
+        REPLICAS_ALLOWED.remove();
+    }
+
+    public static boolean isUsingReplicas() {
+        return REPLICAS_ALLOWED.get() != null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas == 0
+                || REPLICAS_ALLOWED.get() == null
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        return replica(Math.floorMod(next.getAndIncrement(), replicas));
+    }
+}
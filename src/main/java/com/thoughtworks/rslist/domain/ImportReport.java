@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ImportReport {
+    private long imported;
+    private long rejected;
+    private long rowsPerSecond;
+    private List<RejectedRow> rejectedRows = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RejectedRow {
+        private long line;
+        private String error;
+    }
+}
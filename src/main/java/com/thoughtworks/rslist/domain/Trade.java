@@ -14,4 +14,9 @@ import javax.validation.constraints.NotNull;
 public class Trade {
     @NotNull private int amount;
     @NotNull private int rank;
+    private Integer userId;
+
+    public Trade(int amount, int rank) {
+        this(amount, rank, null);
+    }
 }
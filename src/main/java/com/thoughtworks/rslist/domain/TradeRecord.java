@@ -0,0 +1,22 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TradeRecord {
+    private int rank;
+    private int amount;
+    private int rsEventId;
+    private Integer userId;
+    private boolean accepted;
+    private Integer replacedRsEventId;
+    private LocalDateTime time;
+}
@@ -0,0 +1,16 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VoteAggregate {
+    private String key;
+    private long votes;
+    private long voteNum;
+}
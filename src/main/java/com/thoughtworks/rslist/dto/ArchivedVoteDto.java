@@ -0,0 +1,31 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * A vote moved out of {@code vote} by the archiver. It keeps the original id and plain ids instead
+ * of associations, so the table carries no foreign keys and only one secondary index.
+ */
+@Entity
+@Table(name = "voteArchive", indexes = @Index(columnList = "userId, rsEventId, id"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedVoteDto {
+    @Id
+    private int id;
+    private int userId;
+    private int rsEventId;
+    private int num;
+    private LocalDateTime localDateTime;
+}
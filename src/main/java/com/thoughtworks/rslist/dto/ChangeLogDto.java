@@ -0,0 +1,43 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * One committed write, saved in the writer's transaction for the other nodes to replay against
+ * their in-memory state. Rows carry ids only; readers load whatever they need to patch.
+ */
+@Entity
+@Table(name = "changeLog", indexes = @Index(columnList = "createdAt"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeLogDto {
+    @Id
+    @GeneratedValue
+    private int id;
+    @Enumerated(EnumType.STRING)
+    private Type type;
+    private String origin;
+    private Integer rsEventId;
+    private Integer userId;
+    private Integer rank;
+    private Integer voteId;
+    private LocalDateTime createdAt;
+
+    public enum Type {
+        USER_REGISTERED, USER_DELETED, RS_EVENT_ADDED, RS_EVENT_REMOVED, RS_EVENT_VOTED, RS_EVENT_TRADED
+    }
+}
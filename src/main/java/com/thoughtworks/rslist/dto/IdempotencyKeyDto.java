@@ -0,0 +1,35 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * The outcome of a write sent with an {@code Idempotency-Key}, inserted in the write's own
+ * transaction so the key and the write commit or roll back together.
+ */
+@Entity
+@Table(name = "idempotencyKey", indexes = @Index(columnList = "createdAt"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyKeyDto {
+    // the user id, a colon and the client's key
+    @Id
+    @Column(length = 80)
+    private String requestKey;
+    // Base64 of the request's SHA-256
+    @Column(length = 44)
+    private String requestHash;
+    private int status;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,39 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * The merged {@code /rs/list} at one moment. Keyframes hold the whole list; every other row holds
+ * the changes since {@code previousId} and names the keyframe its chain starts from.
+ */
+@Entity
+@Table(name = "leaderboardSnapshot", indexes = {
+        @Index(columnList = "takenAt"),
+        @Index(columnList = "keyframeId, id")})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardSnapshotDto {
+    @Id
+    @GeneratedValue
+    private int id;
+    private LocalDateTime takenAt;
+    private boolean keyframe;
+    private Integer keyframeId;
+    private Integer previousId;
+    private int entries;
+    @Lob
+    private byte[] data;
+}
@@ -1,6 +1,7 @@
 package com.thoughtworks.rslist.dto;
 
 import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.service.RsEventIndexListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,12 +14,15 @@ import javax.persistence.*;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "rsEvent")
+@Table(name = "rsEvent", indexes = @Index(columnList = "keyword"))
+@EntityListeners(RsEventIndexListener.class)
 public class RsEventDto {
   @Id @GeneratedValue private int id;
   private String eventName;
   private String keyword;
   private int voteNum;
+  private Double hotScore;
+  private int uniqueVoters;
   @ManyToOne private UserDto user;
 
   @OneToOne(cascade = CascadeType.REMOVE, mappedBy = "rsEventDto")
@@ -1,5 +1,6 @@
 package com.thoughtworks.rslist.dto;
 
+import com.thoughtworks.rslist.service.TradeIndexListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,6 +10,7 @@ import javax.persistence.*;
 
 @Entity
 @Table(name = "trade")
+@EntityListeners(TradeIndexListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,6 +24,6 @@ public class TradeDto {
     @Column(unique = true)
     private int rank;
     @OneToOne
-    @JoinColumn(name = "rs_event_id")
+    @JoinColumn(name = "rs_event_id", unique = true)
     private RsEventDto rsEventDto;
 }
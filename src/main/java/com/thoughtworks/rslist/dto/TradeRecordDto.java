@@ -0,0 +1,36 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * One bid on a rank, accepted or not. Rows are only ever inserted, and refer to events by id so
+ * they outlive the events that a later bid removes.
+ */
+@Entity
+@Table(name = "tradeLedger", indexes = @Index(columnList = "rank, id"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeRecordDto {
+    @Id
+    @GeneratedValue
+    private int id;
+    private int rank;
+    private int amount;
+    private int rsEventId;
+    private Integer userId;
+    private boolean accepted;
+    private Integer replacedRsEventId;
+    private LocalDateTime time;
+}
@@ -1,13 +1,16 @@
 package com.thoughtworks.rslist.dto;
 
+import com.thoughtworks.rslist.service.VoteColumnListener;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -18,7 +21,10 @@ import java.time.LocalDateTime;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "vote")
+@Table(name = "vote", indexes = {
+    @Index(columnList = "user_id, rs_event_id, id"),
+    @Index(columnList = "localDateTime")})
+@EntityListeners(VoteColumnListener.class)
 public class VoteDto {
   @Id @GeneratedValue private int id;
 
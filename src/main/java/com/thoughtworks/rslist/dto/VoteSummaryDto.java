@@ -0,0 +1,41 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "voteSummary", indexes = @Index(columnList = "rsEventId, totalNum"))
+@IdClass(VoteSummaryDto.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoteSummaryDto {
+    @Id
+    private int userId;
+    @Id
+    private int rsEventId;
+    private int totalNum;
+    private LocalDateTime lastVoteTime;
+    // moved by every write on the pair, unlike lastVoteTime, which comes from the client
+    private long revision;
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private int userId;
+        private int rsEventId;
+    }
+}
@@ -0,0 +1,24 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+@Entity
+@Table(name = "voterSketch")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoterSketchDto {
+    @Id
+    private int rsEventId;
+    @Column(length = 1025)
+    private byte[] sketch;
+}
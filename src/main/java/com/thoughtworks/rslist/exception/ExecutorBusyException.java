@@ -0,0 +1,11 @@
+package com.thoughtworks.rslist.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ExecutorBusyException extends RuntimeException {
+    public ExecutorBusyException(String executor) {
+        super(executor + " executor is saturated");
+    }
+}
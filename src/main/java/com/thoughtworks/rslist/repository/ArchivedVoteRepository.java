@@ -0,0 +1,26 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.ArchivedVoteDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchivedVoteRepository extends CrudRepository<ArchivedVoteDto, Integer> {
+    List<ArchivedVoteDto> findAll();
+
+    @Query("select v.rsEventId as rsEventId, v.userId as userId from ArchivedVoteDto v order by v.rsEventId, v.id")
+    List<VoteRepository.Voter> findAllVoters(Pageable pageable);
+
+    @Modifying
+    @Query("delete from ArchivedVoteDto v where v.userId = :userId")
+    int deleteByUserId(@Param("userId") int userId);
+
+    @Modifying
+    @Query("delete from ArchivedVoteDto v where v.rsEventId in :rsEventIds")
+    int deleteByRsEventIdIn(@Param("rsEventIds") Collection<Integer> rsEventIds);
+}
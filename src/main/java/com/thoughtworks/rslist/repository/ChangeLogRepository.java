@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ChangeLogRepository extends CrudRepository<ChangeLogDto, Integer>, JpaSpecificationExecutor<ChangeLogDto> {
+    List<ChangeLogDto> findAllByIdGreaterThanOrderById(int id, Pageable pageable);
+
+    @Query("select coalesce(max(c.id), 0) from ChangeLogDto c")
+    int findMaxId();
+
+    @Transactional
+    @Modifying
+    @Query("delete from ChangeLogDto c where c.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,28 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.LeaderboardSnapshotDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface LeaderboardSnapshotRepository extends CrudRepository<LeaderboardSnapshotDto, Integer> {
+    Optional<LeaderboardSnapshotDto> findFirstByOrderByIdDesc();
+
+    Optional<LeaderboardSnapshotDto> findFirstByTakenAtLessThanEqualOrderByTakenAtDescIdDesc(LocalDateTime at);
+
+    Optional<LeaderboardSnapshotDto> findFirstByKeyframeTrueAndTakenAtLessThanEqualOrderByTakenAtDesc(
+            LocalDateTime at);
+
+    List<LeaderboardSnapshotDto> findAllByKeyframeIdAndIdLessThanEqualOrderById(int keyframeId, int id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from LeaderboardSnapshotDto s where s.id < :id")
+    int deleteIdLessThan(@Param("id") int id);
+}
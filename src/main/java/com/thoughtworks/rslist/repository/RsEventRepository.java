@@ -1,14 +1,43 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.RsEventDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
 import java.util.List;
+import java.util.Optional;
 
 public interface RsEventRepository extends CrudRepository<RsEventDto, Integer> {
+  // the trade side of the one-to-one can't be lazy, so it is joined rather than selected per event
+  @EntityGraph(attributePaths = {"user", "tradeDto"})
   List<RsEventDto> findAll();
 
+  @EntityGraph(attributePaths = {"user", "tradeDto"})
+  List<RsEventDto> findAllById(Iterable<Integer> ids);
+
+  @EntityGraph(attributePaths = {"user", "tradeDto"})
+  List<RsEventDto> findAllByKeyword(String keyword);
+
+  // the index-th event in creation order, without loading the ones before it
+  @EntityGraph(attributePaths = {"user", "tradeDto"})
+  List<RsEventDto> findAllByOrderById(Pageable pageable);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<RsEventDto> findForUpdateById(int id);
+
   @Transactional
   void deleteAllByUserId(int userId);
+
+  @Query("select e.id from RsEventDto e where e.uniqueVoters > 0")
+  List<Integer> findAllIdsWithUniqueVoters();
+
+  @Modifying
+  @Query("update RsEventDto e set e.uniqueVoters = 0")
+  void resetUniqueVoters();
 }
@@ -0,0 +1,18 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.TradeRecordDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+public interface TradeRecordRepository extends CrudRepository<TradeRecordDto, Integer> {
+    List<TradeRecordDto> findAllByOrderByIdDesc(Pageable pageable);
+
+    List<TradeRecordDto> findAllByRankOrderByIdDesc(int rank, Pageable pageable);
+
+    @Query("select r from TradeRecordDto r where r.id in "
+            + "(select max(m.id) from TradeRecordDto m where m.accepted = true group by m.rank)")
+    List<TradeRecordDto> findLatestAcceptedPerRank();
+}
@@ -1,12 +1,18 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.TradeDto;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 
+import javax.persistence.LockModeType;
 import java.util.List;
 import java.util.Optional;
 
-public interface TradeRepository extends CrudRepository<TradeDto, Integer> {
+public interface TradeRepository extends JpaRepository<TradeDto, Integer> {
     List<TradeDto> findAll();
     Optional<TradeDto> findByRank(int rank);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<TradeDto> findForUpdateByRank(int rank);
+    List<TradeDto> findAllByRsEventDtoKeyword(String keyword);
 }
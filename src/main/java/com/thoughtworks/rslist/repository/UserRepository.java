@@ -1,10 +1,18 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.UserDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface UserRepository extends CrudRepository<UserDto, Integer> {
     List<UserDto> findAll();
+
+    // checks and spends the balance in one statement, so concurrent votes can't overspend it
+    @Modifying
+    @Query("update UserDto u set u.voteNum = u.voteNum - :voteNum where u.id = :id and u.voteNum >= :voteNum")
+    int spendVotes(@Param("id") int id, @Param("voteNum") int voteNum);
 }
@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.VoteSummaryDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface VoteSummaryRepository extends CrudRepository<VoteSummaryDto, VoteSummaryDto.Key> {
+    List<VoteSummaryDto> findAllByUserIdOrderByRsEventId(int userId);
+
+    List<VoteSummaryDto> findAllByRsEventIdOrderByTotalNumDescUserId(int rsEventId, Pageable pageable);
+
+    @Modifying
+    @Query("delete from VoteSummaryDto s where s.userId = :userId")
+    int deleteByUserId(@Param("userId") int userId);
+
+    @Modifying
+    @Query("delete from VoteSummaryDto s where s.rsEventId in :rsEventIds")
+    int deleteByRsEventIdIn(@Param("rsEventIds") Collection<Integer> rsEventIds);
+}
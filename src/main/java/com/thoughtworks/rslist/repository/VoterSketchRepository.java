@@ -0,0 +1,7 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.VoterSketchDto;
+import org.springframework.data.repository.CrudRepository;
+
+public interface VoterSketchRepository extends CrudRepository<VoterSketchDto, Integer> {
+}
@@ -0,0 +1,99 @@
+package com.thoughtworks.rslist.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps in-flight requests at a limit that follows observed latency. The limit grows by sqrt(limit)
+ * while latency stays within 1.5x of its long-term average and shrinks in proportion once it
+ * rises past that (a latency gradient); failed requests cut it by 10%. Samples taken while less
+ * than half the limit is in use say nothing about the limit and are skipped.
+ */
+public class AdaptiveLimiter {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long lastRttNanos;
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                shed.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        update(rttNanos, current, dropped);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("limit", limit);
+        metrics.put("inFlight", inFlight.get());
+        metrics.put("shed", shed.sum());
+        synchronized (this) {
+            metrics.put("longRttMillis", TimeUnit.NANOSECONDS.toMicros((long) longRttNanos) / 1000.0);
+            metrics.put("lastRttMillis", TimeUnit.NANOSECONDS.toMicros(lastRttNanos) / 1000.0);
+        }
+        return metrics;
+    }
+
+    private synchronized void update(long rttNanos, int inFlight, boolean dropped) {
+        lastRttNanos = rttNanos;
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF);
+            limit = (int) estimatedLimit;
+            return;
+        }
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        }
+        // latency fell well below the baseline: let the baseline catch up instead of waiting a window
+        if (longRttNanos > 2 * rttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (inFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / rttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
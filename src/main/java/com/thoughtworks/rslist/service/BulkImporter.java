@@ -0,0 +1,492 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.thoughtworks.rslist.domain.ImportReport;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.User;
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Loads users and events from CSV (with a header row) or NDJSON without going through JPA: the input
+ * is read a batch of lines at a time, each batch is parsed and validated in parallel against the same
+ * constraints as the API, and the valid rows are inserted as one JDBC batch in its own transaction.
+ * Ids come from hibernate_sequence so the rows look exactly like ones saved through the repositories,
+ * and each row gets its {@link ChangeLog} row in the same transaction. Event owners are checked in
+ * memory, which lets MySQL skip its own foreign key checks for the import session. Events are rejected
+ * as near-duplicates of existing events or of earlier rows of the same import, like
+ * {@code POST /rs/event} does, and indexed and ranked after each commit.
+ */
+@Service
+public class BulkImporter {
+    private static final Logger log = LoggerFactory.getLogger(BulkImporter.class);
+    private static final int MAX_REJECTED_ROWS = 100;
+    private static final long PROGRESS_EVERY = 100_000;
+
+    private final DataSource dataSource;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final RsEventSearchIndex rsEventSearchIndex;
+    private final DuplicateEventIndex duplicateEventIndex;
+    private final RankingVersion rankingVersion;
+    private final KeywordLeaderboards keywordLeaderboards;
+    private final ChangeLog changeLog;
+    private final int batchSize;
+
+    public BulkImporter(DataSource dataSource, Validator validator, ObjectMapper objectMapper,
+                        RsEventSearchIndex rsEventSearchIndex, DuplicateEventIndex duplicateEventIndex,
+                        RankingVersion rankingVersion, KeywordLeaderboards keywordLeaderboards,
+                        ChangeLog changeLog,
+                        @Value("${rs.import.batch-size:5000}") int batchSize) {
+        this.dataSource = dataSource;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.rsEventSearchIndex = rsEventSearchIndex;
+        this.duplicateEventIndex = duplicateEventIndex;
+        this.rankingVersion = rankingVersion;
+        this.keywordLeaderboards = keywordLeaderboards;
+        this.changeLog = changeLog;
+        this.batchSize = batchSize;
+    }
+
+    public ImportReport importUsers(InputStream in, String format) throws IOException, SQLException {
+        RowParser<User> parser = parser(format, User.class, (header, fields) -> {
+            User user = new User();
+            user.setUserName(field(header, fields, "userName"));
+            user.setGender(field(header, fields, "gender"));
+            user.setAge(Integer.parseInt(field(header, fields, "age")));
+            user.setEmail(field(header, fields, "email"));
+            user.setPhone(field(header, fields, "phone"));
+            return user;
+        });
+        return run(in, parser, "insert into user (id, name, gender, age, email, phone, vote_num) "
+                + "values (?, ?, ?, ?, ?, ?, ?)", new Target<User>() {
+            @Override
+            public String check(User user) {
+                return null;
+            }
+
+            @Override
+            public String admit(User user) {
+                return null;
+            }
+
+            @Override
+            public void bind(PreparedStatement statement, int id, User user) throws SQLException {
+                statement.setInt(1, id);
+                statement.setString(2, user.getUserName());
+                statement.setString(3, user.getGender());
+                statement.setInt(4, user.getAge());
+                statement.setString(5, user.getEmail());
+                statement.setString(6, user.getPhone());
+                statement.setInt(7, user.getVoteNum());
+            }
+
+            @Override
+            public void bindChange(PreparedStatement statement, int id, User user) throws SQLException {
+                statement.setString(1, ChangeLogDto.Type.USER_REGISTERED.name());
+                statement.setNull(2, Types.INTEGER);
+                statement.setInt(3, id);
+            }
+
+            @Override
+            public void afterCommit(int[] ids, List<User> users) {
+            }
+        });
+    }
+
+    public ImportReport importRsEvents(InputStream in, String format) throws IOException, SQLException {
+        BitSet userIds = loadUserIds();
+        RowParser<RsEvent> parser = parser(format, RsEvent.class, (header, fields) -> RsEvent.builder()
+                .eventName(field(header, fields, "eventName"))
+                .keyword(field(header, fields, "keyword"))
+                .userId(Integer.parseInt(field(header, fields, "userId")))
+                .build());
+        return run(in, parser, "insert into rs_event (id, event_name, keyword, vote_num, hot_score, unique_voters, "
+                + "user_id) values (?, ?, ?, 0, ?, 0, ?)", new Target<RsEvent>() {
+            // the rows admitted so far, so a row can't pass as new next to a near-duplicate earlier in the input
+            private final DuplicateEventIndex admitted = duplicateEventIndex.emptyCopy();
+            private int admittedCount;
+
+            @Override
+            public String check(RsEvent rsEvent) {
+                if (rsEvent.getUserId() < 0 || !userIds.get(rsEvent.getUserId())) {
+                    return "unknown userId";
+                }
+                return duplicateEventIndex.findDuplicate(rsEvent.getEventName(), rsEvent.getKeyword()).isPresent()
+                        ? "duplicate event" : null;
+            }
+
+            @Override
+            public String admit(RsEvent rsEvent) {
+                if (admitted.findDuplicate(rsEvent.getEventName(), rsEvent.getKeyword()).isPresent()) {
+                    return "duplicate event";
+                }
+                admitted.add(RsEventDto.builder().id(++admittedCount)
+                        .eventName(rsEvent.getEventName()).keyword(rsEvent.getKeyword()).build());
+                return null;
+            }
+
+            @Override
+            public void bind(PreparedStatement statement, int id, RsEvent rsEvent) throws SQLException {
+                statement.setInt(1, id);
+                statement.setString(2, rsEvent.getEventName());
+                statement.setString(3, rsEvent.getKeyword());
+                statement.setNull(4, Types.DOUBLE);
+                statement.setInt(5, rsEvent.getUserId());
+            }
+
+            @Override
+            public void bindChange(PreparedStatement statement, int id, RsEvent rsEvent) throws SQLException {
+                statement.setString(1, ChangeLogDto.Type.RS_EVENT_ADDED.name());
+                statement.setInt(2, id);
+                statement.setInt(3, rsEvent.getUserId());
+            }
+
+            @Override
+            public void afterCommit(int[] ids, List<RsEvent> rsEvents) {
+                List<RsEventDto> rsEventDtos = new ArrayList<>(rsEvents.size());
+                for (int i = 0; i < rsEvents.size(); i++) {
+                    rsEventDtos.add(RsEventDto.builder()
+                            .id(ids[i])
+                            .eventName(rsEvents.get(i).getEventName())
+                            .keyword(rsEvents.get(i).getKeyword())
+                            .user(UserDto.builder().id(rsEvents.get(i).getUserId()).build())
+                            .build());
+                }
+                rsEventSearchIndex.addAll(rsEventDtos);
+                duplicateEventIndex.addAll(rsEventDtos);
+                rsEventDtos.forEach(keywordLeaderboards::upsert);
+                rankingVersion.bumpAfterCommit();
+            }
+        });
+    }
+
+    private <T> ImportReport run(InputStream in, RowParser<T> parser, String sql, Target<T> target)
+            throws IOException, SQLException {
+        ImportReport report = new ImportReport();
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        try (Connection connection = dataSource.getConnection()) {
+            boolean mysql = connection.getMetaData().getDatabaseProductName().startsWith("MySQL");
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            if (mysql) {
+                execute(connection, "set foreign_key_checks = 0");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                 PreparedStatement changes = connection.prepareStatement("insert into change_log "
+                         + "(type, rs_event_id, user_id, id, origin, created_at) values (?, ?, ?, ?, ?, ?)")) {
+                List<String> lines = new ArrayList<>(batchSize);
+                long[] lineNumbers = new long[batchSize];
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isEmpty() || parser.isHeader(line)) {
+                        continue;
+                    }
+                    lineNumbers[lines.size()] = lineNumber;
+                    lines.add(line);
+                    if (lines.size() == batchSize) {
+                        importBatch(connection, statement, changes, lines, lineNumbers, parser, target, mysql, report);
+                        lines.clear();
+                    }
+                }
+                importBatch(connection, statement, changes, lines, lineNumbers, parser, target, mysql, report);
+            } finally {
+                if (mysql) {
+                    execute(connection, "set foreign_key_checks = 1");
+                }
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        report.setRowsPerSecond((report.getImported() + report.getRejected()) * 1_000_000_000L / elapsedNanos);
+        log.info("import finished: {} imported, {} rejected, {} rows/s",
+                report.getImported(), report.getRejected(), report.getRowsPerSecond());
+        return report;
+    }
+
+    private <T> void importBatch(Connection connection, PreparedStatement statement, PreparedStatement changes,
+                                 List<String> lines, long[] lineNumbers, RowParser<T> parser, Target<T> target,
+                                 boolean mysql, ImportReport report) throws SQLException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Object[] parsed = new Object[lines.size()];
+        IntStream.range(0, lines.size()).parallel().forEach(i -> parsed[i] = parse(lines.get(i), parser, target));
+        List<T> batch = new ArrayList<>(lines.size());
+        for (int i = 0; i < parsed.length; i++) {
+            if (parsed[i] instanceof Rejection) {
+                reject(report, lineNumbers[i], ((Rejection) parsed[i]).error);
+            } else {
+                @SuppressWarnings("unchecked")
+                T row = (T) parsed[i];
+                String error = target.admit(row);
+                if (error == null) {
+                    batch.add(row);
+                } else {
+                    reject(report, lineNumbers[i], error);
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        // the rows' ids, then their change log rows' ids
+        int[] ids = allocateIds(connection, 2 * batch.size(), mysql);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                target.bind(statement, ids[i], batch.get(i));
+                statement.addBatch();
+                target.bindChange(changes, ids[i], batch.get(i));
+                changes.setInt(4, ids[batch.size() + i]);
+                changes.setString(5, changeLog.origin());
+                changes.setTimestamp(6, now);
+                changes.addBatch();
+            }
+            statement.executeBatch();
+            changes.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        target.afterCommit(ids, batch);
+        long before = report.getImported();
+        report.setImported(before + batch.size());
+        if (before / PROGRESS_EVERY != report.getImported() / PROGRESS_EVERY) {
+            log.info("import progress: {} imported, {} rejected", report.getImported(), report.getRejected());
+        }
+    }
+
+    private <T> Object parse(String line, RowParser<T> parser, Target<T> target) {
+        String error;
+        try {
+            T row = parser.parse(line);
+            error = validate(row);
+            if (error == null) {
+                error = target.check(row);
+            }
+            if (error == null) {
+                return row;
+            }
+        } catch (RuntimeException | IOException e) {
+            error = "malformed row";
+        }
+        return new Rejection(error);
+    }
+
+    private int[] allocateIds(Connection connection, int count, boolean mysql) throws SQLException {
+        int[] ids = new int[count];
+        if (mysql) {
+            // the sequence row is locked on its own connection and released at once, as Hibernate's table
+            // generator does, so JPA inserts don't wait for the whole batch
+            try (Connection sequence = dataSource.getConnection()) {
+                sequence.setAutoCommit(false);
+                try (Statement statement = sequence.createStatement();
+                     ResultSet resultSet = statement.executeQuery("select next_val from hibernate_sequence for update")) {
+                    resultSet.next();
+                    long first = resultSet.getLong(1);
+                    statement.executeUpdate("update hibernate_sequence set next_val = " + (first + count));
+                    sequence.commit();
+                    for (int i = 0; i < count; i++) {
+                        ids[i] = (int) (first + i);
+                    }
+                } catch (SQLException e) {
+                    sequence.rollback();
+                    throw e;
+                }
+            }
+            return ids;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select next value for hibernate_sequence from system_range(1, ?)")) {
+            statement.setInt(1, count);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                for (int i = 0; resultSet.next(); i++) {
+                    ids[i] = resultSet.getInt(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private BitSet loadUserIds() throws SQLException {
+        BitSet userIds = new BitSet();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select id from user")) {
+            while (resultSet.next()) {
+                userIds.set(resultSet.getInt(1));
+            }
+        }
+        return userIds;
+    }
+
+    private String validate(Object row) {
+        Set<ConstraintViolation<Object>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        ConstraintViolation<Object> violation = violations.iterator().next();
+        return violation.getPropertyPath() + " " + violation.getMessage();
+    }
+
+    private static void reject(ImportReport report, long line, String error) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getRejectedRows().size() < MAX_REJECTED_ROWS) {
+            report.getRejectedRows().add(new ImportReport.RejectedRow(line, error));
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private <T> RowParser<T> parser(String format, Class<T> type, CsvMapper<T> csvMapper) {
+        if ("ndjson".equals(format)) {
+            ObjectReader objectReader = objectMapper.readerFor(type);
+            return new RowParser<T>() {
+                @Override
+                public boolean isHeader(String line) {
+                    return false;
+                }
+
+                @Override
+                public T parse(String line) throws IOException {
+                    return objectReader.readValue(line);
+                }
+            };
+        }
+        if ("csv".equals(format)) {
+            return new RowParser<T>() {
+                private Map<String, Integer> header;
+
+                @Override
+                public boolean isHeader(String line) {
+                    if (header != null) {
+                        return false;
+                    }
+                    header = new HashMap<>();
+                    List<String> names = splitCsv(line);
+                    for (int i = 0; i < names.size(); i++) {
+                        header.put(names.get(i).trim(), i);
+                    }
+                    return true;
+                }
+
+                @Override
+                public T parse(String line) {
+                    return csvMapper.map(header, splitCsv(line));
+                }
+            };
+        }
+        throw new RequestNotValidException("invalid format");
+    }
+
+    private static String field(Map<String, Integer> header, List<String> fields, String name) {
+        Integer index = header.get(name);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private interface RowParser<T> {
+        boolean isHeader(String line);
+
+        T parse(String line) throws IOException;
+    }
+
+    @AllArgsConstructor
+    private static class Rejection {
+        private final String error;
+    }
+
+    private interface CsvMapper<T> {
+        T map(Map<String, Integer> header, List<String> fields);
+    }
+
+    private interface Target<T> {
+        // runs on the parse threads
+        String check(T row);
+
+        // runs in input order, after the row passed check
+        String admit(T row);
+
+        void bind(PreparedStatement statement, int id, T row) throws SQLException;
+
+        // binds the change's type, event and user
+        void bindChange(PreparedStatement statement, int id, T row) throws SQLException;
+
+        void afterCommit(int[] ids, List<T> rows);
+    }
+}
@@ -0,0 +1,199 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.repository.ChangeLogRepository;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.criteria.Predicate;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The {@code changeLog} table, which lets every node see the writes taken by the others without a
+ * broker. Writers {@link #record} a row inside their own transaction; each node polls for rows past
+ * its cursor and publishes the ones written elsewhere as application events.
+ * <p>
+ * Ids are handed out before commit, so a row can become visible after one with a higher id. Each
+ * poll reads on from the highest id seen so far, and every id skipped on the way is kept as a gap
+ * that later polls re-query until it is older than {@code settle}; {@code settle} has to outlast
+ * the longest write transaction. The cursor stays below the oldest open gap.
+ */
+@Service
+public class ChangeLog {
+    private static final Logger log = LoggerFactory.getLogger(ChangeLog.class);
+
+    private final ChangeLogRepository changeLogRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final Duration settle;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxGaps;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<Integer> publishedAboveCursor = new HashSet<>();
+    // open id ranges below readAhead, oldest ids first
+    private final List<Gap> gaps = new ArrayList<>();
+    private int cursor;
+    private int readAhead;
+
+    public ChangeLog(ChangeLogRepository changeLogRepository,
+                     ApplicationEventPublisher applicationEventPublisher,
+                     @Value("${rs.change-log.settle:10s}") Duration settle,
+                     @Value("${rs.change-log.retention:1d}") Duration retention,
+                     @Value("${rs.change-log.batch-size:500}") int batchSize,
+                     @Value("${rs.change-log.max-gaps:64}") int maxGaps) {
+        this.changeLogRepository = changeLogRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.settle = settle;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.maxGaps = maxGaps;
+    }
+
+    // in-memory state is built from the tables at startup, so older rows are already reflected
+    @PostConstruct
+    public synchronized void start() {
+        cursor = changeLogRepository.findMaxId();
+        readAhead = cursor;
+    }
+
+    synchronized int cursor() {
+        return cursor;
+    }
+
+    String origin() {
+        return nodeId;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(ChangeLogDto.Type type, Integer rsEventId, Integer userId, Integer rank) {
+        changeLogRepository.save(ChangeLogDto.builder()
+                .type(type)
+                .origin(nodeId)
+                .rsEventId(rsEventId)
+                .userId(userId)
+                .rank(rank)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordVote(int rsEventId, int userId, int voteId) {
+        changeLogRepository.save(ChangeLogDto.builder()
+                .type(ChangeLogDto.Type.RS_EVENT_VOTED)
+                .origin(nodeId)
+                .rsEventId(rsEventId)
+                .userId(userId)
+                .voteId(voteId)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * @return how many changes from other nodes were published
+     */
+    @Scheduled(fixedDelayString = "${rs.change-log.poll-interval:500}")
+    public synchronized int poll() {
+        LocalDateTime now = LocalDateTime.now();
+        int published = 0;
+        if (!gaps.isEmpty()) {
+            for (ChangeLogDto change : changeLogRepository.findAll(inGaps(gaps), Sort.by("id"))) {
+                published += publish(change);
+                fill(change.getId());
+            }
+        }
+        List<ChangeLogDto> changes;
+        do {
+            changes = changeLogRepository.findAllByIdGreaterThanOrderById(readAhead, PageRequest.of(0, batchSize));
+            for (ChangeLogDto change : changes) {
+                if (change.getId() > readAhead + 1) {
+                    gaps.add(new Gap(readAhead, change.getId(), now));
+                }
+                readAhead = change.getId();
+                published += publish(change);
+            }
+        } while (changes.size() == batchSize);
+        LocalDateTime settled = now.minus(settle);
+        gaps.removeIf(gap -> gap.seenAt.isBefore(settled));
+        while (gaps.size() > maxGaps) {
+            mergeClosestGaps();
+        }
+        cursor = gaps.isEmpty() ? readAhead : gaps.get(0).from;
+        publishedAboveCursor.removeIf(id -> id <= cursor);
+        return published;
+    }
+
+    private int publish(ChangeLogDto change) {
+        if (publishedAboveCursor.add(change.getId()) && !nodeId.equals(change.getOrigin())) {
+            applicationEventPublisher.publishEvent(change);
+            return 1;
+        }
+        return 0;
+    }
+
+    private void fill(int id) {
+        for (int i = 0; i < gaps.size(); i++) {
+            Gap gap = gaps.get(i);
+            if (id > gap.from && id < gap.to) {
+                gaps.remove(i);
+                if (id + 1 < gap.to) {
+                    gaps.add(i, new Gap(id, gap.to, gap.seenAt));
+                }
+                if (gap.from + 1 < id) {
+                    gaps.add(i, new Gap(gap.from, id, gap.seenAt));
+                }
+                return;
+            }
+        }
+    }
+
+    // a merged gap also spans rows already published, which the published set filters out again
+    private void mergeClosestGaps() {
+        int closest = 0;
+        for (int i = 1; i + 1 < gaps.size(); i++) {
+            if (gaps.get(i + 1).from - gaps.get(i).to < gaps.get(closest + 1).from - gaps.get(closest).to) {
+                closest = i;
+            }
+        }
+        Gap left = gaps.get(closest);
+        Gap right = gaps.remove(closest + 1);
+        gaps.set(closest, new Gap(left.from, right.to, left.seenAt.isAfter(right.seenAt) ? left.seenAt : right.seenAt));
+    }
+
+    private static Specification<ChangeLogDto> inGaps(List<Gap> gaps) {
+        return (root, query, builder) -> builder.or(gaps.stream()
+                .map(gap -> builder.and(builder.greaterThan(root.get("id"), gap.from),
+                        builder.lessThan(root.get("id"), gap.to)))
+                .toArray(Predicate[]::new));
+    }
+
+    @Scheduled(cron = "${rs.change-log.prune-cron:0 0 4 * * *}")
+    public void prune() {
+        int deleted = changeLogRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        log.info("pruned {} change log rows older than {}", deleted, retention);
+    }
+
+    @AllArgsConstructor
+    private static class Gap {
+        // exclusive bounds
+        private final int from;
+        private final int to;
+        private final LocalDateTime seenAt;
+    }
+}
@@ -0,0 +1,92 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Optional;
+
+/**
+ * Patches this node's in-memory state with writes other nodes took, as published by {@link ChangeLog}.
+ * Events are reloaded rather than trusted from the log, so replaying a change twice is harmless.
+ */
+@Component
+public class ChangeLogApplier {
+    private final RsEventRepository rsEventRepository;
+    private final RsEventSearchIndex rsEventSearchIndex;
+    private final DuplicateEventIndex duplicateEventIndex;
+    private final TopBidIndex topBidIndex;
+    private final RankingVersion rankingVersion;
+    private final KeywordLeaderboards keywordLeaderboards;
+    private final TradeRepository tradeRepository;
+    private final VoteRepository voteRepository;
+    private final VoteColumnStore voteColumnStore;
+
+    public ChangeLogApplier(RsEventRepository rsEventRepository,
+                            RsEventSearchIndex rsEventSearchIndex,
+                            DuplicateEventIndex duplicateEventIndex,
+                            TopBidIndex topBidIndex,
+                            RankingVersion rankingVersion,
+                            KeywordLeaderboards keywordLeaderboards,
+                            TradeRepository tradeRepository,
+                            VoteRepository voteRepository,
+                            VoteColumnStore voteColumnStore) {
+        this.rsEventRepository = rsEventRepository;
+        this.rsEventSearchIndex = rsEventSearchIndex;
+        this.duplicateEventIndex = duplicateEventIndex;
+        this.topBidIndex = topBidIndex;
+        this.rankingVersion = rankingVersion;
+        this.keywordLeaderboards = keywordLeaderboards;
+        this.tradeRepository = tradeRepository;
+        this.voteRepository = voteRepository;
+        this.voteColumnStore = voteColumnStore;
+    }
+
+    @EventListener
+    public void apply(ChangeLogDto change) {
+        switch (change.getType()) {
+            case RS_EVENT_VOTED:
+                if (change.getVoteId() != null) {
+                    voteRepository.findById(change.getVoteId()).ifPresent(voteColumnStore::append);
+                }
+                // fall through
+            case RS_EVENT_ADDED:
+                Optional<RsEventDto> rsEventDto = rsEventRepository.findById(change.getRsEventId());
+                if (rsEventDto.isPresent()) {
+                    rsEventSearchIndex.add(rsEventDto.get());
+                    duplicateEventIndex.add(rsEventDto.get());
+                    keywordLeaderboards.upsert(rsEventDto.get());
+                } else {
+                    remove(change.getRsEventId());
+                }
+                rankingVersion.bumpAfterCommit();
+                break;
+            case RS_EVENT_REMOVED:
+                remove(change.getRsEventId());
+                voteColumnStore.removeVotes(null, Collections.singleton(change.getRsEventId()));
+                rankingVersion.bumpAfterCommit();
+                break;
+            case RS_EVENT_TRADED:
+                topBidIndex.refresh(change.getRank());
+                tradeRepository.findByRank(change.getRank()).ifPresent(keywordLeaderboards::putTrade);
+                rankingVersion.bumpAfterCommit();
+                break;
+            case USER_DELETED:
+                voteColumnStore.removeVotes(change.getUserId(), Collections.emptySet());
+                break;
+            default:
+                // registering a user changes nothing held in memory
+        }
+    }
+
+    private void remove(int rsEventId) {
+        rsEventSearchIndex.remove(rsEventId);
+        duplicateEventIndex.remove(rsEventId);
+        keywordLeaderboards.remove(rsEventId);
+    }
+}
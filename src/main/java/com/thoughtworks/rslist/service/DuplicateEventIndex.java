@@ -0,0 +1,211 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.sketch.MinHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * MinHash/LSH index over the character bigrams of {@code eventName} and {@code keyword}.
+ *
+ * <p>Signatures are split into {@value #BANDS} bands of {@value #ROWS} rows; two events become
+ * candidates when any band matches exactly, which happens with probability
+ * {@code 1 - (1 - J^ROWS)^BANDS} for Jaccard similarity {@code J} (about 0.99 at J = 0.6,
+ * 0.42 at J = 0.3). Candidates are then confirmed against the full signature.
+ */
+@Component
+public class DuplicateEventIndex {
+    private static final int BANDS = 20;
+    private static final int ROWS = 3;
+
+    private final RsEventRepository rsEventRepository;
+    private final double threshold;
+    private final MinHash minHash = new MinHash(BANDS * ROWS);
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final List<Map<Long, List<Integer>>> bands = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // event ids are positive, so reservations count down from zero
+    private final AtomicInteger reservations = new AtomicInteger();
+
+    public DuplicateEventIndex(RsEventRepository rsEventRepository,
+                               @Value("${rs.duplicate.threshold:0.6}") double threshold) {
+        this.rsEventRepository = rsEventRepository;
+        this.threshold = threshold;
+        for (int i = 0; i < BANDS; i++) {
+            bands.add(new HashMap<>());
+        }
+    }
+
+    // an empty index with the same threshold, for checking a set of events against each other
+    public DuplicateEventIndex emptyCopy() {
+        return new DuplicateEventIndex(rsEventRepository, threshold);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<RsEventDto> rsEventDtos = rsEventRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            signatures.clear();
+            bands.forEach(Map::clear);
+            for (RsEventDto rsEventDto : rsEventDtos) {
+                int[] signature = signature(rsEventDto.getEventName(), rsEventDto.getKeyword());
+                if (signature != null) {
+                    doAdd(rsEventDto.getId(), signature);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Integer> findDuplicate(String eventName, String keyword) {
+        int[] signature = signature(eventName, keyword);
+        if (signature == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            return doFind(signature);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks for a near-duplicate and, when there is none, indexes the event under a provisional id in
+     * the same step, so of two concurrent near-duplicates only one gets through. The caller removes the
+     * reservation once the event is saved and indexed under its own id, or failed to save.
+     *
+     * @return the provisional id, or empty when the event is a near-duplicate
+     */
+    public OptionalInt reserve(String eventName, String keyword) {
+        int reservation = reservations.decrementAndGet();
+        int[] signature = signature(eventName, keyword);
+        if (signature == null) {
+            return OptionalInt.of(reservation);
+        }
+        lock.writeLock().lock();
+        try {
+            if (doFind(signature).isPresent()) {
+                return OptionalInt.empty();
+            }
+            doAdd(reservation, signature);
+            return OptionalInt.of(reservation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Optional<Integer> doFind(int[] signature) {
+        Set<Integer> candidates = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            candidates.addAll(bands.get(band).getOrDefault(bandKey(signature, band), Collections.emptyList()));
+        }
+        Integer duplicate = null;
+        double best = threshold;
+        for (Integer candidate : candidates) {
+            double similarity = MinHash.similarity(signature, signatures.get(candidate));
+            if (similarity >= best) {
+                best = similarity;
+                duplicate = candidate;
+            }
+        }
+        return Optional.ofNullable(duplicate);
+    }
+
+    public void add(RsEventDto rsEventDto) {
+        int[] signature = signature(rsEventDto.getEventName(), rsEventDto.getKeyword());
+        lock.writeLock().lock();
+        try {
+            doRemove(rsEventDto.getId());
+            if (signature != null) {
+                doAdd(rsEventDto.getId(), signature);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(List<RsEventDto> rsEventDtos) {
+        int[][] computed = rsEventDtos.parallelStream()
+                .map(rsEventDto -> signature(rsEventDto.getEventName(), rsEventDto.getKeyword()))
+                .toArray(int[][]::new);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < computed.length; i++) {
+                doRemove(rsEventDtos.get(i).getId());
+                if (computed[i] != null) {
+                    doAdd(rsEventDtos.get(i).getId(), computed[i]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int rsEventId) {
+        lock.writeLock().lock();
+        try {
+            doRemove(rsEventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void doAdd(int rsEventId, int[] signature) {
+        signatures.put(rsEventId, signature);
+        for (int band = 0; band < BANDS; band++) {
+            bands.get(band).computeIfAbsent(bandKey(signature, band), key -> new ArrayList<>(1)).add(rsEventId);
+        }
+    }
+
+    private void doRemove(int rsEventId) {
+        int[] signature = signatures.remove(rsEventId);
+        if (signature == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(signature, band);
+            List<Integer> ids = bands.get(band).get(key);
+            ids.remove(Integer.valueOf(rsEventId));
+            if (ids.isEmpty()) {
+                bands.get(band).remove(key);
+            }
+        }
+    }
+
+    private int[] signature(String eventName, String keyword) {
+        Set<String> shingles = RsEventSearchIndex.grams(eventName, 2);
+        shingles.addAll(RsEventSearchIndex.grams(keyword, 2));
+        if (shingles.isEmpty()) {
+            shingles.addAll(RsEventSearchIndex.grams(eventName, 1));
+            shingles.addAll(RsEventSearchIndex.grams(keyword, 1));
+        }
+        return shingles.isEmpty() ? null : minHash.signature(shingles);
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = 0;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = key * 0x9E3779B97F4A7C15L + signature[row];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,92 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.config.ReplicaRoutingDataSource;
+import com.thoughtworks.rslist.exception.ExecutorBusyException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs request handlers off the container threads on a fixed-size pool with a bounded queue; a full
+ * queue fails the request with 503 instead of queueing it unboundedly. Tasks run inside
+ * {@code transactionTemplate} when one is given, with the submitting thread's replica choice.
+ */
+public class HandlerExecutor {
+    private final String name;
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final TransactionTemplate transactionTemplate;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+
+    public HandlerExecutor(String name, int poolSize, int queueCapacity, TransactionTemplate transactionTemplate) {
+        this.name = name;
+        this.transactionTemplate = transactionTemplate;
+        executor.setThreadNamePrefix("rs-" + name + "-");
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.initialize();
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        boolean useReplicas = ReplicaRoutingDataSource.isUsingReplicas();
+        long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long wait = System.nanoTime() - submitted;
+                started.increment();
+                totalWaitNanos.add(wait);
+                maxWaitNanos.accumulate(wait);
+                if (useReplicas) {
+                    ReplicaRoutingDataSource.useReplicas();
+                }
+                try {
+                    future.complete(transactionTemplate == null
+                            ? task.get()
+                            : transactionTemplate.execute(status -> task.get()));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    ReplicaRoutingDataSource.reset();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            future.completeExceptionally(new ExecutorBusyException(name));
+        }
+        return future;
+    }
+
+    public Map<String, Object> metrics() {
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        long startedCount = started.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("poolSize", pool.getPoolSize());
+        metrics.put("maxPoolSize", pool.getMaximumPoolSize());
+        metrics.put("activeThreads", pool.getActiveCount());
+        metrics.put("queueDepth", pool.getQueue().size());
+        metrics.put("queueCapacity", pool.getQueue().size() + pool.getQueue().remainingCapacity());
+        metrics.put("completed", pool.getCompletedTaskCount());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("avgWaitMillis", startedCount == 0
+                ? 0.0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum() / startedCount) / 1000.0);
+        metrics.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()) / 1000.0);
+        return metrics;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
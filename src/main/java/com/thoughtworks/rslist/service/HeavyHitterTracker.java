@@ -0,0 +1,57 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.sketch.Counter;
+import com.thoughtworks.rslist.sketch.WindowedSpaceSaving;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class HeavyHitterTracker {
+    private static final int STRIPES = 8;
+
+    private final WindowedSpaceSaving[] rsEvents = new WindowedSpaceSaving[STRIPES];
+    private final WindowedSpaceSaving[] users = new WindowedSpaceSaving[STRIPES];
+
+    public HeavyHitterTracker(@Value("${rs.heavy-hitters.capacity:64}") int capacity,
+                              @Value("${rs.heavy-hitters.window:10m}") Duration window,
+                              @Value("${rs.heavy-hitters.buckets:10}") int buckets) {
+        for (int i = 0; i < STRIPES; i++) {
+            rsEvents[i] = new WindowedSpaceSaving(capacity, window.toMillis(), buckets);
+            users[i] = new WindowedSpaceSaving(capacity, window.toMillis(), buckets);
+        }
+    }
+
+    public void recordVote(int userId, int rsEventId, int voteNum) {
+        long now = System.currentTimeMillis();
+        stripe(rsEvents, rsEventId).add(rsEventId, voteNum, now);
+        stripe(users, userId).add(userId, 1, now);
+    }
+
+    public List<Counter> topRsEvents(int k) {
+        return top(rsEvents, k);
+    }
+
+    public List<Counter> topUsers(int k) {
+        return top(users, k);
+    }
+
+    private static WindowedSpaceSaving stripe(WindowedSpaceSaving[] stripes, int key) {
+        int hash = key * 0x9E3779B9;
+        return stripes[(hash >>> 16) & (STRIPES - 1)];
+    }
+
+    // a key always lands in the same stripe, so stripes hold disjoint keys and merge by concatenation
+    private static List<Counter> top(WindowedSpaceSaving[] stripes, int k) {
+        long now = System.currentTimeMillis();
+        List<Counter> counters = new ArrayList<>();
+        for (WindowedSpaceSaving stripe : stripes) {
+            counters.addAll(stripe.top(k, now));
+        }
+        counters.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return counters.size() > k ? new ArrayList<>(counters.subList(0, k)) : counters;
+    }
+}
@@ -0,0 +1,58 @@
+package com.thoughtworks.rslist.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Exponentially decayed hotness kept in log space.
+ *
+ * <p>The decayed score of an event at time {@code now} is {@code sum(num_i * exp(-lambda * (now - t_i)))}.
+ * Since {@code exp(-lambda * now)} is the same factor for every event, ranking only needs
+ * {@code log(sum(num_i * exp(lambda * (t_i - EPOCH))))}, which a new vote updates in O(1)
+ * with a log-add-exp and which never has to be rescored as time passes.
+ */
+@Component
+public class HotnessCalculator {
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private final double lambda;
+
+    public HotnessCalculator(@Value("${rs.hot.half-life:6h}") Duration halfLife) {
+        if (halfLife.isZero() || halfLife.isNegative()) {
+            throw new IllegalArgumentException("half-life must be positive");
+        }
+        this.lambda = Math.log(2) / halfLife.getSeconds();
+    }
+
+    public Double addVote(Double logScore, int voteNum, LocalDateTime time) {
+        if (voteNum <= 0) {
+            return logScore;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (time == null || time.isAfter(now)) {
+            time = now;
+        }
+        double voteScore = Math.log(voteNum) + lambda * secondsSinceEpoch(time);
+        if (logScore == null) {
+            return voteScore;
+        }
+        double max = Math.max(logScore, voteScore);
+        double min = Math.min(logScore, voteScore);
+        return max + Math.log1p(Math.exp(min - max));
+    }
+
+    public double decayedScore(Double logScore, LocalDateTime now) {
+        if (logScore == null) {
+            return 0;
+        }
+        return Math.exp(logScore - lambda * secondsSinceEpoch(now));
+    }
+
+    private static long secondsSinceEpoch(LocalDateTime time) {
+        return EPOCH.until(time, ChronoUnit.SECONDS);
+    }
+}
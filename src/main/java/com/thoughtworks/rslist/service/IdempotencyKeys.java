@@ -0,0 +1,215 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.IdempotencyKeyDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs a write at most once per {@code Idempotency-Key} and answers retries with the status it
+ * got, without running it again. Recent keys live in a bounded map, where a retry racing the
+ * original waits for the same future. Older keys and other nodes' keys are found in the
+ * {@code idempotencyKey} table, whose row is inserted in the write's transaction: of two nodes
+ * running the same key, the second fails on the primary key and its write rolls back with it.
+ * <p>
+ * Keys are scoped to the user sending them, and a request is told apart by the SHA-256 of what it
+ * stands for. Only the status is kept, which is all vote and buy answer with. A write that throws
+ * leaves no trace, so its retry runs again.
+ */
+@Service
+public class IdempotencyKeys {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeys.class);
+    static final String REPLAYED = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long memoryTtlNanos;
+    private final Duration retention;
+    private final int maxKeys;
+    private final int evictTo;
+    private final ConcurrentHashMap<String, Outcome> recent = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public IdempotencyKeys(IdempotencyKeyRepository idempotencyKeyRepository,
+                           DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${rs.idempotency.memory-ttl:10m}") Duration memoryTtl,
+                           @Value("${rs.idempotency.retention:1d}") Duration retention,
+                           @Value("${rs.idempotency.max-keys:100000}") int maxKeys) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.memoryTtlNanos = memoryTtl.toNanos();
+        this.retention = retention;
+        this.maxKeys = maxKeys;
+        this.evictTo = maxKeys - Math.max(1, maxKeys / 10);
+    }
+
+    /**
+     * @param user    whose key it is; the same key sent by another user is another key
+     * @param request what the key stands for; reusing a key for a different request is rejected
+     * @param admit   runs only when the write is about to run, so a retry answered from the key is
+     *                never refused by it
+     */
+    public CompletableFuture<ResponseEntity> submit(Object user, String clientKey, String request,
+                                                    HandlerExecutor executor, Runnable admit,
+                                                    Supplier<ResponseEntity> write) {
+        if (clientKey.isEmpty() || clientKey.length() > MAX_KEY_LENGTH) {
+            throw new RequestNotValidException("invalid idempotency key");
+        }
+        String key = user + ":" + clientKey;
+        String requestHash = fingerprint(request);
+        long now = System.nanoTime();
+        Outcome outcome = new Outcome(requestHash, now);
+        Outcome existing = recent.get(key);
+        if (existing == null || existing.expired(now, memoryTtlNanos)) {
+            if (recent.size() >= maxKeys) {
+                evict(now);
+            }
+            existing = existing == null
+                    ? recent.putIfAbsent(key, outcome)
+                    : recent.replace(key, existing, outcome) ? null : recent.get(key);
+        }
+        if (existing != null) {
+            if (!existing.requestHash.equals(requestHash)) {
+                throw new RequestNotValidException("idempotency key reused for another request");
+            }
+            return respond(existing.response, true);
+        }
+
+        executor.submit(() -> run(key, requestHash, admit, write)).whenComplete((response, e) -> {
+            if (e != null) {
+                recent.remove(key, outcome);
+                outcome.response.completeExceptionally(e);
+            } else {
+                outcome.response.complete(response);
+            }
+        });
+        return respond(outcome.response, false);
+    }
+
+    // completes with the write's own exception rather than a CompletionException, so handlers still match it
+    private static CompletableFuture<ResponseEntity> respond(CompletableFuture<ResponseEntity<Object>> source,
+                                                             boolean replayed) {
+        CompletableFuture<ResponseEntity> response = new CompletableFuture<>();
+        source.whenComplete((result, e) -> {
+            if (e != null) {
+                response.completeExceptionally(e);
+            } else {
+                response.complete(replayed ? replay(result.getStatusCodeValue()) : result);
+            }
+        });
+        return response;
+    }
+
+    private ResponseEntity<Object> run(String key, String requestHash, Runnable admit,
+                                       Supplier<ResponseEntity> write) {
+        Optional<ResponseEntity<Object>> stored = findStored(key, requestHash);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        admit.run();
+        try {
+            return transactionTemplate.execute(transaction -> {
+                ResponseEntity response = write.get();
+                jdbcTemplate.update("insert into idempotency_key (request_key, request_hash, status, created_at) "
+                                + "values (?, ?, ?, ?)",
+                        key, requestHash, response.getStatusCodeValue(), Timestamp.valueOf(LocalDateTime.now()));
+                return ResponseEntity.status(response.getStatusCode()).build();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // another node ran this key first and our write has rolled back
+            return findStored(key, requestHash).orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<ResponseEntity<Object>> findStored(String key, String requestHash) {
+        Optional<IdempotencyKeyDto> stored = idempotencyKeyRepository.findById(key);
+        if (stored.isPresent() && !stored.get().getRequestHash().equals(requestHash)) {
+            throw new RequestNotValidException("idempotency key reused for another request");
+        }
+        return stored.map(idempotencyKeyDto -> replay(idempotencyKeyDto.getStatus()));
+    }
+
+    private static String fingerprint(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ResponseEntity<Object> replay(int status) {
+        return ResponseEntity.status(status).header(REPLAYED, "true").build();
+    }
+
+    @Scheduled(cron = "${rs.idempotency.prune-cron:0 45 * * * *}")
+    public void prune() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        log.info("pruned {} idempotency keys older than {}", deleted, retention);
+    }
+
+    int size() {
+        return recent.size();
+    }
+
+    // only finished writes can go; a key still running has to keep catching its retries
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            recent.values().removeIf(outcome -> outcome.expired(now, memoryTtlNanos));
+            Iterator<Outcome> iterator = recent.values().iterator();
+            while (recent.size() > evictTo && iterator.hasNext()) {
+                if (iterator.next().response.isDone()) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static class Outcome {
+        final String requestHash;
+        final long createdAt;
+        final CompletableFuture<ResponseEntity<Object>> response = new CompletableFuture<>();
+
+        Outcome(String requestHash, long createdAt) {
+            this.requestHash = requestHash;
+            this.createdAt = createdAt;
+        }
+
+        boolean expired(long now, long ttlNanos) {
+            return response.isDone() && now - createdAt > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One leaderboard per keyword, each a copy of just that keyword's events and paid ranks behind its
+ * own lock, so ranking a category or voting in it never touches another. A partition is loaded from
+ * the keyword index the first time it is asked for and dropped after {@code idle} without reads;
+ * writes to a keyword nobody has asked for are ignored, since the next load reads them anyway.
+ */
+@Component
+public class KeywordLeaderboards {
+    private final RsEventRepository rsEventRepository;
+    private final TradeRepository tradeRepository;
+    private final long idleNanos;
+    private final int maxPartitions;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    public KeywordLeaderboards(RsEventRepository rsEventRepository,
+                               TradeRepository tradeRepository,
+                               @Value("${rs.leaderboard.idle:10m}") Duration idle,
+                               @Value("${rs.leaderboard.max-partitions:1000}") int maxPartitions) {
+        this.rsEventRepository = rsEventRepository;
+        this.tradeRepository = tradeRepository;
+        this.idleNanos = idle.toNanos();
+        this.maxPartitions = maxPartitions;
+    }
+
+    public List<RsEvent> list(String keyword, Comparator<RsEventDto> order) {
+        Partition partition = partitions.computeIfAbsent(keyword, Partition::new);
+        partition.lastRead = System.nanoTime();
+        partition.load();
+        return partition.rank(order);
+    }
+
+    public boolean isLoaded(String keyword) {
+        return partitions.containsKey(keyword);
+    }
+
+    public void upsert(RsEventDto rsEventDto) {
+        Partition partition = partition(rsEventDto.getKeyword());
+        if (partition != null) {
+            partition.upsert(snapshot(rsEventDto));
+        }
+    }
+
+    public void remove(RsEventDto rsEventDto) {
+        Partition partition = partition(rsEventDto.getKeyword());
+        if (partition != null) {
+            partition.remove(rsEventDto.getId());
+        }
+    }
+
+    // for callers that only know the id; there are few enough loaded partitions to ask each
+    public void remove(int rsEventId) {
+        partitions.values().forEach(partition -> partition.remove(rsEventId));
+    }
+
+    public void putTrade(TradeDto tradeDto) {
+        Partition partition = partition(tradeDto.getRsEventDto().getKeyword());
+        if (partition != null) {
+            partition.putTrade(tradeDto.getRsEventDto().getId(), tradeDto.getRank());
+        }
+    }
+
+    public void removeTrade(TradeDto tradeDto) {
+        Partition partition = partition(tradeDto.getRsEventDto().getKeyword());
+        if (partition != null) {
+            partition.removeTrade(tradeDto.getRsEventDto().getId());
+        }
+    }
+
+    private Partition partition(String keyword) {
+        return keyword == null ? null : partitions.get(keyword);
+    }
+
+    @Scheduled(fixedDelayString = "${rs.leaderboard.evict-interval:60000}")
+    public void evictCold() {
+        long now = System.nanoTime();
+        partitions.values().removeIf(partition -> now - partition.lastRead > idleNanos);
+        if (partitions.size() > maxPartitions) {
+            partitions.values().stream()
+                    .sorted(Comparator.comparingLong(partition -> partition.lastRead))
+                    .limit(partitions.size() - maxPartitions)
+                    .forEach(partition -> partitions.remove(partition.keyword, partition));
+        }
+    }
+
+    // the listeners hand over managed entities, which keep changing after this call returns
+    private static RsEventDto snapshot(RsEventDto rsEventDto) {
+        return RsEventDto.builder()
+                .id(rsEventDto.getId())
+                .eventName(rsEventDto.getEventName())
+                .keyword(rsEventDto.getKeyword())
+                .voteNum(rsEventDto.getVoteNum())
+                .hotScore(rsEventDto.getHotScore())
+                .uniqueVoters(rsEventDto.getUniqueVoters())
+                .user(UserDto.builder().id(rsEventDto.getUser().getId()).build())
+                .build();
+    }
+
+    private class Partition {
+        final String keyword;
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<Integer, RsEventDto> rsEvents = new HashMap<>();
+        final Map<Integer, Integer> paidRanks = new HashMap<>();
+        // writes seen before the first load; they may not be committed yet, so the load can't overrule them
+        final Set<Integer> removedBeforeLoad = new HashSet<>();
+        volatile boolean loaded;
+        volatile long lastRead = System.nanoTime();
+
+        Partition(String keyword) {
+            this.keyword = keyword;
+        }
+
+        void load() {
+            if (loaded) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    return;
+                }
+                for (RsEventDto rsEventDto : rsEventRepository.findAllByKeyword(keyword)) {
+                    if (!removedBeforeLoad.contains(rsEventDto.getId())) {
+                        rsEvents.putIfAbsent(rsEventDto.getId(), snapshot(rsEventDto));
+                    }
+                }
+                for (TradeDto tradeDto : tradeRepository.findAllByRsEventDtoKeyword(keyword)) {
+                    paidRanks.putIfAbsent(tradeDto.getRsEventDto().getId(), tradeDto.getRank());
+                }
+                removedBeforeLoad.clear();
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<RsEvent> rank(Comparator<RsEventDto> order) {
+            List<RsEventDto> copy;
+            Map<Integer, Integer> paidRanksCopy;
+            lock.readLock().lock();
+            try {
+                copy = new ArrayList<>(rsEvents.values());
+                paidRanksCopy = new HashMap<>(paidRanks);
+            } finally {
+                lock.readLock().unlock();
+            }
+            return RsEventRanking.mergeWithPaidRanks(copy, paidRanksCopy, order);
+        }
+
+        void upsert(RsEventDto rsEventDto) {
+            lock.writeLock().lock();
+            try {
+                rsEvents.put(rsEventDto.getId(), rsEventDto);
+                removedBeforeLoad.remove(rsEventDto.getId());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(int rsEventId) {
+            lock.writeLock().lock();
+            try {
+                rsEvents.remove(rsEventId);
+                paidRanks.remove(rsEventId);
+                if (!loaded) {
+                    removedBeforeLoad.add(rsEventId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void putTrade(int rsEventId, int rank) {
+            lock.writeLock().lock();
+            try {
+                paidRanks.values().remove(rank);
+                paidRanks.put(rsEventId, rank);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeTrade(int rsEventId) {
+            lock.writeLock().lock();
+            try {
+                paidRanks.remove(rsEventId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import lombok.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Binary form of leaderboard snapshots, deflated. A delta carries the entries whose fields changed
+ * (only those fields, numbers as differences), the ids that left, and the new order as runs copied
+ * from the previous order, so a vote that moves one event costs a few bytes rather than the list.
+ */
+final class LeaderboardSnapshotCodec {
+    private static final int EVENT_NAME = 1;
+    private static final int KEYWORD = 2;
+    private static final int USER_ID = 4;
+    private static final int VOTE_NUM = 8;
+    private static final int UNIQUE_VOTERS = 16;
+    private static final Entry ABSENT = new Entry(0, null, null, 0, 0, 0);
+
+    private LeaderboardSnapshotCodec() {
+    }
+
+    @Value
+    static class Entry {
+        int id;
+        String eventName;
+        String keyword;
+        int userId;
+        int voteNum;
+        int uniqueVoters;
+
+        static Entry of(RsEventDto rsEventDto) {
+            return new Entry(rsEventDto.getId(), rsEventDto.getEventName(), rsEventDto.getKeyword(),
+                    rsEventDto.getUser().getId(), rsEventDto.getVoteNum(), rsEventDto.getUniqueVoters());
+        }
+
+        RsEvent toRsEvent() {
+            return RsEvent.builder()
+                    .eventName(eventName)
+                    .keyword(keyword)
+                    .userId(userId)
+                    .voteNum(voteNum)
+                    .uniqueVoters(uniqueVoters)
+                    .build();
+        }
+    }
+
+    static byte[] encodeKeyframe(List<Entry> entries) {
+        return write(out -> {
+            writeVarint(out, entries.size());
+            for (Entry entry : entries) {
+                writeVarint(out, entry.getId());
+                writeChanges(out, ABSENT, entry);
+            }
+        });
+    }
+
+    static List<Entry> decodeKeyframe(byte[] data) {
+        return read(data, in -> {
+            int size = readVarint(in);
+            List<Entry> entries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                entries.add(readChanges(in, readVarint(in), ABSENT));
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * @return null when {@code current} is the same list as {@code previous}
+     */
+    static byte[] encodeDelta(List<Entry> previous, List<Entry> current) {
+        if (previous.equals(current)) {
+            return null;
+        }
+        Map<Integer, Entry> previousById = new HashMap<>();
+        Map<Integer, Integer> previousPosition = new HashMap<>();
+        for (int i = 0; i < previous.size(); i++) {
+            previousById.put(previous.get(i).getId(), previous.get(i));
+            previousPosition.put(previous.get(i).getId(), i);
+        }
+        return write(out -> {
+            List<Entry> changed = new ArrayList<>();
+            for (Entry entry : current) {
+                if (!entry.equals(previousById.get(entry.getId()))) {
+                    changed.add(entry);
+                }
+            }
+            writeVarint(out, changed.size());
+            for (Entry entry : changed) {
+                writeVarint(out, entry.getId());
+                writeChanges(out, previousById.getOrDefault(entry.getId(), ABSENT), entry);
+            }
+
+            Map<Integer, Entry> remaining = new HashMap<>(previousById);
+            current.forEach(entry -> remaining.remove(entry.getId()));
+            int[] removed = remaining.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            writeVarint(out, removed.length);
+            int last = 0;
+            for (int id : removed) {
+                writeVarint(out, id - last);
+                last = id;
+            }
+
+            // runs of the new order that appear unbroken in the previous one
+            List<int[]> ops = new ArrayList<>();
+            for (int i = 0; i < current.size(); ) {
+                Integer start = previousPosition.get(current.get(i).getId());
+                if (start == null) {
+                    ops.add(new int[]{0, current.get(i).getId()});
+                    i++;
+                    continue;
+                }
+                int length = 1;
+                while (i + length < current.size() && start + length < previous.size()
+                        && previous.get(start + length).getId() == current.get(i + length).getId()) {
+                    length++;
+                }
+                ops.add(new int[]{length, start});
+                i += length;
+            }
+            writeVarint(out, current.size());
+            writeVarint(out, ops.size());
+            int expected = 0;
+            for (int[] op : ops) {
+                writeVarint(out, op[0]);
+                if (op[0] == 0) {
+                    writeVarint(out, op[1]);
+                } else {
+                    writeVarint(out, zigzag(op[1] - expected));
+                    expected = op[1] + op[0];
+                }
+            }
+        });
+    }
+
+    static List<Entry> applyDelta(List<Entry> previous, byte[] data) {
+        return read(data, in -> {
+            Map<Integer, Entry> byId = new HashMap<>();
+            previous.forEach(entry -> byId.put(entry.getId(), entry));
+            int changed = readVarint(in);
+            for (int i = 0; i < changed; i++) {
+                int id = readVarint(in);
+                byId.put(id, readChanges(in, id, byId.getOrDefault(id, ABSENT)));
+            }
+            int removed = readVarint(in);
+            int id = 0;
+            for (int i = 0; i < removed; i++) {
+                id += readVarint(in);
+                byId.remove(id);
+            }
+
+            List<Entry> entries = new ArrayList<>(readVarint(in));
+            int ops = readVarint(in);
+            int expected = 0;
+            for (int i = 0; i < ops; i++) {
+                int length = readVarint(in);
+                if (length == 0) {
+                    entries.add(byId.get(readVarint(in)));
+                    continue;
+                }
+                int start = expected + unzigzag(readVarint(in));
+                for (int position = start; position < start + length; position++) {
+                    entries.add(byId.get(previous.get(position).getId()));
+                }
+                expected = start + length;
+            }
+            return entries;
+        });
+    }
+
+    private static void writeChanges(DataOutputStream out, Entry previous, Entry entry) throws IOException {
+        int mask = (Objects.equals(previous.getEventName(), entry.getEventName()) ? 0 : EVENT_NAME)
+                | (Objects.equals(previous.getKeyword(), entry.getKeyword()) ? 0 : KEYWORD)
+                | (previous.getUserId() == entry.getUserId() ? 0 : USER_ID)
+                | (previous.getVoteNum() == entry.getVoteNum() ? 0 : VOTE_NUM)
+                | (previous.getUniqueVoters() == entry.getUniqueVoters() ? 0 : UNIQUE_VOTERS);
+        out.writeByte(mask);
+        if ((mask & EVENT_NAME) != 0) {
+            out.writeUTF(entry.getEventName());
+        }
+        if ((mask & KEYWORD) != 0) {
+            out.writeUTF(entry.getKeyword());
+        }
+        if ((mask & USER_ID) != 0) {
+            writeVarint(out, entry.getUserId());
+        }
+        if ((mask & VOTE_NUM) != 0) {
+            writeVarint(out, zigzag(entry.getVoteNum() - previous.getVoteNum()));
+        }
+        if ((mask & UNIQUE_VOTERS) != 0) {
+            writeVarint(out, zigzag(entry.getUniqueVoters() - previous.getUniqueVoters()));
+        }
+    }
+
+    private static Entry readChanges(DataInputStream in, int id, Entry previous) throws IOException {
+        int mask = in.readUnsignedByte();
+        return new Entry(id,
+                (mask & EVENT_NAME) != 0 ? in.readUTF() : previous.getEventName(),
+                (mask & KEYWORD) != 0 ? in.readUTF() : previous.getKeyword(),
+                (mask & USER_ID) != 0 ? readVarint(in) : previous.getUserId(),
+                previous.getVoteNum() + ((mask & VOTE_NUM) != 0 ? unzigzag(readVarint(in)) : 0),
+                previous.getUniqueVoters() + ((mask & UNIQUE_VOTERS) != 0 ? unzigzag(readVarint(in)) : 0));
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private static byte[] write(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T read(byte[] data, Reader<T> reader) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
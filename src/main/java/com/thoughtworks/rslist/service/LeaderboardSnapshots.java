@@ -0,0 +1,172 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.LeaderboardSnapshotDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.LeaderboardSnapshotRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.service.LeaderboardSnapshotCodec.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Periodic snapshots of the merged {@code /rs/list}, for answering what the list looked like at a
+ * given time. A keyframe is written every {@code keyframe-every} snapshots and deltas in between,
+ * so reconstructing any moment reads one keyframe and at most that many deltas however long the
+ * history is. Unchanged lists are not written at all.
+ */
+@Service
+public class LeaderboardSnapshots {
+    private static final Logger log = LoggerFactory.getLogger(LeaderboardSnapshots.class);
+
+    private final LeaderboardSnapshotRepository leaderboardSnapshotRepository;
+    private final RsEventRepository rsEventRepository;
+    private final TradeRepository tradeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration interval;
+    private final int keyframeEvery;
+    private final Duration retention;
+    // the newest snapshot, so the next delta doesn't have to replay the chain
+    private volatile Chain newest;
+    private volatile Chain lastRead;
+
+    public LeaderboardSnapshots(LeaderboardSnapshotRepository leaderboardSnapshotRepository,
+                                RsEventRepository rsEventRepository,
+                                TradeRepository tradeRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${rs.snapshot.interval:300000}") long intervalMillis,
+                                @Value("${rs.snapshot.keyframe-every:12}") int keyframeEvery,
+                                @Value("${rs.snapshot.retention:90d}") Duration retention) {
+        this.leaderboardSnapshotRepository = leaderboardSnapshotRepository;
+        this.rsEventRepository = rsEventRepository;
+        this.tradeRepository = tradeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.interval = Duration.ofMillis(intervalMillis);
+        this.keyframeEvery = keyframeEvery;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${rs.snapshot.interval:300000}")
+    public void take() {
+        take(LocalDateTime.now());
+    }
+
+    /**
+     * @return the snapshot written, if the list changed and no other node took one within half an interval
+     */
+    public synchronized Optional<LeaderboardSnapshotDto> take(LocalDateTime now) {
+        Optional<LeaderboardSnapshotDto> last = leaderboardSnapshotRepository.findFirstByOrderByIdDesc();
+        if (last.isPresent() && last.get().getTakenAt().isAfter(now.minus(interval.dividedBy(2)))) {
+            return Optional.empty();
+        }
+        List<Entry> entries = transactionTemplate.execute(status -> {
+            return RsEventRanking.mergeTrades(rsEventRepository.findAll(), tradeRepository.findAll(), RsEventRanking.order(null))
+                    .stream()
+                    .map(Entry::of)
+                    .collect(Collectors.toList());
+        });
+
+        Chain previous = last.map(this::chain).orElse(null);
+        LeaderboardSnapshotDto.LeaderboardSnapshotDtoBuilder snapshot = LeaderboardSnapshotDto.builder()
+                .takenAt(now)
+                .entries(entries.size());
+        if (previous == null || previous.length + 1 >= keyframeEvery) {
+            snapshot.keyframe(true).data(LeaderboardSnapshotCodec.encodeKeyframe(entries));
+        } else {
+            byte[] delta = LeaderboardSnapshotCodec.encodeDelta(previous.entries, entries);
+            if (delta == null) {
+                return Optional.empty();
+            }
+            snapshot.keyframeId(previous.keyframeId).previousId(previous.id).data(delta);
+        }
+        LeaderboardSnapshotDto saved = leaderboardSnapshotRepository.save(snapshot.build());
+        newest = saved.isKeyframe()
+                ? new Chain(saved.getId(), saved.getId(), 0, entries)
+                : new Chain(saved.getId(), previous.keyframeId, previous.length + 1, entries);
+        return Optional.of(saved);
+    }
+
+    public List<RsEvent> at(LocalDateTime at) {
+        LeaderboardSnapshotDto snapshot = leaderboardSnapshotRepository
+                .findFirstByTakenAtLessThanEqualOrderByTakenAtDescIdDesc(at)
+                .orElseThrow(() -> new RequestNotValidException("no snapshot before " + at));
+        Chain chain = chain(snapshot);
+        lastRead = chain;
+        return chain.entries.stream().map(Entry::toRsEvent).collect(Collectors.toList());
+    }
+
+    /**
+     * Drops snapshots older than the retention, keeping the keyframe that later deltas build on.
+     */
+    @Scheduled(cron = "${rs.snapshot.prune-cron:0 15 4 * * *}")
+    public void prune() {
+        leaderboardSnapshotRepository
+                .findFirstByKeyframeTrueAndTakenAtLessThanEqualOrderByTakenAtDesc(LocalDateTime.now().minus(retention))
+                .ifPresent(keyframe -> log.info("pruned {} leaderboard snapshots older than {}",
+                        leaderboardSnapshotRepository.deleteIdLessThan(keyframe.getId()), retention));
+    }
+
+    private Chain chain(LeaderboardSnapshotDto snapshot) {
+        for (Chain cached : new Chain[]{newest, lastRead}) {
+            if (cached != null && cached.id == snapshot.getId()) {
+                return cached;
+            }
+        }
+        if (snapshot.isKeyframe()) {
+            return new Chain(snapshot.getId(), snapshot.getId(), 0,
+                    LeaderboardSnapshotCodec.decodeKeyframe(snapshot.getData()));
+        }
+        LeaderboardSnapshotDto keyframe = leaderboardSnapshotRepository.findById(snapshot.getKeyframeId())
+                .orElseThrow(() -> new IllegalStateException("keyframe " + snapshot.getKeyframeId() + " missing"));
+        // nodes racing to write a snapshot can fork the chain, so follow previousId rather than id order
+        Map<Integer, LeaderboardSnapshotDto> deltas = new HashMap<>();
+        leaderboardSnapshotRepository.findAllByKeyframeIdAndIdLessThanEqualOrderById(keyframe.getId(), snapshot.getId())
+                .forEach(delta -> deltas.put(delta.getId(), delta));
+        Deque<LeaderboardSnapshotDto> path = new ArrayDeque<>();
+        LeaderboardSnapshotDto delta = snapshot;
+        while (delta.getId() != keyframe.getId()) {
+            path.push(delta);
+            delta = delta.getPreviousId() == keyframe.getId() ? keyframe : deltas.get(delta.getPreviousId());
+            if (delta == null) {
+                throw new IllegalStateException("leaderboard snapshot " + snapshot.getId() + " has a broken chain");
+            }
+        }
+        List<Entry> entries = LeaderboardSnapshotCodec.decodeKeyframe(keyframe.getData());
+        for (LeaderboardSnapshotDto step : path) {
+            entries = LeaderboardSnapshotCodec.applyDelta(entries, step.getData());
+        }
+        return new Chain(snapshot.getId(), keyframe.getId(), path.size(), entries);
+    }
+
+    private static class Chain {
+        final int id;
+        final int keyframeId;
+        // deltas since the keyframe
+        final int length;
+        final List<Entry> entries;
+
+        Chain(int id, int keyframeId, int length, List<Entry> entries) {
+            this.id = id;
+            this.keyframeId = keyframeId;
+            this.length = length;
+            this.entries = entries;
+        }
+    }
+}
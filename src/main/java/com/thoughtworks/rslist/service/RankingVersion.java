@@ -0,0 +1,43 @@
+package com.thoughtworks.rslist.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter that moves whenever anything shown by the ranking endpoints changes, so their ETags can
+ * be answered without reading the events. Bumps land after commit, so a reader on the primary that
+ * sees the old version may have read new rows, which only costs one extra full response. A replica
+ * can still be behind the current version, which is why tagged ranking reads stay on the primary.
+ */
+@Component
+public class RankingVersion {
+    // distinguishes this process's counter from one that restarted at zero
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * A weak tag, which Tomcat still compresses under; it is never shared by two encodings anyway.
+     *
+     * @param variant anything besides the URL that changes the body, such as the Accept and
+     *                Accept-Encoding headers
+     */
+    public String etag(String variant) {
+        return "W/\"" + epoch + "-" + version.get() + "-" + Integer.toHexString(variant == null ? 0 : variant.hashCode()) + "\"";
+    }
+
+    public void bumpAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                version.incrementAndGet();
+            }
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Keeps the in-memory event indexes and the ranking version in step with every committed write to {@code rsEvent},
+ * including cascaded removals from user deletion and buy replacement. The indexes are looked up lazily
+ * because Hibernate creates this listener while the repositories they need are still being built.
+ */
+public class RsEventIndexListener {
+    private final ObjectProvider<RsEventSearchIndex> rsEventSearchIndex;
+    private final ObjectProvider<DuplicateEventIndex> duplicateEventIndex;
+    private final ObjectProvider<RankingVersion> rankingVersion;
+    private final ObjectProvider<KeywordLeaderboards> keywordLeaderboards;
+
+    public RsEventIndexListener(ObjectProvider<RsEventSearchIndex> rsEventSearchIndex,
+                                ObjectProvider<DuplicateEventIndex> duplicateEventIndex,
+                                ObjectProvider<RankingVersion> rankingVersion,
+                                ObjectProvider<KeywordLeaderboards> keywordLeaderboards) {
+        this.rsEventSearchIndex = rsEventSearchIndex;
+        this.duplicateEventIndex = duplicateEventIndex;
+        this.rankingVersion = rankingVersion;
+        this.keywordLeaderboards = keywordLeaderboards;
+    }
+
+    @PostPersist
+    public void onPersist(RsEventDto rsEventDto) {
+        afterCommit(() -> {
+            rsEventSearchIndex.getObject().add(rsEventDto);
+            duplicateEventIndex.getObject().add(rsEventDto);
+            keywordLeaderboards.getObject().upsert(rsEventDto);
+        });
+        rankingVersion.getObject().bumpAfterCommit();
+    }
+
+    @PostUpdate
+    public void onUpdate(RsEventDto rsEventDto) {
+        int voteNum = rsEventDto.getVoteNum();
+        afterCommit(() -> {
+            rsEventSearchIndex.getObject().updateVoteNum(rsEventDto.getId(), voteNum);
+            keywordLeaderboards.getObject().upsert(rsEventDto);
+        });
+        rankingVersion.getObject().bumpAfterCommit();
+    }
+
+    @PostRemove
+    public void onRemove(RsEventDto rsEventDto) {
+        afterCommit(() -> {
+            rsEventSearchIndex.getObject().remove(rsEventDto.getId());
+            duplicateEventIndex.getObject().remove(rsEventDto.getId());
+            keywordLeaderboards.getObject().remove(rsEventDto);
+        });
+        rankingVersion.getObject().bumpAfterCommit();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
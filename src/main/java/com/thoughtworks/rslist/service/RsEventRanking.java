@@ -0,0 +1,174 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+public class RsEventRanking {
+    private static final Comparator<RsEventDto> BY_VOTE_NUM =
+            Comparator.comparing(RsEventDto::getVoteNum).reversed();
+    private static final Comparator<RsEventDto> BY_HOT_SCORE =
+            Comparator.comparing(RsEventDto::getHotScore, Comparator.nullsFirst(Comparator.<Double>naturalOrder()))
+                    .reversed()
+                    .thenComparing(BY_VOTE_NUM);
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private RsEventRanking() {
+    }
+
+    public static Comparator<RsEventDto> order(String mode) {
+        if (mode == null) {
+            return BY_VOTE_NUM;
+        }
+        if ("hot".equals(mode)) {
+            return BY_HOT_SCORE;
+        }
+        throw new RequestNotValidException("invalid mode");
+    }
+
+    public static List<RsEvent> mergeWithTrades(
+            List<RsEventDto> rsEventDtos, List<TradeDto> tradeDtos, Comparator<RsEventDto> order) {
+        return transform(mergeTrades(rsEventDtos, tradeDtos, order));
+    }
+
+    public static List<RsEventDto> mergeTrades(
+            Collection<RsEventDto> rsEventDtos, List<TradeDto> tradeDtos, Comparator<RsEventDto> order) {
+        Buffers buffers = BUFFERS.get();
+        buffers.paid = 0;
+        for (TradeDto tradeDto : tradeDtos) {
+            buffers.addPaidRank(tradeDto.getRsEventDto().getId(), tradeDto.getRank());
+        }
+        return merge(rsEventDtos, buffers, order);
+    }
+
+    /**
+     * Puts each event with a paid rank at that rank and fills the other slots in {@code order}. A paid
+     * rank past the end of the list can't be honoured, so that event is ranked like the rest.
+     */
+    public static List<RsEvent> mergeWithPaidRanks(
+            Collection<RsEventDto> rsEventDtos, Map<Integer, Integer> paidRanks, Comparator<RsEventDto> order) {
+        return transform(merge(rsEventDtos, paidRanks, order));
+    }
+
+    public static List<RsEventDto> merge(
+            Collection<RsEventDto> rsEventDtos, Map<Integer, Integer> paidRanks, Comparator<RsEventDto> order) {
+        Buffers buffers = BUFFERS.get();
+        buffers.paid = 0;
+        paidRanks.forEach(buffers::addPaidRank);
+        return merge(rsEventDtos, buffers, order);
+    }
+
+    // the buffers are reused by the next request on this thread, so only the result is allocated
+    private static List<RsEventDto> merge(
+            Collection<RsEventDto> rsEventDtos, Buffers buffers, Comparator<RsEventDto> order) {
+        int size = rsEventDtos.size();
+        RsEventDto[] merged = new RsEventDto[size];
+        buffers.sortPaidRanks();
+        RsEventDto[] unpaid = buffers.unpaid(size);
+        int unpaidSize = 0;
+        for (RsEventDto rsEventDto : rsEventDtos) {
+            int rank = buffers.paidRank(rsEventDto.getId());
+            if (rank > 0 && rank <= size && merged[rank - 1] == null) {
+                merged[rank - 1] = rsEventDto;
+            } else {
+                unpaid[unpaidSize++] = rsEventDto;
+            }
+        }
+
+        if (order == BY_VOTE_NUM) {
+            // most votes first and ties in their original order, as one primitive sort
+            long[] keys = buffers.keys(unpaidSize);
+            for (int i = 0; i < unpaidSize; i++) {
+                keys[i] = (long) ~unpaid[i].getVoteNum() << 32 | i;
+            }
+            Arrays.sort(keys, 0, unpaidSize);
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                if (merged[i] == null) {
+                    merged[i] = unpaid[(int) keys[next++]];
+                }
+            }
+        } else {
+            Arrays.sort(unpaid, 0, unpaidSize, order);
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                if (merged[i] == null) {
+                    merged[i] = unpaid[next++];
+                }
+            }
+        }
+        Arrays.fill(unpaid, 0, unpaidSize, null);
+        return Arrays.asList(merged);
+    }
+
+    public static List<RsEvent> transform(List<RsEventDto> rsEventDtos) {
+        RsEvent[] rsEvents = new RsEvent[rsEventDtos.size()];
+        for (int i = 0; i < rsEvents.length; i++) {
+            rsEvents[i] = transform(rsEventDtos.get(i));
+        }
+        return Arrays.asList(rsEvents);
+    }
+
+    public static RsEvent transform(RsEventDto rsEventDto) {
+        return new RsEvent(rsEventDto.getEventName(), rsEventDto.getKeyword(), rsEventDto.getVoteNum(),
+                rsEventDto.getUser().getId(), 0, rsEventDto.getUniqueVoters());
+    }
+
+    private static class Buffers {
+        RsEventDto[] unpaid = new RsEventDto[0];
+        long[] keys = new long[0];
+        // paid ranks as event id in the high half and rank in the low half, sorted to binary search by id
+        long[] paidRanks = new long[16];
+        int paid;
+
+        RsEventDto[] unpaid(int size) {
+            if (unpaid.length < size) {
+                unpaid = new RsEventDto[size];
+            }
+            return unpaid;
+        }
+
+        long[] keys(int size) {
+            if (keys.length < size) {
+                keys = new long[size];
+            }
+            return keys;
+        }
+
+        void addPaidRank(int rsEventId, int rank) {
+            if (paid == paidRanks.length) {
+                paidRanks = Arrays.copyOf(paidRanks, paid * 2);
+            }
+            paidRanks[paid++] = (long) rsEventId << 32 | (rank & 0xFFFFFFFFL);
+        }
+
+        void sortPaidRanks() {
+            Arrays.sort(paidRanks, 0, paid);
+        }
+
+        int paidRank(int rsEventId) {
+            int low = 0;
+            int high = paid - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int id = (int) (paidRanks[middle] >> 32);
+                if (id < rsEventId) {
+                    low = middle + 1;
+                } else if (id > rsEventId) {
+                    high = middle - 1;
+                } else {
+                    return (int) paidRanks[middle];
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from character n-grams of {@code eventName} and {@code keyword} to event ids.
+ * Unigrams and bigrams are indexed so that Chinese text, which has no word boundaries, can be
+ * matched by any substring; queries use their bigrams and fall back to unigrams for one character.
+ */
+@Component
+public class RsEventSearchIndex {
+    private static final int NAME_WEIGHT = 2;
+    private static final int KEYWORD_WEIGHT = 1;
+
+    private final RsEventRepository rsEventRepository;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long livePostings;
+    private long deadPostings;
+
+    public RsEventSearchIndex(RsEventRepository rsEventRepository) {
+        this.rsEventRepository = rsEventRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<RsEventDto> rsEventDtos = rsEventRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            livePostings = 0;
+            deadPostings = 0;
+            rsEventDtos.forEach(this::doAdd);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(RsEventDto rsEventDto) {
+        lock.writeLock().lock();
+        try {
+            doRemove(rsEventDto.getId());
+            doAdd(rsEventDto);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(List<RsEventDto> rsEventDtos) {
+        lock.writeLock().lock();
+        try {
+            for (RsEventDto rsEventDto : rsEventDtos) {
+                doRemove(rsEventDto.getId());
+                doAdd(rsEventDto);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int rsEventId) {
+        lock.writeLock().lock();
+        try {
+            doRemove(rsEventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updateVoteNum(int rsEventId, int voteNum) {
+        lock.writeLock().lock();
+        try {
+            Doc doc = docs.get(rsEventId);
+            if (doc != null) {
+                doc.voteNum = voteNum;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Integer> search(String query, int limit) {
+        Set<String> queryGrams = grams(query, 2);
+        if (queryGrams.isEmpty()) {
+            queryGrams = grams(query, 1);
+        }
+        String normalizedQuery = normalize(query);
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Integer, Match> byId = new HashMap<>();
+            int gramIndex = 0;
+            for (String gram : queryGrams) {
+                gramIndex++;
+                Postings ids = postings.get(gram);
+                for (int i = 0; ids != null && i < ids.size; i++) {
+                    Doc doc = docs.get(ids.ids[i]);
+                    if (doc == null) {
+                        continue;
+                    }
+                    Match match = byId.get(doc.id);
+                    if (match == null) {
+                        match = new Match(doc);
+                        byId.put(doc.id, match);
+                        matches.add(match);
+                    }
+                    if (match.lastGram != gramIndex) {
+                        match.lastGram = gramIndex;
+                        match.score += doc.weight(gram);
+                    }
+                }
+            }
+            for (Match match : matches) {
+                if (match.doc.name.contains(normalizedQuery)) {
+                    match.score += NAME_WEIGHT * queryGrams.size();
+                } else if (match.doc.keyword.contains(normalizedQuery)) {
+                    match.score += KEYWORD_WEIGHT * queryGrams.size();
+                }
+                match.voteNum = match.doc.voteNum;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort((a, b) -> a.score != b.score
+                ? Integer.compare(b.score, a.score)
+                : Integer.compare(b.voteNum, a.voteNum));
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            ids.add(matches.get(i).doc.id);
+        }
+        return ids;
+    }
+
+    private void doAdd(RsEventDto rsEventDto) {
+        doAdd(new Doc(rsEventDto.getId(), normalize(rsEventDto.getEventName()),
+                normalize(rsEventDto.getKeyword()), rsEventDto.getVoteNum()));
+    }
+
+    private void doAdd(Doc doc) {
+        docs.put(doc.id, doc);
+        for (String gram : doc.grams()) {
+            postings.computeIfAbsent(gram, key -> new Postings()).add(doc.id);
+            livePostings++;
+        }
+    }
+
+    // postings of removed docs are skipped at query time and dropped once they outnumber live ones
+    private void doRemove(int rsEventId) {
+        Doc doc = docs.remove(rsEventId);
+        if (doc == null) {
+            return;
+        }
+        int grams = doc.grams().size();
+        livePostings -= grams;
+        deadPostings += grams;
+        if (deadPostings > livePostings) {
+            List<Doc> liveDocs = new ArrayList<>(docs.values());
+            postings.clear();
+            docs.clear();
+            livePostings = 0;
+            deadPostings = 0;
+            liveDocs.forEach(this::doAdd);
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    static Set<String> grams(String text, int n) {
+        Set<String> grams = new LinkedHashSet<>();
+        int[] codePoints = normalize(text).codePoints().toArray();
+        int runStart = 0;
+        for (int i = 0; i <= codePoints.length; i++) {
+            if (i < codePoints.length && Character.isLetterOrDigit(codePoints[i])) {
+                continue;
+            }
+            for (int start = runStart; start + n <= i; start++) {
+                grams.add(new String(codePoints, start, n));
+            }
+            runStart = i + 1;
+        }
+        return grams;
+    }
+
+    @AllArgsConstructor
+    private static class Doc {
+        final int id;
+        final String name;
+        final String keyword;
+        int voteNum;
+
+        Set<String> grams() {
+            Set<String> grams = new HashSet<>();
+            grams.addAll(RsEventSearchIndex.grams(name, 1));
+            grams.addAll(RsEventSearchIndex.grams(name, 2));
+            grams.addAll(RsEventSearchIndex.grams(keyword, 1));
+            grams.addAll(RsEventSearchIndex.grams(keyword, 2));
+            return grams;
+        }
+
+        int weight(String gram) {
+            int weight = 0;
+            if (name.contains(gram)) {
+                weight += NAME_WEIGHT;
+            }
+            if (keyword.contains(gram)) {
+                weight += KEYWORD_WEIGHT;
+            }
+            return weight;
+        }
+    }
+
+    private static class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    private static class Match {
+        final Doc doc;
+        int score;
+        int voteNum;
+        int lastGram;
+
+        Match(Doc doc) {
+            this.doc = doc;
+        }
+    }
+}
@@ -2,17 +2,26 @@ package com.thoughtworks.rslist.service;
 
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.ChangeLogDto;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeRecordDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
 import com.thoughtworks.rslist.exception.BuyFailedException;
+import com.thoughtworks.rslist.repository.ArchivedVoteRepository;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.Optional;
 
 @Service
@@ -20,57 +29,162 @@ public class RsService {
     final RsEventRepository rsEventRepository;
     final UserRepository userRepository;
     final VoteRepository voteRepository;
+    final ArchivedVoteRepository archivedVoteRepository;
     final TradeRepository tradeRepository;
+    final TradeRecordRepository tradeRecordRepository;
+    final TopBidIndex topBidIndex;
+    final HotnessCalculator hotnessCalculator;
+    final HeavyHitterTracker heavyHitterTracker;
+    final UniqueVoterCounter uniqueVoterCounter;
+    final VoteSummaryService voteSummaryService;
+    final VoteColumnStore voteColumnStore;
+    final ChangeLog changeLog;
 
     public RsService(RsEventRepository rsEventRepository,
                      UserRepository userRepository,
                      VoteRepository voteRepository,
-                     TradeRepository tradeRepository) {
+                     ArchivedVoteRepository archivedVoteRepository,
+                     TradeRepository tradeRepository,
+                     TradeRecordRepository tradeRecordRepository,
+                     TopBidIndex topBidIndex,
+                     HotnessCalculator hotnessCalculator,
+                     HeavyHitterTracker heavyHitterTracker,
+                     UniqueVoterCounter uniqueVoterCounter,
+                     VoteSummaryService voteSummaryService,
+                     VoteColumnStore voteColumnStore,
+                     ChangeLog changeLog) {
         this.rsEventRepository = rsEventRepository;
         this.userRepository = userRepository;
         this.voteRepository = voteRepository;
+        this.archivedVoteRepository = archivedVoteRepository;
         this.tradeRepository = tradeRepository;
+        this.tradeRecordRepository = tradeRecordRepository;
+        this.topBidIndex = topBidIndex;
+        this.hotnessCalculator = hotnessCalculator;
+        this.heavyHitterTracker = heavyHitterTracker;
+        this.uniqueVoterCounter = uniqueVoterCounter;
+        this.voteSummaryService = voteSummaryService;
+        this.voteColumnStore = voteColumnStore;
+        this.changeLog = changeLog;
     }
 
+    @Transactional
+    public RsEventDto addRsEvent(RsEventDto rsEventDto) {
+        RsEventDto saved = rsEventRepository.save(rsEventDto);
+        changeLog.record(ChangeLogDto.Type.RS_EVENT_ADDED, saved.getId(), saved.getUser().getId(), null);
+        return saved;
+    }
+
+    @Transactional
     public void vote(Vote vote, int rsEventId) {
-        Optional<RsEventDto> rsEventDto = rsEventRepository.findById(rsEventId);
         Optional<UserDto> userDto = userRepository.findById(vote.getUserId());
+        // the event's totals are read and rewritten below, so concurrent votes on it take turns
+        Optional<RsEventDto> rsEventDto = rsEventRepository.findForUpdateById(rsEventId);
         if (!rsEventDto.isPresent()
                 || !userDto.isPresent()
-                || vote.getVoteNum() > userDto.get().getVoteNum()) {
+                || userRepository.spendVotes(vote.getUserId(), vote.getVoteNum()) == 0) {
             throw new RuntimeException();
         }
+        // votes without a time would never become old enough to archive
+        LocalDateTime time = vote.getTime() != null ? vote.getTime() : LocalDateTime.now();
         VoteDto voteDto =
                 VoteDto.builder()
-                        .localDateTime(vote.getTime())
+                        .localDateTime(time)
                         .num(vote.getVoteNum())
                         .rsEvent(rsEventDto.get())
                         .user(userDto.get())
                         .build();
         voteRepository.save(voteDto);
         UserDto user = userDto.get();
-        user.setVoteNum(user.getVoteNum() - vote.getVoteNum());
-        userRepository.save(user);
         RsEventDto rsEvent = rsEventDto.get();
         rsEvent.setVoteNum(rsEvent.getVoteNum() + vote.getVoteNum());
+        rsEvent.setHotScore(hotnessCalculator.addVote(rsEvent.getHotScore(), vote.getVoteNum(), vote.getTime()));
+        rsEvent.setUniqueVoters(uniqueVoterCounter.addVoter(rsEvent.getId(), user.getId()));
         rsEventRepository.save(rsEvent);
+        voteSummaryService.record(user.getId(), rsEvent.getId(), vote.getVoteNum(), time);
+        changeLog.recordVote(rsEvent.getId(), user.getId(), voteDto.getId());
+        heavyHitterTracker.recordVote(user.getId(), rsEvent.getId(), vote.getVoteNum());
     }
 
+    // rejected bids are committed to the ledger too
+    @Transactional(noRollbackFor = BuyFailedException.class)
     public void buy(Trade trade, int id) {
-        Optional<TradeDto> oldTradeOptional = tradeRepository.findByRank(trade.getRank());
-        if (oldTradeOptional.isPresent()) {
-            TradeDto oldTrade = oldTradeOptional.get();
-            if (oldTrade.getAmount() >= trade.getAmount())
-                throw new BuyFailedException();
-            else
-                rsEventRepository.delete(oldTrade.getRsEventDto());
+        // an event holds at most one rank, so its bids take turns
+        RsEventDto rsEventDto = rsEventRepository.findForUpdateById(id).get();
+        if (rsEventDto.getTradeDto() != null && rsEventDto.getTradeDto().getRank() != trade.getRank()) {
+            tradeRecordRepository.save(record(trade, id, false, null));
+            throw new BuyFailedException();
+        }
+        TopBidIndex.Bid bid = new TopBidIndex.Bid(trade.getAmount(), id);
+        TopBidIndex.Claim claim = topBidIndex.claim(trade.getRank(), bid);
+        if (!claim.isWon()) {
+            tradeRecordRepository.save(record(trade, id, false, null));
+            throw new BuyFailedException();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        topBidIndex.confirm(claim);
+                    } else {
+                        topBidIndex.unclaim(trade.getRank(), claim);
+                    }
+                }
+            });
+        }
+        // the claim may have beaten a bid that is yet to commit and could still roll back; its event stays
+        // locked until it settles, and only the committed holder of the rank is replaced after that. A holder
+        // raising its own bid while being outbid waits on the outbidding event as that one waits on it to
+        // replace it; the database rolls one of them back, which the API answers like an outbid bid
+        TopBidIndex.Bid previous = claim.getPrevious();
+        if (previous != null && previous.getRsEventId() != id) {
+            rsEventRepository.findForUpdateById(previous.getRsEventId());
+        }
+        Optional<TradeDto> holder = tradeRepository.findForUpdateByRank(trade.getRank());
+        Integer replacedRsEventId = holder.map(tradeDto -> tradeDto.getRsEventDto().getId()).orElse(null);
+        if (holder.isPresent()) {
+            if (replacedRsEventId == id) {
+                tradeRepository.delete(holder.get());
+            } else {
+                // locked like a vote would, so a delete that fails on its votes can't roll back over them
+                rsEventRepository.findForUpdateById(replacedRsEventId).ifPresent(replaced -> {
+                    voteRepository.deleteByRsEventIdIn(Collections.singleton(replaced.getId()));
+                    rsEventRepository.delete(replaced);
+                    archivedVoteRepository.deleteByRsEventIdIn(Collections.singleton(replaced.getId()));
+                    voteSummaryService.deleteByRsEvents(Collections.singleton(replaced.getId()));
+                    changeLog.record(ChangeLogDto.Type.RS_EVENT_REMOVED, replaced.getId(), null, null);
+                    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                            @Override
+                            public void afterCommit() {
+                                voteColumnStore.removeVotes(null, Collections.singleton(replaced.getId()));
+                            }
+                        });
+                    }
+                });
+            }
+            // the old trade has to be gone before the new one takes its rank
+            tradeRepository.flush();
         }
-        RsEventDto rsEventDto = rsEventRepository.findById(id).get();
         tradeRepository.save(TradeDto.builder()
                 .amount(trade.getAmount())
                 .rank(trade.getRank())
                 .rsEventDto(rsEventDto)
                 .build());
+        tradeRecordRepository.save(record(trade, id, true, replacedRsEventId));
+        changeLog.record(ChangeLogDto.Type.RS_EVENT_TRADED, id, trade.getUserId(), trade.getRank());
+    }
 
+    private TradeRecordDto record(Trade trade, int rsEventId, boolean accepted, Integer replacedRsEventId) {
+        return TradeRecordDto.builder()
+                .rank(trade.getRank())
+                .amount(trade.getAmount())
+                .rsEventId(rsEventId)
+                .userId(trade.getUserId())
+                .accepted(accepted)
+                .replacedRsEventId(replacedRsEventId)
+                .time(LocalDateTime.now())
+                .build();
     }
 }
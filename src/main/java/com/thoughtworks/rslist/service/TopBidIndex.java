@@ -0,0 +1,144 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeRecordDto;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * The winning bid of every rank, so a new bid is judged without a query. A bid claims its rank
+ * atomically before its transaction writes anything; the claim is undone if that transaction rolls
+ * back, and {@link TradeIndexListener} reconciles the index with trades written any other way.
+ * Claims on a rank chain back to the ones they beat until they commit, so undoing one falls back to
+ * the latest claim that has not been undone as well.
+ */
+@Component
+public class TopBidIndex {
+    private final TradeRecordRepository tradeRecordRepository;
+    private final TradeRepository tradeRepository;
+    private final Map<Integer, Holder> bids = new ConcurrentHashMap<>();
+
+    public TopBidIndex(TradeRecordRepository tradeRecordRepository, TradeRepository tradeRepository) {
+        this.tradeRecordRepository = tradeRecordRepository;
+        this.tradeRepository = tradeRepository;
+    }
+
+    // the latest accepted bid of a rank is its winner, unless its event has since been deleted
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Set<Bid> trades = tradeRepository.findAll().stream()
+                .map(tradeDto -> new Bid(tradeDto.getAmount(), tradeDto.getRsEventDto().getId()))
+                .collect(Collectors.toSet());
+        bids.clear();
+        for (TradeRecordDto tradeRecordDto : tradeRecordRepository.findLatestAcceptedPerRank()) {
+            Bid bid = new Bid(tradeRecordDto.getAmount(), tradeRecordDto.getRsEventId());
+            if (trades.contains(bid)) {
+                bids.put(tradeRecordDto.getRank(), new Holder(bid, null));
+            }
+        }
+    }
+
+    public Bid get(int rank) {
+        Holder holder = bids.get(rank);
+        return holder != null ? holder.bid : null;
+    }
+
+    /**
+     * Makes {@code bid} the winner of {@code rank} if it beats the current one.
+     *
+     * @return whether the bid won, and the bid it replaced
+     */
+    public Claim claim(int rank, Bid bid) {
+        Holder[] previous = new Holder[1];
+        Holder[] claimed = new Holder[1];
+        bids.compute(rank, (key, current) -> {
+            previous[0] = current;
+            if (current != null && bid.getAmount() <= current.bid.getAmount()) {
+                return current;
+            }
+            claimed[0] = new Holder(bid, current);
+            return claimed[0];
+        });
+        return new Claim(claimed[0] != null, previous[0] != null ? previous[0].bid : null, claimed[0]);
+    }
+
+    // the claim's transaction rolled back
+    public void unclaim(int rank, Claim claim) {
+        Holder holder = claim.holder;
+        holder.abandoned = true;
+        bids.computeIfPresent(rank, (key, current) -> {
+            if (current != holder) {
+                return current;
+            }
+            Holder previous = holder.previous;
+            while (previous != null && previous.abandoned) {
+                previous = previous.previous;
+            }
+            return previous;
+        });
+    }
+
+    // the claim's transaction committed, so nothing will fall back past it
+    public void confirm(Claim claim) {
+        claim.holder.previous = null;
+    }
+
+    // another node took a bid on this rank
+    void refresh(int rank) {
+        Optional<TradeDto> tradeDto = tradeRepository.findByRank(rank);
+        if (tradeDto.isPresent()) {
+            bids.put(rank, new Holder(new Bid(tradeDto.get().getAmount(), tradeDto.get().getRsEventDto().getId()), null));
+        } else {
+            bids.remove(rank);
+        }
+    }
+
+    // a commit can land after a higher bid has already claimed the rank
+    void onSaved(TradeDto tradeDto) {
+        Bid saved = new Bid(tradeDto.getAmount(), tradeDto.getRsEventDto().getId());
+        bids.merge(tradeDto.getRank(), new Holder(saved, null), (current, holder) ->
+                saved.getAmount() >= current.bid.getAmount() && !saved.equals(current.bid) ? holder : current);
+    }
+
+    void onRemoved(TradeDto tradeDto) {
+        Bid removed = new Bid(tradeDto.getAmount(), tradeDto.getRsEventDto().getId());
+        bids.computeIfPresent(tradeDto.getRank(), (key, current) -> removed.equals(current.bid) ? null : current);
+    }
+
+    @Value
+    public static class Bid {
+        int amount;
+        int rsEventId;
+    }
+
+    @Value
+    public static class Claim {
+        boolean won;
+        Bid previous;
+        @Getter(AccessLevel.NONE)
+        Holder holder;
+    }
+
+    private static class Holder {
+        final Bid bid;
+        volatile Holder previous;
+        volatile boolean abandoned;
+
+        Holder(Bid bid, Holder previous) {
+            this.bid = bid;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.TradeDto;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+
+/**
+ * Applies trade writes to the {@link TopBidIndex} and the keyword leaderboards once they commit, so trades saved or removed
+ * outside {@link RsService#buy} (including cascades from deleting an event) are reflected too.
+ */
+public class TradeIndexListener {
+    private final ObjectProvider<TopBidIndex> topBidIndex;
+    private final ObjectProvider<RankingVersion> rankingVersion;
+    private final ObjectProvider<KeywordLeaderboards> keywordLeaderboards;
+
+    public TradeIndexListener(ObjectProvider<TopBidIndex> topBidIndex,
+                              ObjectProvider<RankingVersion> rankingVersion,
+                              ObjectProvider<KeywordLeaderboards> keywordLeaderboards) {
+        this.topBidIndex = topBidIndex;
+        this.rankingVersion = rankingVersion;
+        this.keywordLeaderboards = keywordLeaderboards;
+    }
+
+    @PostPersist
+    public void onPersist(TradeDto tradeDto) {
+        afterCommit(() -> {
+            topBidIndex.getObject().onSaved(tradeDto);
+            keywordLeaderboards.getObject().putTrade(tradeDto);
+        });
+        rankingVersion.getObject().bumpAfterCommit();
+    }
+
+    @PostRemove
+    public void onRemove(TradeDto tradeDto) {
+        afterCommit(() -> {
+            topBidIndex.getObject().onRemoved(tradeDto);
+            keywordLeaderboards.getObject().removeTrade(tradeDto);
+        });
+        rankingVersion.getObject().bumpAfterCommit();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.VoterSketchDto;
+import com.thoughtworks.rslist.repository.ArchivedVoteRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.repository.VoterSketchRepository;
+import com.thoughtworks.rslist.sketch.HyperLogLog;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+@Service
+public class UniqueVoterCounter {
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    final VoterSketchRepository voterSketchRepository;
+    final VoteRepository voteRepository;
+    final ArchivedVoteRepository archivedVoteRepository;
+    final RsEventRepository rsEventRepository;
+    final RankingVersion rankingVersion;
+    final ChangeLog changeLog;
+
+    public UniqueVoterCounter(VoterSketchRepository voterSketchRepository,
+                              VoteRepository voteRepository,
+                              ArchivedVoteRepository archivedVoteRepository,
+                              RsEventRepository rsEventRepository,
+                              RankingVersion rankingVersion,
+                              ChangeLog changeLog) {
+        this.voterSketchRepository = voterSketchRepository;
+        this.voteRepository = voteRepository;
+        this.archivedVoteRepository = archivedVoteRepository;
+        this.rsEventRepository = rsEventRepository;
+        this.rankingVersion = rankingVersion;
+        this.changeLog = changeLog;
+    }
+
+    public int addVoter(int rsEventId, int userId) {
+        HyperLogLog hyperLogLog = load(rsEventId);
+        hyperLogLog.add(userId);
+        voterSketchRepository.save(new VoterSketchDto(rsEventId, hyperLogLog.toBytes()));
+        return (int) hyperLogLog.estimate();
+    }
+
+    // other nodes reload every event whose count may have changed, reset ones included
+    @Transactional
+    public void rebuild() {
+        Set<Integer> changed = new HashSet<>(rsEventRepository.findAllIdsWithUniqueVoters());
+        voterSketchRepository.deleteAll();
+        rsEventRepository.resetUniqueVoters();
+        // the bulk update skips the entity listeners
+        rankingVersion.bumpAfterCommit();
+        rebuildFrom(archivedVoteRepository::findAllVoters, changed);
+        rebuildFrom(voteRepository::findAllVoters, changed);
+        for (int rsEventId : changed) {
+            changeLog.record(ChangeLogDto.Type.RS_EVENT_VOTED, rsEventId, null, null);
+        }
+    }
+
+    // sketches are unions, so a second pass over another table merges into what the first one saved
+    private void rebuildFrom(Function<Pageable, List<VoteRepository.Voter>> source, Set<Integer> changed) {
+        int rsEventId = 0;
+        HyperLogLog hyperLogLog = null;
+        List<VoteRepository.Voter> voters;
+        int page = 0;
+        do {
+            voters = source.apply(PageRequest.of(page++, REBUILD_PAGE_SIZE));
+            for (VoteRepository.Voter voter : voters) {
+                if (hyperLogLog == null || voter.getRsEventId() != rsEventId) {
+                    save(rsEventId, hyperLogLog);
+                    rsEventId = voter.getRsEventId();
+                    changed.add(rsEventId);
+                    hyperLogLog = load(rsEventId);
+                }
+                hyperLogLog.add(voter.getUserId());
+            }
+        } while (voters.size() == REBUILD_PAGE_SIZE);
+        save(rsEventId, hyperLogLog);
+    }
+
+    private HyperLogLog load(int rsEventId) {
+        return voterSketchRepository.findById(rsEventId)
+                .map(voterSketchDto -> HyperLogLog.fromBytes(voterSketchDto.getSketch()))
+                .orElseGet(HyperLogLog::new);
+    }
+
+    private void save(int rsEventId, HyperLogLog hyperLogLog) {
+        if (hyperLogLog == null) {
+            return;
+        }
+        voterSketchRepository.save(new VoterSketchDto(rsEventId, hyperLogLog.toBytes()));
+        rsEventRepository.findById(rsEventId).ifPresent(rsEventDto -> {
+            rsEventDto.setUniqueVoters((int) hyperLogLog.estimate());
+            rsEventRepository.save(rsEventDto);
+        });
+    }
+}
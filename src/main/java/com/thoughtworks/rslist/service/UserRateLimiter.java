@@ -0,0 +1,121 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.exception.TooManyRequestsException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per key, kept as a single theoretical arrival time per key (GCRA) so that taking a
+ * token is one CAS. The map is bounded by sweeps: once it holds {@code maxKeys} keys, a sweep drops
+ * every full bucket, which changes no decision, and then the least recently used ones until a quarter
+ * of the map is free, so a sweep runs at most once per {@code maxKeys / 4} new keys. The least recently
+ * used bucket has the earliest arrival time, which is also the one closest to being full again.
+ */
+public class UserRateLimiter {
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final int sweepTarget;
+    private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    public UserRateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException("rate, burst and max keys must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.maxKeys = maxKeys;
+        this.sweepTarget = maxKeys - Math.max(1, maxKeys / 4);
+    }
+
+    public void check(Object key) {
+        long waitNanos = acquire(key, System.nanoTime());
+        if (waitNanos > 0) {
+            throw new TooManyRequestsException((waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    long acquire(Object key, long now) {
+        while (true) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    evict(now);
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            long waitNanos = take(bucket, now);
+            if (waitNanos >= 0) {
+                return waitNanos;
+            }
+        }
+    }
+
+    // -1 when the bucket was evicted under us and the key has to be looked up again
+    private long take(AtomicLong bucket, long now) {
+        while (true) {
+            long arrival = bucket.get();
+            if (arrival == EVICTED) {
+                return -1;
+            }
+            long start = Math.max(arrival, now);
+            long waitNanos = start - now - toleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(arrival, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    // a bucket is retired with a CAS before it is removed, so a token taken concurrently either
+    // keeps the bucket or is retried on a fresh one
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // arrival times relative to now, so nanoTime wrapping doesn't upset the order
+            long[] ages = buckets.values().stream()
+                    .mapToLong(AtomicLong::get)
+                    .filter(arrival -> arrival != EVICTED)
+                    .map(arrival -> arrival - now)
+                    .sorted()
+                    .toArray();
+            int excess = ages.length - sweepTarget;
+            long cutoff = excess > 0 ? Math.max(0, ages[excess - 1]) : 0;
+            // of the buckets right at the cutoff, only those that fall within the excess go
+            long tied = excess > 0 && cutoff > 0 ? Arrays.stream(ages, 0, excess).filter(age -> age == cutoff).count() : 0;
+            for (Map.Entry<Object, AtomicLong> entry : buckets.entrySet()) {
+                long arrival = entry.getValue().get();
+                if (arrival == EVICTED || arrival - now > cutoff) {
+                    continue;
+                }
+                if (arrival - now == cutoff && cutoff > 0) {
+                    if (tied == 0) {
+                        continue;
+                    }
+                    tied--;
+                }
+                if (entry.getValue().compareAndSet(arrival, EVICTED)) {
+                    buckets.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
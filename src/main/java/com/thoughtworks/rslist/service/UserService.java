@@ -0,0 +1,72 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.ArchivedVoteRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Service
+public class UserService {
+    final UserRepository userRepository;
+    final ChangeLog changeLog;
+    final VoteRepository voteRepository;
+    final VoteColumnStore voteColumnStore;
+    final VoteSummaryService voteSummaryService;
+    final ArchivedVoteRepository archivedVoteRepository;
+
+    public UserService(UserRepository userRepository, ChangeLog changeLog, VoteRepository voteRepository,
+                       VoteColumnStore voteColumnStore, VoteSummaryService voteSummaryService,
+                       ArchivedVoteRepository archivedVoteRepository) {
+        this.userRepository = userRepository;
+        this.changeLog = changeLog;
+        this.voteRepository = voteRepository;
+        this.voteColumnStore = voteColumnStore;
+        this.voteSummaryService = voteSummaryService;
+        this.archivedVoteRepository = archivedVoteRepository;
+    }
+
+    @Transactional
+    public UserDto register(UserDto userDto) {
+        UserDto saved = userRepository.save(userDto);
+        changeLog.record(ChangeLogDto.Type.USER_REGISTERED, null, saved.getId(), null);
+        return saved;
+    }
+
+    // the user's events go with it, and every vote, archived or not, cast by the user or on those events,
+    // so other nodes are told about each event too
+    @Transactional
+    public void deleteUser(int id) {
+        List<Integer> rsEventIds = userRepository.findById(id)
+                .map(userDto -> userDto.getRsEventDtos().stream().map(RsEventDto::getId).collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+        for (int rsEventId : rsEventIds) {
+            changeLog.record(ChangeLogDto.Type.RS_EVENT_REMOVED, rsEventId, id, null);
+        }
+        voteRepository.deleteByUserId(id);
+        archivedVoteRepository.deleteByUserId(id);
+        if (!rsEventIds.isEmpty()) {
+            voteRepository.deleteByRsEventIdIn(rsEventIds);
+            archivedVoteRepository.deleteByRsEventIdIn(rsEventIds);
+        }
+        voteSummaryService.deleteByUser(id);
+        voteSummaryService.deleteByRsEvents(rsEventIds);
+        userRepository.deleteById(id);
+        changeLog.record(ChangeLogDto.Type.USER_DELETED, null, id, null);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                voteColumnStore.removeVotes(id, rsEventIds);
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+package com.thoughtworks.rslist.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves votes of whole months that have gone cold from {@code vote} to {@code vote_archive}, so the
+ * hot table and its indexes stay about {@code hot-months} in size however long the history gets.
+ * Each batch copies and deletes the same explicit ids in one transaction; a vote committed while a
+ * batch runs is left for the next run rather than deleted unarchived.
+ */
+@Service
+public class VoteArchiver {
+    private static final Logger log = LoggerFactory.getLogger(VoteArchiver.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int hotMonths;
+    private final int batchSize;
+
+    public VoteArchiver(DataSource dataSource, PlatformTransactionManager transactionManager,
+                        @Value("${rs.vote-archive.hot-months:3}") int hotMonths,
+                        @Value("${rs.vote-archive.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hotMonths = hotMonths;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${rs.vote-archive.cron:0 30 3 * * *}")
+    public void archiveColdMonths() {
+        archiveBefore(LocalDate.now().withDayOfMonth(1).minusMonths(hotMonths).atStartOfDay());
+    }
+
+    public long archiveBefore(LocalDateTime cutoff) {
+        long archived = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> moveBatch(cutoff));
+            archived += moved;
+        } while (moved == batchSize);
+        log.info("archived {} votes older than {}", archived, cutoff);
+        return archived;
+    }
+
+    private int moveBatch(LocalDateTime cutoff) {
+        List<Integer> ids = jdbcTemplate.queryForList(
+                "select id from vote where local_date_time < ? order by id limit ?",
+                Integer.class, Timestamp.valueOf(cutoff), batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<Integer>> params = Collections.singletonMap("ids", ids);
+        namedParameterJdbcTemplate.update("insert into vote_archive (id, user_id, rs_event_id, num, local_date_time) "
+                + "select id, user_id, rs_event_id, num, local_date_time from vote where id in (:ids)", params);
+        namedParameterJdbcTemplate.update("delete from vote where id in (:ids)", params);
+        return ids.size();
+    }
+}
@@ -0,0 +1,34 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.VoteDto;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+
+/**
+ * Appends each committed vote to the {@link VoteColumnStore}; a rolled back vote never reaches it.
+ */
+public class VoteColumnListener {
+    private final ObjectProvider<VoteColumnStore> voteColumnStore;
+
+    public VoteColumnListener(ObjectProvider<VoteColumnStore> voteColumnStore) {
+        this.voteColumnStore = voteColumnStore;
+    }
+
+    @PostPersist
+    public void onPersist(VoteDto voteDto) {
+        Runnable append = () -> voteColumnStore.getObject().append(voteDto);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,385 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.VoteAggregate;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Every vote, archived or hot, mirrored into primitive columns (user, event, num, seconds since
+ * 2020) for aggregations that would otherwise load entities. Columns grow in fixed-size chunks that
+ * are never copied, and each new row is published by the volatile size, so scans run without locks
+ * against appends. Users are numbered densely in the order they are first seen, and their gender
+ * and age band are dictionary-encoded into byte arrays indexed by that number, which makes grouping
+ * by them a plain array read.
+ * <p>
+ * Removing a user re-points its rows, and the rows on its events, at the reserved number 0, which
+ * scans skip; the space is reclaimed by the next rebuild.
+ */
+@Component
+public class VoteColumnStore {
+    private static final Logger log = LoggerFactory.getLogger(VoteColumnStore.class);
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final long EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final int MAX_HOURS = 24 * 366;
+    private static final int AGE_BANDS = 13;
+    private static final int REMOVED = 0;
+
+    public enum GroupBy {
+        HOUR, GENDER, AGE_BAND
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshot;
+    private final ChangeLog changeLog;
+    private final ForkJoinPool pool;
+    private volatile Columns columns = new Columns();
+    // votes that were loaded but whose change log rows can still be replayed or listened to
+    private Set<Integer> loadedAhead = new HashSet<>();
+
+    public VoteColumnStore(DataSource dataSource,
+                           PlatformTransactionManager transactionManager,
+                           ChangeLog changeLog,
+                           @Value("${rs.vote-columns.parallelism:0}") int parallelism,
+                           @Value("${rs.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.snapshot = new TransactionTemplate(transactionManager);
+        this.snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshot.setReadOnly(true);
+        this.changeLog = changeLog;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    // votes and their change log rows commit together, so reading both from one snapshot tells
+    // exactly which of the replays still to come are already loaded
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Columns loaded = new Columns();
+        Set<Integer> ahead = new HashSet<>();
+        int cursor = changeLog.cursor();
+        snapshot.execute(status -> {
+            jdbcTemplate.query("select id, gender, age from user", resultSet -> {
+                loaded.putUser(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3));
+            });
+            for (String table : VoteHistory.TABLES_OLDEST_FIRST) {
+                jdbcTemplate.query("select user_id, rs_event_id, num, local_date_time from " + table, resultSet -> {
+                    Timestamp time = resultSet.getTimestamp(4);
+                    loaded.append(loaded.userIndex(resultSet.getInt(1)), resultSet.getInt(2), resultSet.getInt(3),
+                            time == null ? 0 : seconds(time.toLocalDateTime()));
+                });
+            }
+            ahead.addAll(jdbcTemplate.queryForList(
+                    "select vote_id from change_log where id > ? and vote_id is not null", Integer.class, cursor));
+            return null;
+        });
+        columns = loaded;
+        loadedAhead = ahead;
+        log.info("loaded {} votes into columns", loaded.size);
+    }
+
+    public void append(VoteDto voteDto) {
+        UserDto user = voteDto.getUser();
+        synchronized (this) {
+            if (loadedAhead.remove(voteDto.getId())) {
+                return;
+            }
+            append(user.getId(), user.getGender(), user.getAge(), voteDto.getRsEvent().getId(), voteDto.getNum(),
+                    voteDto.getLocalDateTime());
+        }
+    }
+
+    public synchronized void append(int userId, String gender, int age, int rsEventId, int num, LocalDateTime time) {
+        Columns current = columns;
+        current.append(current.putUser(userId, gender, age), rsEventId, num, time == null ? 0 : seconds(time));
+    }
+
+    /**
+     * Drops the votes cast by the user, if any, and those cast on the given events.
+     */
+    public synchronized void removeVotes(Integer userId, Collection<Integer> rsEventIds) {
+        Columns current = columns;
+        Integer user = userId == null ? null : current.userIndexes.remove(userId);
+        int removedUser = user == null ? REMOVED : user;
+        int[] events = rsEventIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+        int size = current.size;
+        for (int row = 0; row < size; row++) {
+            int chunk = row >>> CHUNK_BITS;
+            int offset = row & (CHUNK_SIZE - 1);
+            int[] users = current.users[chunk];
+            if (users[offset] == removedUser
+                    || events.length > 0 && Arrays.binarySearch(events, current.rsEventIds[chunk][offset]) >= 0) {
+                users[offset] = REMOVED;
+            }
+        }
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * Counts votes and sums their num per group, over the votes matching every non-null filter.
+     */
+    public List<VoteAggregate> aggregate(GroupBy groupBy, Integer userId, Integer rsEventId, String gender,
+                                         LocalDateTime from, LocalDateTime to) {
+        Columns snapshot = columns;
+        int size = snapshot.size;
+        Scan scan = new Scan();
+        scan.snapshot = snapshot;
+        scan.groupBy = groupBy;
+        if (userId != null) {
+            Integer user = snapshot.userIndexes.get(userId);
+            if (user == null) {
+                return new ArrayList<>();
+            }
+            scan.user = user;
+        } else {
+            scan.user = -1;
+        }
+        scan.rsEventId = rsEventId == null ? -1 : rsEventId;
+        scan.gender = gender == null ? -1 : snapshot.genderCode(gender);
+        scan.from = from == null ? Integer.MIN_VALUE : seconds(from);
+        scan.to = to == null ? Integer.MAX_VALUE : seconds(to);
+        if (scan.gender == 0) {
+            return new ArrayList<>();
+        }
+        switch (groupBy) {
+            case HOUR:
+                long lastHour = Math.floorDiv(to == null ? snapshot.maxSeconds : scan.to - 1, 3600);
+                // without a start, the latest year of votes
+                scan.firstHour = from == null
+                        ? Math.max(Math.floorDiv(snapshot.minSeconds, 3600), lastHour - MAX_HOURS + 1)
+                        : Math.floorDiv(scan.from, 3600);
+                long hours = lastHour - scan.firstHour + 1;
+                if (hours > MAX_HOURS) {
+                    throw new RequestNotValidException("time range too long");
+                }
+                scan.groups = (int) Math.max(hours, 0);
+                break;
+            case GENDER:
+                scan.groups = snapshot.genders.size() + 1;
+                break;
+            default:
+                scan.groups = AGE_BANDS;
+        }
+        long[] totals = size == 0 || scan.groups == 0 ? new long[2 * scan.groups] : pool.invoke(new ScanTask(scan, 0, size));
+
+        List<VoteAggregate> aggregates = new ArrayList<>();
+        for (int group = 0; group < scan.groups; group++) {
+            if (totals[group] > 0) {
+                aggregates.add(new VoteAggregate(key(scan, group), totals[group], totals[scan.groups + group]));
+            }
+        }
+        return aggregates;
+    }
+
+    private static String key(Scan scan, int group) {
+        switch (scan.groupBy) {
+            case HOUR:
+                return LocalDateTime.ofEpochSecond(EPOCH + (scan.firstHour + group) * 3600L, 0, ZoneOffset.UTC).toString();
+            case GENDER:
+                return group == 0 ? "unknown" : scan.snapshot.genders.get(group - 1);
+            default:
+                return group * 10 + "-" + (group * 10 + 9);
+        }
+    }
+
+    // wall-clock time, like the LocalDateTime it comes from
+    private static int seconds(LocalDateTime time) {
+        return (int) (time.toEpochSecond(ZoneOffset.UTC) - EPOCH);
+    }
+
+    private static class Scan {
+        Columns snapshot;
+        GroupBy groupBy;
+        int user;
+        int rsEventId;
+        int gender;
+        int from;
+        int to;
+        long firstHour;
+        int groups;
+    }
+
+    private static class ScanTask extends RecursiveTask<long[]> {
+        private final Scan scan;
+        private final int lo;
+        private final int hi;
+
+        ScanTask(Scan scan, int lo, int hi) {
+            this.scan = scan;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (hi - lo > CHUNK_SIZE) {
+                int mid = ((lo + hi) >>> 1) & -CHUNK_SIZE;
+                if (mid <= lo) {
+                    mid = lo + CHUNK_SIZE;
+                }
+                ScanTask right = new ScanTask(scan, mid, hi);
+                right.fork();
+                long[] totals = new ScanTask(scan, lo, mid).compute();
+                long[] other = right.join();
+                for (int i = 0; i < totals.length; i++) {
+                    totals[i] += other[i];
+                }
+                return totals;
+            }
+            return scanChunk();
+        }
+
+        // lo..hi lies within one chunk
+        private long[] scanChunk() {
+            Columns columns = scan.snapshot;
+            int chunk = lo >>> CHUNK_BITS;
+            int start = lo & (CHUNK_SIZE - 1);
+            int end = start + (hi - lo);
+            int[] users = columns.users[chunk];
+            int[] rsEventIds = columns.rsEventIds[chunk];
+            int[] nums = columns.nums[chunk];
+            int[] seconds = columns.seconds[chunk];
+            byte[] genderCodes = columns.genderCodes;
+            byte[] ageBands = columns.ageBands;
+            int groups = scan.groups;
+            long[] totals = new long[2 * groups];
+            for (int i = start; i < end; i++) {
+                int user = users[i];
+                int time = seconds[i];
+                if (user == REMOVED
+                        || scan.user >= 0 && user != scan.user
+                        || scan.rsEventId >= 0 && rsEventIds[i] != scan.rsEventId
+                        || time < scan.from || time >= scan.to) {
+                    continue;
+                }
+                int genderCode = genderCodes[user];
+                if (scan.gender >= 0 && genderCode != scan.gender) {
+                    continue;
+                }
+                int group;
+                switch (scan.groupBy) {
+                    case HOUR:
+                        group = (int) (Math.floorDiv(time, 3600) - scan.firstHour);
+                        break;
+                    case GENDER:
+                        group = genderCode;
+                        break;
+                    default:
+                        group = ageBands[user];
+                }
+                if (group < 0 || group >= groups) {
+                    continue;
+                }
+                totals[group]++;
+                totals[groups + group] += nums[i];
+            }
+            return totals;
+        }
+    }
+
+    private static class Columns {
+        int[][] users = new int[16][];
+        int[][] rsEventIds = new int[16][];
+        int[][] nums = new int[16][];
+        int[][] seconds = new int[16][];
+        volatile int size;
+        int minSeconds = Integer.MAX_VALUE;
+        int maxSeconds = Integer.MIN_VALUE;
+        // code 0 means unknown, so a gender's code is its dictionary index plus one
+        final List<String> genders = new CopyOnWriteArrayList<>();
+        final Map<String, Byte> genderDictionary = new ConcurrentHashMap<>();
+        final Map<Integer, Integer> userIndexes = new ConcurrentHashMap<>();
+        volatile byte[] genderCodes = new byte[1024];
+        volatile byte[] ageBands = new byte[1024];
+        int userCount = 1;
+
+        void append(int user, int rsEventId, int num, int time) {
+            int row = size;
+            int chunk = row >>> CHUNK_BITS;
+            if (chunk == users.length) {
+                users = Arrays.copyOf(users, chunk * 2);
+                rsEventIds = Arrays.copyOf(rsEventIds, chunk * 2);
+                nums = Arrays.copyOf(nums, chunk * 2);
+                seconds = Arrays.copyOf(seconds, chunk * 2);
+            }
+            if (users[chunk] == null) {
+                users[chunk] = new int[CHUNK_SIZE];
+                rsEventIds[chunk] = new int[CHUNK_SIZE];
+                nums[chunk] = new int[CHUNK_SIZE];
+                seconds[chunk] = new int[CHUNK_SIZE];
+            }
+            int offset = row & (CHUNK_SIZE - 1);
+            users[chunk][offset] = user;
+            rsEventIds[chunk][offset] = rsEventId;
+            nums[chunk][offset] = num;
+            seconds[chunk][offset] = time;
+            minSeconds = Math.min(minSeconds, time);
+            maxSeconds = Math.max(maxSeconds, time);
+            size = row + 1;
+        }
+
+        // the user's number, which is published only after its codes are written
+        int putUser(int userId, String gender, int age) {
+            Integer known = userIndexes.get(userId);
+            int user = known != null ? known : userCount;
+            if (user == genderCodes.length) {
+                genderCodes = Arrays.copyOf(genderCodes, user * 2);
+                ageBands = Arrays.copyOf(ageBands, user * 2);
+            }
+            genderCodes[user] = gender == null ? 0 : genderDictionary.computeIfAbsent(gender, key -> {
+                if (genders.size() == Byte.MAX_VALUE) {
+                    return 0;
+                }
+                genders.add(key);
+                return (byte) genders.size();
+            });
+            ageBands[user] = (byte) Math.min(Math.max(age, 0) / 10, AGE_BANDS - 1);
+            if (known == null) {
+                userCount++;
+                userIndexes.put(userId, user);
+            }
+            return user;
+        }
+
+        // votes of users missing from the user table count as unknown gender and the lowest band
+        int userIndex(int userId) {
+            Integer user = userIndexes.get(userId);
+            return user != null ? user : putUser(userId, null, 0);
+        }
+
+        int genderCode(String gender) {
+            Byte code = genderDictionary.get(gender);
+            return code == null ? 0 : code;
+        }
+    }
+}
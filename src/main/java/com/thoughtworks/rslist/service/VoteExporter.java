@@ -0,0 +1,126 @@
+package com.thoughtworks.rslist.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import com.thoughtworks.rslist.domain.Vote;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes votes straight from a forward-only JDBC cursor to the response, one row at a time, so
+ * neither the result set nor a persistence context is ever held in memory. On MySQL the cursor
+ * only streams with useCursorFetch=true on the connection URL. Archived votes are written first,
+ * then the ones still in the hot table. Times are written with seconds even when they are zero.
+ */
+@Service
+public class VoteExporter {
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectWriter objectWriter;
+
+    public VoteExporter(DataSource dataSource, ObjectMapper objectMapper,
+                        @Value("${rs.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectWriter = objectMapper.copy()
+                .registerModule(new SimpleModule().addSerializer(LocalDateTime.class,
+                        new LocalDateTimeSerializer(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
+                .writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public void writeNdjson(Integer userId, Integer rsEventId, LocalDateTime from, LocalDateTime to,
+                            OutputStream out) throws IOException {
+        JsonGenerator generator = objectWriter.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(null);
+        query(userId, rsEventId, from, to, resultSet -> {
+            try {
+                objectWriter.writeValue(generator, toVote(resultSet));
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.flush();
+    }
+
+    public void writeCsv(Integer userId, Integer rsEventId, LocalDateTime from, LocalDateTime to,
+                         OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("userId,rsEventId,time,voteNum\n");
+        query(userId, rsEventId, from, to, resultSet -> {
+            try {
+                Vote vote = toVote(resultSet);
+                writer.write(vote.getUserId() + "," + vote.getRsEventId() + ","
+                        + (vote.getTime() == null ? "" : DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(vote.getTime())) + "," + vote.getVoteNum() + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private void query(Integer userId, Integer rsEventId, LocalDateTime from, LocalDateTime to, RowWriter rowWriter)
+            throws IOException {
+        StringBuilder where = new StringBuilder(" where 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (userId != null) {
+            where.append(" and user_id = ?");
+            args.add(userId);
+        }
+        if (rsEventId != null) {
+            where.append(" and rs_event_id = ?");
+            args.add(rsEventId);
+        }
+        if (from != null) {
+            where.append(" and local_date_time >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            where.append(" and local_date_time < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        where.append(" order by id");
+        try {
+            for (String table : VoteHistory.TABLES_OLDEST_FIRST) {
+                jdbcTemplate.query("select user_id, rs_event_id, local_date_time, num from " + table + where,
+                        rowWriter::write, args.toArray());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Vote toVote(ResultSet resultSet) throws SQLException {
+        Timestamp time = resultSet.getTimestamp("local_date_time");
+        return Vote.builder()
+                .userId(resultSet.getInt("user_id"))
+                .rsEventId(resultSet.getInt("rs_event_id"))
+                .time(time == null ? null : time.toLocalDateTime())
+                .voteNum(resultSet.getInt("num"))
+                .build();
+    }
+
+    private interface RowWriter {
+        void write(ResultSet resultSet) throws SQLException;
+    }
+}
@@ -0,0 +1,60 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.Vote;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads votes across the archive and the hot table as one history. Both tables share their column
+ * names, and every archived vote is older than the hot ones, so a page is read from the archive
+ * first and topped up from {@code vote}.
+ */
+@Service
+public class VoteHistory {
+    public static final List<String> TABLES_OLDEST_FIRST =
+            Collections.unmodifiableList(Arrays.asList("vote_archive", "vote"));
+
+    private static final RowMapper<Vote> VOTE_ROW_MAPPER = (resultSet, rowNum) -> {
+        Timestamp time = resultSet.getTimestamp("local_date_time");
+        return Vote.builder()
+                .userId(resultSet.getInt("user_id"))
+                .rsEventId(resultSet.getInt("rs_event_id"))
+                .time(time == null ? null : time.toLocalDateTime())
+                .voteNum(resultSet.getInt("num"))
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VoteHistory(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public List<Vote> findVotes(int userId, int rsEventId, int offset, int limit) {
+        int archived = jdbcTemplate.queryForObject(
+                "select count(*) from vote_archive where user_id = ? and rs_event_id = ?",
+                Integer.class, userId, rsEventId);
+        List<Vote> votes = new ArrayList<>(limit);
+        if (offset < archived) {
+            votes.addAll(findPage("vote_archive", userId, rsEventId, offset, limit));
+        }
+        if (votes.size() < limit) {
+            votes.addAll(findPage("vote", userId, rsEventId, Math.max(0, offset - archived), limit - votes.size()));
+        }
+        return votes;
+    }
+
+    private List<Vote> findPage(String table, int userId, int rsEventId, int offset, int limit) {
+        return jdbcTemplate.query("select user_id, rs_event_id, local_date_time, num from " + table
+                        + " where user_id = ? and rs_event_id = ? order by id limit ? offset ?",
+                VOTE_ROW_MAPPER, userId, rsEventId, limit, offset);
+    }
+}
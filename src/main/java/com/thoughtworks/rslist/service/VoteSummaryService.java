@@ -0,0 +1,134 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.VoteSummaryDto;
+import com.thoughtworks.rslist.repository.VoteSummaryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps one row per (user, event) pair with the votes the user has spent on the event, so neither
+ * "my votes" nor an event's voter breakdown has to aggregate the vote table. {@link #record} must
+ * run in the transaction that saves the vote.
+ */
+@Service
+public class VoteSummaryService {
+    private final VoteSummaryRepository voteSummaryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildThreads;
+    private final int rebuildChunkUsers;
+
+    public VoteSummaryService(VoteSummaryRepository voteSummaryRepository,
+                              DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${rs.vote-summary.rebuild-threads:4}") int rebuildThreads,
+                              @Value("${rs.vote-summary.rebuild-chunk-users:1000}") int rebuildChunkUsers) {
+        this.voteSummaryRepository = voteSummaryRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rebuildThreads = rebuildThreads;
+        this.rebuildChunkUsers = rebuildChunkUsers;
+    }
+
+    // a single upsert, so two first votes on the same pair can't both miss the row and collide on insert
+    public void record(int userId, int rsEventId, int num, LocalDateTime time) {
+        jdbcTemplate.update("insert into vote_summary "
+                        + "(user_id, rs_event_id, total_num, last_vote_time, revision, updated_at) "
+                        + "values (?, ?, ?, ?, 1, ?) on duplicate key update total_num = total_num + values(total_num), "
+                        + "last_vote_time = greatest(last_vote_time, values(last_vote_time)), "
+                        + "revision = revision + 1, updated_at = values(updated_at)",
+                userId, rsEventId, num, Timestamp.valueOf(time), Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    public void deleteByUser(int userId) {
+        voteSummaryRepository.deleteByUserId(userId);
+    }
+
+    public void deleteByRsEvents(Collection<Integer> rsEventIds) {
+        if (!rsEventIds.isEmpty()) {
+            voteSummaryRepository.deleteByRsEventIdIn(rsEventIds);
+        }
+    }
+
+    public Optional<VoteSummaryDto> find(int userId, int rsEventId) {
+        return voteSummaryRepository.findById(new VoteSummaryDto.Key(userId, rsEventId));
+    }
+
+    public List<VoteSummaryDto> findByUser(int userId) {
+        return voteSummaryRepository.findAllByUserIdOrderByRsEventId(userId);
+    }
+
+    public List<VoteSummaryDto> findByRsEvent(int rsEventId, int limit) {
+        return voteSummaryRepository.findAllByRsEventIdOrderByTotalNumDescUserId(rsEventId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Recomputes every summary from the archived and hot votes. Users are split into id ranges that are
+     * aggregated concurrently, each range replaced in its own transaction, so readers see either the
+     * old or the new rows of a range but never an empty one.
+     */
+    public void rebuild() throws InterruptedException {
+        int lo = Integer.MAX_VALUE;
+        int hi = Integer.MIN_VALUE;
+        for (String table : VoteHistory.TABLES_OLDEST_FIRST) {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                    "select min(user_id) lo, max(user_id) hi from " + table);
+            if (bounds.get("lo") != null) {
+                lo = Math.min(lo, ((Number) bounds.get("lo")).intValue());
+                hi = Math.max(hi, ((Number) bounds.get("hi")).intValue());
+            }
+        }
+        if (lo > hi) {
+            jdbcTemplate.update("delete from vote_summary");
+            return;
+        }
+        jdbcTemplate.update("delete from vote_summary where user_id < ? or user_id > ?", lo, hi);
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (long from = lo; from <= hi; from += rebuildChunkUsers) {
+                int first = (int) from;
+                int last = (int) Math.min(hi, from + rebuildChunkUsers - 1);
+                chunks.add(executor.submit(() -> rebuildRange(first, last)));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("vote summary rebuild failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void rebuildRange(int firstUserId, int lastUserId) {
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.update("delete from vote_summary where user_id between ? and ?", firstUserId, lastUserId);
+            return jdbcTemplate.update("insert into vote_summary "
+                    + "(user_id, rs_event_id, total_num, last_vote_time, revision, updated_at) "
+                    + "select user_id, rs_event_id, sum(num), max(local_date_time), 1, ? from ("
+                    + "select user_id, rs_event_id, num, local_date_time from vote_archive where user_id between ? and ? "
+                    + "union all "
+                    + "select user_id, rs_event_id, num, local_date_time from vote where user_id between ? and ?"
+                    + ") v group by user_id, rs_event_id", Timestamp.valueOf(LocalDateTime.now()),
+                    firstUserId, lastUserId, firstUserId, lastUserId);
+        });
+    }
+}
@@ -0,0 +1,14 @@
+package com.thoughtworks.rslist.sketch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Counter {
+    private int key;
+    private long count;
+    private long error;
+}
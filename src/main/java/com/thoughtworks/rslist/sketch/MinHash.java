@@ -0,0 +1,65 @@
+package com.thoughtworks.rslist.sketch;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * MinHash signatures for estimating Jaccard similarity of shingle sets.
+ * Signatures hold 32-bit minima, so each costs {@code 4 * hashes} bytes.
+ */
+public class MinHash {
+    private final long[] seeds;
+
+    public MinHash(int hashes) {
+        seeds = new long[hashes];
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < hashes; i++) {
+            seed = mix(seed + i);
+            seeds[i] = seed;
+        }
+    }
+
+    public int size() {
+        return seeds.length;
+    }
+
+    public int[] signature(Collection<String> shingles) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String shingle : shingles) {
+            long hash = hash(shingle);
+            for (int i = 0; i < seeds.length; i++) {
+                int value = (int) (mix(hash ^ seeds[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    public static double similarity(int[] left, int[] right) {
+        int equal = 0;
+        for (int i = 0; i < left.length; i++) {
+            if (left[i] == right[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / left.length;
+    }
+
+    private static long hash(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,71 @@
+package com.thoughtworks.rslist.sketch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Space-Saving top-k summary over int keys in a fixed number of slots.
+ *
+ * <p>Any key whose true count exceeds {@code total / capacity} is guaranteed to be present,
+ * and a reported count overestimates the true count by at most its {@code error}.
+ * Not thread safe.
+ */
+public class SpaceSaving {
+    private final int[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        keys = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+    }
+
+    public void add(int key, long weight) {
+        int min = 0;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                counts[i] += weight;
+                return;
+            }
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        if (size < keys.length) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            size++;
+            return;
+        }
+        keys[min] = key;
+        errors[min] = counts[min];
+        counts[min] += weight;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void forEach(Consumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], counts[i], errors[i]);
+        }
+    }
+
+    public List<Counter> top(int k) {
+        List<Counter> counters = new ArrayList<>(size);
+        forEach((key, count, error) -> counters.add(new Counter(key, count, error)));
+        counters.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return counters.size() > k ? counters.subList(0, k) : counters;
+    }
+
+    public interface Consumer {
+        void accept(int key, long count, long error);
+    }
+}
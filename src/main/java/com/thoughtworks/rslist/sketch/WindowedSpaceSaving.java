@@ -0,0 +1,59 @@
+package com.thoughtworks.rslist.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sliding-window heavy hitters: a ring of {@link SpaceSaving} summaries, one per time bucket.
+ * Buckets that fall out of the window are cleared and reused, so memory stays at
+ * {@code capacity * bucketCount} slots no matter how many keys are seen.
+ */
+public class WindowedSpaceSaving {
+    private final SpaceSaving[] buckets;
+    private final long[] bucketEpochs;
+    private final long bucketMillis;
+
+    public WindowedSpaceSaving(int capacity, long windowMillis, int bucketCount) {
+        if (bucketCount <= 0 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("window must cover at least one millisecond per bucket");
+        }
+        buckets = new SpaceSaving[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new SpaceSaving(capacity);
+        }
+        bucketEpochs = new long[bucketCount];
+        Arrays.fill(bucketEpochs, Long.MIN_VALUE);
+        bucketMillis = windowMillis / bucketCount;
+    }
+
+    public synchronized void add(int key, long weight, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int slot = (int) (epoch % buckets.length);
+        if (bucketEpochs[slot] != epoch) {
+            buckets[slot].clear();
+            bucketEpochs[slot] = epoch;
+        }
+        buckets[slot].add(key, weight);
+    }
+
+    public synchronized List<Counter> top(int k, long nowMillis) {
+        long oldestEpoch = nowMillis / bucketMillis - buckets.length;
+        Map<Integer, Counter> merged = new HashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            if (bucketEpochs[i] <= oldestEpoch) {
+                continue;
+            }
+            buckets[i].forEach((key, count, error) -> {
+                Counter counter = merged.computeIfAbsent(key, id -> new Counter(id, 0, 0));
+                counter.setCount(counter.getCount() + count);
+                counter.setError(counter.getError() + error);
+            });
+        }
+        List<Counter> counters = new ArrayList<>(merged.values());
+        counters.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        return counters.size() > k ? new ArrayList<>(counters.subList(0, k)) : counters;
+    }
+}
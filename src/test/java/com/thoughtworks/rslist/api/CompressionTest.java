@@ -0,0 +1,100 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// compression happens in the Tomcat connector, so this needs a real server rather than MockMvc
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CompressionTest {
+    @LocalServerPort
+    int port;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+        UserDto userDto = userRepository.save(UserDto.builder().userName("idolice").age(19).email("a@b.com")
+                .gender("female").phone("18888888888").voteNum(10).build());
+        for (int i = 0; i < 100; i++) {
+            rsEventRepository.save(RsEventDto.builder()
+                    .eventName("compressed event " + i).keyword("keyword").voteNum(i).user(userDto).build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldGzipLargeJsonWhenClientAcceptsIt() throws Exception {
+        HttpURLConnection connection = open("/rs/list");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+        assertTrue(connection.getHeaderField("ETag").startsWith("W/"));
+        assertNotEquals(open("/rs/list").getHeaderField("ETag"), connection.getHeaderField("ETag"));
+        String body = read(new GZIPInputStream(connection.getInputStream()));
+        assertTrue(body.startsWith("[{"));
+        assertTrue(body.contains("compressed event 99"));
+    }
+
+    @Test
+    void shouldNotGzipWhenClientDoesNotAcceptIt() throws Exception {
+        HttpURLConnection connection = open("/rs/list");
+
+        assertEquals(200, connection.getResponseCode());
+        assertNull(connection.getHeaderField("Content-Encoding"));
+        assertTrue(read(connection.getInputStream()).contains("compressed event 99"));
+    }
+
+    private HttpURLConnection open(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        return connection;
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = stream.read(buffer)) != -1; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
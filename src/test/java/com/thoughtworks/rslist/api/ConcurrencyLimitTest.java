@@ -0,0 +1,121 @@
+package com.thoughtworks.rslist.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "rs.concurrency.write.initial-limit=1",
+        "rs.concurrency.write.min-limit=1",
+        "rs.concurrency.write.max-limit=1",
+        "rs.concurrency.retry-after=2s",
+        "rs.concurrency.exports=1"
+})
+@AutoConfigureMockMvc
+class ConcurrencyLimitTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    ObjectMapper objectMapper = new ObjectMapper();
+    UserDto userDto;
+    RsEventDto rsEventDto;
+
+    @BeforeEach
+    void setUp() {
+        deleteAll();
+        userDto = userRepository.save(UserDto.builder().userName("alice").phone("18888888888").age(20).voteNum(10).build());
+        rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().eventName("event").keyword("keyword").user(userDto).build());
+    }
+
+    // the votes cast here would otherwise keep the next test class from deleting its events
+    @AfterEach
+    void tearDown() {
+        deleteAll();
+    }
+
+    private void deleteAll() {
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void shouldShedWritesOverLimitButKeepServingReads() throws Exception {
+        // the first vote holds the only write slot until its async dispatch completes
+        MvcResult inFlight = mockMvc.perform(vote()).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(vote())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.error", is("server busy")));
+        mockMvc.perform(post("/user")
+                .content("{\"userName\":\"bob\",\"age\":20,\"phone\":\"18888888889\"}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable());
+        MvcResult read = mockMvc.perform(get("/rs/list")).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(read)).andExpect(jsonPath("$[0].eventName", is("event")));
+
+        mockMvc.perform(asyncDispatch(inFlight)).andExpect(status().isOk());
+        MvcResult next = mockMvc.perform(vote()).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(next)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/diagnostics/concurrency-limits"))
+                .andExpect(jsonPath("$.write.limit", is(1)))
+                .andExpect(jsonPath("$.write.shed", is(2)))
+                .andExpect(jsonPath("$.write.inFlight", is(0)));
+    }
+
+    @Test
+    void shouldLimitConcurrentExportsOnTheirOwn() throws Exception {
+        MvcResult inFlight = mockMvc.perform(get("/voteRecord/export")).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(get("/voteRecord/export").param("format", "csv"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+        MvcResult read = mockMvc.perform(get("/rs/list")).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(read)).andExpect(status().isOk());
+
+        mockMvc.perform(asyncDispatch(inFlight)).andExpect(status().isOk());
+        MvcResult next = mockMvc.perform(get("/voteRecord/export")).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(next)).andExpect(status().isOk());
+    }
+
+    private MockHttpServletRequestBuilder vote() throws Exception {
+        return post("/rs/vote/{id}", rsEventDto.getId())
+                .content(objectMapper.writeValueAsString(Vote.builder().userId(userDto.getId()).voteNum(1).build()))
+                .contentType(MediaType.APPLICATION_JSON);
+    }
+}
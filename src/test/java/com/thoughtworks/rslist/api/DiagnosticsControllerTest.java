@@ -0,0 +1,161 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteSummaryDto;
+import com.thoughtworks.rslist.repository.ArchivedVoteRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.repository.VoteSummaryRepository;
+import com.thoughtworks.rslist.repository.VoterSketchRepository;
+import com.thoughtworks.rslist.service.VoteArchiver;
+import com.thoughtworks.rslist.service.VoteSummaryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DiagnosticsControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    @Autowired
+    VoterSketchRepository voterSketchRepository;
+    @Autowired
+    VoteSummaryRepository voteSummaryRepository;
+    @Autowired
+    VoteSummaryService voteSummaryService;
+    @Autowired
+    ArchivedVoteRepository archivedVoteRepository;
+    @Autowired
+    VoteArchiver voteArchiver;
+    UserDto alice;
+    UserDto bob;
+    RsEventDto rsEventDto;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        archivedVoteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+        voterSketchRepository.deleteAll();
+        voteSummaryRepository.deleteAll();
+        alice = userRepository.save(UserDto.builder().userName("alice").phone("18888888888").age(20).voteNum(10).build());
+        bob = userRepository.save(UserDto.builder().userName("bob").phone("18888888889").age(20).voteNum(10).build());
+        rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().eventName("event").keyword("keyword").user(alice).build());
+    }
+
+    private void vote(UserDto user, int voteNum) throws Exception {
+        perform(post("/rs/vote/{id}", rsEventDto.getId())
+                .content(String.format("{\"userId\":%d,\"voteNum\":%d}", user.getId(), voteNum))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldCountUniqueVoters() throws Exception {
+        vote(alice, 1);
+        vote(alice, 2);
+        vote(bob, 1);
+
+        perform(get("/rs/list"))
+                .andExpect(jsonPath("$[0].voteNum", is(4)))
+                .andExpect(jsonPath("$[0].uniqueVoters", is(2)));
+    }
+
+    @Test
+    void shouldRebuildUniqueVotersFromVoteHistory() throws Exception {
+        vote(alice, 1);
+        voteArchiver.archiveBefore(LocalDateTime.now().plusMinutes(1));
+        vote(bob, 1);
+        voterSketchRepository.deleteAll();
+
+        perform(post("/diagnostics/unique-voters/rebuild")).andExpect(status().isOk());
+
+        assertEquals(2, rsEventRepository.findById(rsEventDto.getId()).get().getUniqueVoters());
+        vote(bob, 1);
+        assertEquals(2, rsEventRepository.findById(rsEventDto.getId()).get().getUniqueVoters());
+    }
+
+    @Test
+    void shouldRebuildVoteSummariesFromVoteHistory() throws Exception {
+        vote(alice, 1);
+        vote(alice, 2);
+        voteArchiver.archiveBefore(LocalDateTime.now().plusMinutes(1));
+        vote(bob, 4);
+        voteSummaryRepository.deleteAll();
+        voteSummaryRepository.save(new VoteSummaryDto(alice.getId() + 1000, rsEventDto.getId(), 9, null, 1, null));
+
+        perform(post("/diagnostics/vote-summaries/rebuild")).andExpect(status().isOk());
+
+        List<VoteSummaryDto> summaries = voteSummaryService.findByRsEvent(rsEventDto.getId(), 10);
+        assertEquals(2, summaries.size());
+        assertEquals(bob.getId(), summaries.get(0).getUserId());
+        assertEquals(4, summaries.get(0).getTotalNum());
+        assertEquals(alice.getId(), summaries.get(1).getUserId());
+        assertEquals(3, summaries.get(1).getTotalNum());
+    }
+
+    @Test
+    void shouldReportHeavyHitters() throws Exception {
+        vote(alice, 3);
+        vote(alice, 3);
+        vote(alice, 3);
+
+        perform(get("/diagnostics/heavy-hitters"))
+                .andExpect(jsonPath("$.rsEvents[0].key", is(rsEventDto.getId())))
+                .andExpect(jsonPath("$.users[0].key", is(alice.getId())))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldReportExecutorMetrics() throws Exception {
+        perform(get("/rs/list")).andExpect(status().isOk());
+
+        perform(get("/diagnostics/executors"))
+                .andExpect(jsonPath("$.read.queueCapacity", is(256)))
+                .andExpect(jsonPath("$.read.rejected", is(0)))
+                .andExpect(jsonPath("$.write.maxPoolSize", is(4)))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions resultActions = mockMvc.perform(request);
+        MvcResult mvcResult = resultActions.andReturn();
+        if (!mvcResult.getRequest().isAsyncStarted()) {
+            return resultActions;
+        }
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+}
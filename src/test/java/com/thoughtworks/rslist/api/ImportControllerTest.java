@@ -0,0 +1,138 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.ChangeLogRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.DuplicateEventIndex;
+import com.thoughtworks.rslist.service.KeywordLeaderboards;
+import com.thoughtworks.rslist.service.RsEventRanking;
+import com.thoughtworks.rslist.service.RsEventSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ImportControllerTest {
+  @Autowired MockMvc mockMvc;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired TradeRepository tradeRepository;
+  @Autowired RsEventSearchIndex rsEventSearchIndex;
+  @Autowired DuplicateEventIndex duplicateEventIndex;
+  @Autowired ChangeLogRepository changeLogRepository;
+  @Autowired KeywordLeaderboards keywordLeaderboards;
+
+  @BeforeEach
+  void setUp() {
+    tradeRepository.deleteAll();
+    voteRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void shouldImportUsersFromCsvAndReportRejectedRows() throws Exception {
+    String csv =
+        "userName,gender,age,email,phone\n"
+            + "alice,female,19,a@b.com,18888888888\n"
+            + "bob,male,17,b@b.com,18888888889\n"
+            + "\"carol, c\",female,30,c@b.com,18888888880\n"
+            + "dave,male,twenty,d@b.com,18888888881\n";
+    mockMvc
+        .perform(post("/import/users").param("format", "csv").content(csv))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported", is(2)))
+        .andExpect(jsonPath("$.rejected", is(2)))
+        .andExpect(jsonPath("$.rejectedRows[0].line", is(3)))
+        .andExpect(jsonPath("$.rejectedRows[0].error", is("age must be greater than or equal to 18")))
+        .andExpect(jsonPath("$.rejectedRows[1].line", is(5)))
+        .andExpect(jsonPath("$.rejectedRows[1].error", is("malformed row")));
+
+    List<UserDto> users = userRepository.findAll();
+    assertEquals(2, users.size());
+    assertEquals("alice", users.get(0).getUserName());
+    assertEquals("carol, c", users.get(1).getUserName());
+    assertEquals(10, users.get(0).getVoteNum());
+  }
+
+  @Test
+  public void shouldImportEventsFromNdjsonAndIndexThem() throws Exception {
+    UserDto user = userRepository.save(UserDto.builder().userName("idolice").age(19).email("a@b.com")
+        .gender("female").phone("18888888888").voteNum(10).build());
+    keywordLeaderboards.list("economy", RsEventRanking.order(null));
+    String ndjson =
+        "{\"eventName\":\"imported event\",\"keyword\":\"economy\",\"userId\":" + user.getId() + "}\n"
+            + "{\"eventName\":\"orphan event\",\"keyword\":\"economy\",\"userId\":" + (user.getId() + 100) + "}\n"
+            + "{\"eventName\":\"no keyword\",\"userId\":" + user.getId() + "}\n"
+            + "{not json\n";
+    mockMvc
+        .perform(post("/import/rs-events").content(ndjson))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported", is(1)))
+        .andExpect(jsonPath("$.rejected", is(3)))
+        .andExpect(jsonPath("$.rejectedRows[0].error", is("unknown userId")))
+        .andExpect(jsonPath("$.rejectedRows[1].error", is("keyword must not be null")))
+        .andExpect(jsonPath("$.rejectedRows[2].line", is(4)));
+
+    List<RsEventDto> rsEvents = rsEventRepository.findAll();
+    assertEquals(1, rsEvents.size());
+    assertEquals(user.getId(), rsEvents.get(0).getUser().getId());
+    assertTrue(rsEventSearchIndex.search("imported", 10).contains(rsEvents.get(0).getId()));
+    assertEquals(Optional.of(rsEvents.get(0).getId()),
+        duplicateEventIndex.findDuplicate("imported event", "economy"));
+    assertEquals("imported event", keywordLeaderboards.list("economy", RsEventRanking.order(null)).get(0).getEventName());
+    assertTrue(changeLogRepository.findAllByIdGreaterThanOrderById(0, PageRequest.of(0, 1000)).stream()
+        .anyMatch(change -> change.getType() == ChangeLogDto.Type.RS_EVENT_ADDED
+            && change.getRsEventId() == rsEvents.get(0).getId()));
+  }
+
+  @Test
+  public void shouldRejectNearDuplicateEventsOnImport() throws Exception {
+    UserDto user = userRepository.save(UserDto.builder().userName("idolice").age(19).email("a@b.com")
+        .gender("female").phone("18888888888").voteNum(10).build());
+    String row = "{\"eventName\":\"budget hearing postponed\",\"keyword\":\"parliament\",\"userId\":"
+        + user.getId() + "}\n";
+    mockMvc
+        .perform(post("/import/rs-events").content(row + row.replace("postponed", "postponed!")))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported", is(1)))
+        .andExpect(jsonPath("$.rejectedRows[0].line", is(2)))
+        .andExpect(jsonPath("$.rejectedRows[0].error", is("duplicate event")));
+    mockMvc
+        .perform(post("/import/rs-events").content(row))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.imported", is(0)))
+        .andExpect(jsonPath("$.rejectedRows[0].error", is("duplicate event")));
+
+    assertEquals(1, rsEventRepository.count());
+  }
+
+  @Test
+  public void shouldRejectUnknownFormat() throws Exception {
+    mockMvc
+        .perform(post("/import/users").param("format", "xml").content("<users/>"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.error", is("invalid format")));
+  }
+}
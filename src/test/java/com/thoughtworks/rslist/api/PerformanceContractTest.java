@@ -0,0 +1,305 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.LeaderboardSnapshots;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Budgets per request for SQL statements, Hibernate entity loads and bytes allocated, checked against
+ * a seeded database of its own. Each request is warmed up and the lowest of a few measurements is
+ * compared, since background threads also allocate; budgets leave about half again of headroom over
+ * what the endpoints take today, so a failure means an endpoint does more work, not noise.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:performance-contract;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "rs.change-log.poll-interval=3600000",
+        "rs.snapshot.interval=3600000",
+        "rs.leaderboard.evict-interval=3600000",
+        "rs.rate-limit.vote.burst=1000",
+        "rs.rate-limit.buy.burst=1000"})
+@AutoConfigureMockMvc
+@Import(PerformanceContractTest.StatementCounting.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PerformanceContractTest {
+    private static final int EVENTS = 200;
+    private static final int USERS = 20;
+    private static final int VOTES = 2000;
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    LeaderboardSnapshots leaderboardSnapshots;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+    List<UserDto> users = new ArrayList<>();
+    List<RsEventDto> rsEvents = new ArrayList<>();
+    AtomicInteger sequence = new AtomicInteger();
+
+    @BeforeAll
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(UserDto.builder().userName("user" + i).age(18 + i * 3)
+                    .gender(i % 2 == 0 ? "female" : "male").email("a@b.com").phone("18888888888")
+                    .voteNum(1000000).build()));
+        }
+        for (int i = 0; i < EVENTS; i++) {
+            rsEvents.add(rsEventRepository.save(RsEventDto.builder().eventName("事件" + i).keyword("关键词" + i % 5)
+                    .voteNum(i * 7 % 101).user(users.get(i % USERS)).build()));
+        }
+        LocalDateTime start = LocalDateTime.of(2020, 5, 1, 0, 0);
+        List<VoteDto> votes = new ArrayList<>();
+        for (int i = 0; i < VOTES; i++) {
+            votes.add(VoteDto.builder().user(users.get(i % USERS)).rsEvent(rsEvents.get(i % EVENTS))
+                    .localDateTime(start.plusMinutes(i)).num(1 + i % 3).build());
+        }
+        voteRepository.saveAll(votes);
+        leaderboardSnapshots.take(LocalDateTime.now());
+    }
+
+    @Test
+    void rsList() throws Exception {
+        assertContract(() -> get("/rs/list"), 3, 2 * EVENTS, 1_500_000);
+    }
+
+    @Test
+    void rsListByHotness() throws Exception {
+        assertContract(() -> get("/rs/list").param("mode", "hot"), 3, 2 * EVENTS, 1_500_000);
+    }
+
+    @Test
+    void rsListOfKeyword() throws Exception {
+        assertContract(() -> get("/rs/list").param("keyword", "关键词1"), 0, 0, 400_000);
+    }
+
+    @Test
+    void rsListAtSnapshot() throws Exception {
+        assertContract(() -> get("/rs/list").param("at", LocalDateTime.now().toString()), 2, 2, 300_000);
+    }
+
+    @Test
+    void rsEvent() throws Exception {
+        assertContract(() -> get("/rs/1"), 1, 3, 400_000);
+    }
+
+    @Test
+    void search() throws Exception {
+        assertContract(() -> get("/rs/search").param("q", "事件1"), 2, 30, 550_000);
+    }
+
+    @Test
+    void trades() throws Exception {
+        assertContract(() -> get("/rs/trades"), 2, 100, 300_000);
+    }
+
+    @Test
+    void addRsEvent() throws Exception {
+        assertContract(() -> post("/rs/event")
+                .content("{\"eventName\":\"" + UUID.randomUUID() + "\",\"keyword\":\"" + UUID.randomUUID() + "\",\"userId\":"
+                        + users.get(0).getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON), 8, 2, 400_000);
+    }
+
+    @Test
+    void vote() throws Exception {
+        assertContract(() -> post("/rs/vote/" + rsEvents.get(1).getId())
+                .content("{\"userId\":" + users.get(1).getId() + ",\"voteNum\":1}")
+                .contentType(MediaType.APPLICATION_JSON), 14, 5, 400_000);
+    }
+
+    @Test
+    void buy() throws Exception {
+        assertContract(() -> post("/rs/buy/" + rsEvents.get(2).getId())
+                .content("{\"amount\":" + sequence.incrementAndGet() * 100 + ",\"rank\":1,\"userId\":"
+                        + users.get(2).getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON), 14, 5, 400_000);
+    }
+
+    @Test
+    void registerUser() throws Exception {
+        assertContract(() -> post("/user")
+                .content("{\"userName\":\"user" + sequence.incrementAndGet() + "\",\"age\":20,\"gender\":\"male\","
+                        + "\"email\":\"a@b.com\",\"phone\":\"18888888888\"}")
+                .contentType(MediaType.APPLICATION_JSON), 6, 1, 200_000);
+    }
+
+    @Test
+    void deleteUser() throws Exception {
+        assertContract(() -> {
+            UserDto userDto = userRepository.save(UserDto.builder().userName("leaving").age(30).gender("male")
+                    .email("a@b.com").phone("18888888888").voteNum(10).build());
+            return delete("/user/" + userDto.getId());
+        }, 8, 2, 200_000);
+    }
+
+    @Test
+    void voteRecord() throws Exception {
+        assertContract(() -> get("/voteRecord").param("userId", String.valueOf(users.get(0).getId()))
+                .param("rsEventId", String.valueOf(rsEvents.get(0).getId())).param("pageIndex", "1"), 5, 1, 300_000);
+    }
+
+    @Test
+    void voteSummary() throws Exception {
+        assertContract(() -> get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEvents.get(0).getId())),
+                2, 10, 300_000);
+    }
+
+    @Test
+    void voteAnalytics() throws Exception {
+        assertContract(() -> get("/voteRecord/analytics").param("groupBy", "ageBand"), 0, 0, 300_000);
+    }
+
+    @Test
+    void voteExport() throws Exception {
+        assertContract(() -> get("/voteRecord/export").param("format", "csv"), 3, 0, 5_000_000);
+    }
+
+    private void assertContract(Supplier<RequestBuilder> requests, long maxStatements, long maxEntityLoads,
+                                long maxAllocatedBytes) throws Exception {
+        for (int i = 0; i < 5; i++) {
+            perform(requests.get());
+        }
+        long statements = Long.MAX_VALUE;
+        long entityLoads = Long.MAX_VALUE;
+        long allocatedBytes = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            RequestBuilder request = requests.get();
+            StatementCounting.statements.set(0);
+            statistics.clear();
+            Map<Long, Long> before = allocatedBytes();
+            perform(request);
+            Map<Long, Long> after = allocatedBytes();
+            statements = Math.min(statements, StatementCounting.statements.get());
+            entityLoads = Math.min(entityLoads, statistics.getEntityLoadCount());
+            long allocated = 0;
+            for (Map.Entry<Long, Long> thread : after.entrySet()) {
+                allocated += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+            }
+            allocatedBytes = Math.min(allocatedBytes, allocated);
+        }
+        String usage = statements + " statements, " + entityLoads + " entity loads, " + allocatedBytes + " bytes";
+        assertTrue(statements <= maxStatements, usage + " exceeds " + maxStatements + " statements");
+        assertTrue(entityLoads <= maxEntityLoads, usage + " exceeds " + maxEntityLoads + " entity loads");
+        assertTrue(allocatedBytes <= maxAllocatedBytes, usage + " exceeds " + maxAllocatedBytes + " bytes");
+    }
+
+    private static Map<Long, Long> allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    private MvcResult perform(RequestBuilder request) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(request).andReturn();
+        if (mvcResult.getRequest().isAsyncStarted()) {
+            mvcResult = mockMvc.perform(asyncDispatch(mvcResult)).andReturn();
+        }
+        assertTrue(mvcResult.getResponse().getStatus() < 400,
+                "status " + mvcResult.getResponse().getStatus() + " " + mvcResult.getResponse().getContentAsString());
+        return mvcResult;
+    }
+
+    // counts every statement the application prepares, whether through Hibernate or JdbcTemplate
+    @TestConfiguration
+    static class StatementCounting {
+        static final AtomicLong statements = new AtomicLong();
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource) || !"dataSource".equals(beanName)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource((DataSource) bean) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return counting(super.getConnection());
+                        }
+
+                        @Override
+                        public Connection getConnection(String username, String password) throws SQLException {
+                            return counting(super.getConnection(username, password));
+                        }
+                    };
+                }
+            };
+        }
+
+        private static Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                            statements.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
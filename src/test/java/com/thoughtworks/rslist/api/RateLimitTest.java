@@ -0,0 +1,151 @@
+package com.thoughtworks.rslist.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "rs.rate-limit.vote.per-second=0.01",
+        "rs.rate-limit.vote.burst=2",
+        "rs.rate-limit.buy.per-second=0.01",
+        "rs.rate-limit.buy.burst=1"
+})
+@AutoConfigureMockMvc
+class RateLimitTest {
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    ObjectMapper objectMapper = new ObjectMapper();
+    UserDto alice;
+    UserDto bob;
+    RsEventDto rsEventDto;
+
+    @BeforeEach
+    void setUp() {
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+        alice = userRepository.save(UserDto.builder().userName("alice").phone("18888888888").age(20).voteNum(10).build());
+        bob = userRepository.save(UserDto.builder().userName("bob").phone("18888888889").age(20).voteNum(10).build());
+        rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().eventName("event").keyword("keyword").user(alice).build());
+    }
+
+    @Test
+    void shouldRejectVotesOverLimitBeforeTouchingDatabase() throws Exception {
+        vote(alice).andExpect(status().isOk());
+        vote(alice).andExpect(status().isOk());
+        vote(alice)
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "100"))
+                .andExpect(jsonPath("$.error", is("too many requests")));
+        vote(bob).andExpect(status().isOk());
+
+        assertEquals(3, voteRepository.count());
+        assertEquals(8, userRepository.findById(alice.getId()).get().getVoteNum());
+    }
+
+    @Test
+    void shouldReplayRetriedVoteInsteadOfLimitingIt() throws Exception {
+        vote(alice, "first").andExpect(status().isOk());
+        vote(alice, "second").andExpect(status().isOk());
+        vote(alice, "third").andExpect(status().isTooManyRequests());
+
+        vote(alice, "first")
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+        assertEquals(2, voteRepository.count());
+    }
+
+    @Test
+    void shouldLimitBuysByUserOrEvent() throws Exception {
+        RsEventDto other = rsEventRepository.save(
+                RsEventDto.builder().eventName("other event").keyword("keyword").user(bob).build());
+
+        buy(rsEventDto, Trade.builder().amount(10).rank(1).userId(alice.getId()).build()).andExpect(status().isOk());
+        buy(other, Trade.builder().amount(20).rank(1).userId(alice.getId()).build())
+                .andExpect(status().isTooManyRequests());
+        buy(other, Trade.builder().amount(20).rank(1).build()).andExpect(status().isOk());
+        buy(other, Trade.builder().amount(30).rank(1).build()).andExpect(status().isTooManyRequests());
+
+        assertEquals(20, tradeRepository.findByRank(1).get().getAmount());
+    }
+
+    @Test
+    void shouldRejectUnknownUsersAfterLimitingThem() throws Exception {
+        int unknown = bob.getId() + 100;
+        buy(rsEventDto, Trade.builder().amount(10).rank(1).userId(unknown).build())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid user")));
+        buy(rsEventDto, Trade.builder().amount(10).rank(1).userId(unknown).build())
+                .andExpect(status().isTooManyRequests());
+        perform(post("/rs/vote/{id}", rsEventDto.getId())
+                .content(objectMapper.writeValueAsString(Vote.builder().userId(unknown).voteNum(1).build()))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid user")));
+
+        assertEquals(0, tradeRepository.count());
+        assertEquals(0, voteRepository.count());
+    }
+
+    private ResultActions vote(UserDto user) throws Exception {
+        return perform(post("/rs/vote/{id}", rsEventDto.getId())
+                .content(objectMapper.writeValueAsString(Vote.builder().userId(user.getId()).voteNum(1).build()))
+                .contentType(MediaType.APPLICATION_JSON));
+    }
+
+    private ResultActions vote(UserDto user, String idempotencyKey) throws Exception {
+        return perform(post("/rs/vote/{id}", rsEventDto.getId())
+                .header("Idempotency-Key", idempotencyKey)
+                .content(objectMapper.writeValueAsString(Vote.builder().userId(user.getId()).voteNum(1).build()))
+                .contentType(MediaType.APPLICATION_JSON));
+    }
+
+    private ResultActions buy(RsEventDto rsEvent, Trade trade) throws Exception {
+        return perform(post("/rs/buy/{id}", rsEvent.getId())
+                .content(objectMapper.writeValueAsString(trade))
+                .contentType(MediaType.APPLICATION_JSON));
+    }
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions resultActions = mockMvc.perform(request);
+        MvcResult mvcResult = resultActions.andReturn();
+        if (!mvcResult.getRequest().isAsyncStarted()) {
+            return resultActions;
+        }
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+}
@@ -1,30 +1,49 @@
 package com.thoughtworks.rslist.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.repository.IdempotencyKeyRepository;
+import com.thoughtworks.rslist.repository.LeaderboardSnapshotRepository;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.LeaderboardSnapshots;
+import com.thoughtworks.rslist.service.TopBidIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -41,11 +60,24 @@ class RsControllerTest {
     VoteRepository voteRepository;
     @Autowired
     TradeRepository tradeRepository;
+    @Autowired
+    TradeRecordRepository tradeRecordRepository;
+    @Autowired
+    TopBidIndex topBidIndex;
+    @Autowired
+    LeaderboardSnapshots leaderboardSnapshots;
+    @Autowired
+    LeaderboardSnapshotRepository leaderboardSnapshotRepository;
+    @Autowired
+    IdempotencyKeyRepository idempotencyKeyRepository;
+    @Autowired
+    TransactionTemplate transactionTemplate;
     private UserDto userDto;
 
     @BeforeEach
     void setUp() {
         tradeRepository.deleteAll();
+        tradeRecordRepository.deleteAll();
         voteRepository.deleteAll();
         rsEventRepository.deleteAll();
         userRepository.deleteAll();
@@ -69,8 +101,7 @@ class RsControllerTest {
 
         rsEventRepository.save(rsEventDto);
 
-        mockMvc
-                .perform(get("/rs/list"))
+        perform(get("/rs/list"))
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].eventName", is("第一条事件")))
                 .andExpect(jsonPath("$[0].keyword", is("无分类")))
@@ -78,6 +109,51 @@ class RsControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    public void shouldGetRsEventListAsCborWhenAccepted() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        rsEventRepository.save(RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+
+        MvcResult result = perform(get("/rs/list").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn();
+        JsonNode rsEvents = new ObjectMapper(new CBORFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertEquals(1, rsEvents.size());
+        assertEquals("第一条事件", rsEvents.get(0).get("eventName").asText());
+        assertEquals("无分类", rsEvents.get(0).get("keyword").asText());
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedUntilRankingChanges() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().keyword("无分类").eventName("第一条事件").voteNum(0).user(save).build());
+
+        String listEtag = perform(get("/rs/list"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        String eventEtag = perform(get("/rs/1")).andReturn().getResponse().getHeader("ETag");
+        perform(get("/rs/list").header("If-None-Match", listEtag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        perform(get("/rs/1").header("If-None-Match", eventEtag))
+                .andExpect(status().isNotModified());
+        perform(get("/rs/list").header("If-None-Match", listEtag).accept("application/cbor"))
+                .andExpect(status().isOk());
+
+        rsEventDto.setVoteNum(3);
+        rsEventRepository.save(rsEventDto);
+
+        perform(get("/rs/list").header("If-None-Match", listEtag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(listEtag)))
+                .andExpect(jsonPath("$[0].voteNum", is(3)));
+        perform(get("/rs/1").header("If-None-Match", eventEtag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     public void shouldGetOneEvent() throws Exception {
         UserDto save = userRepository.save(userDto);
@@ -88,16 +164,15 @@ class RsControllerTest {
         rsEventRepository.save(rsEventDto);
         rsEventDto = RsEventDto.builder().keyword("无分类").eventName("第二条事件").user(save).build();
         rsEventRepository.save(rsEventDto);
-        mockMvc.perform(get("/rs/1")).andExpect(jsonPath("$.eventName", is("第一条事件")));
-        mockMvc.perform(get("/rs/1")).andExpect(jsonPath("$.keyword", is("无分类")));
-        mockMvc.perform(get("/rs/2")).andExpect(jsonPath("$.eventName", is("第二条事件")));
-        mockMvc.perform(get("/rs/2")).andExpect(jsonPath("$.keyword", is("无分类")));
+        perform(get("/rs/1")).andExpect(jsonPath("$.eventName", is("第一条事件")));
+        perform(get("/rs/1")).andExpect(jsonPath("$.keyword", is("无分类")));
+        perform(get("/rs/2")).andExpect(jsonPath("$.eventName", is("第二条事件")));
+        perform(get("/rs/2")).andExpect(jsonPath("$.keyword", is("无分类")));
     }
 
     @Test
     public void shouldGetErrorWhenIndexInvalid() throws Exception {
-        mockMvc
-                .perform(get("/rs/4"))
+        perform(get("/rs/4"))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.error", is("invalid index")));
     }
@@ -114,22 +189,19 @@ class RsControllerTest {
         rsEventRepository.save(rsEventDto);
         rsEventDto = RsEventDto.builder().keyword("无分类").eventName("第三条事件").user(save).build();
         rsEventRepository.save(rsEventDto);
-        mockMvc
-                .perform(get("/rs/list?start=1&end=2"))
+        perform(get("/rs/list?start=1&end=2"))
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].eventName", is("第一条事件")))
                 .andExpect(jsonPath("$[0].keyword", is("无分类")))
                 .andExpect(jsonPath("$[1].eventName", is("第二条事件")))
                 .andExpect(jsonPath("$[1].keyword", is("无分类")));
-        mockMvc
-                .perform(get("/rs/list?start=2&end=3"))
+        perform(get("/rs/list?start=2&end=3"))
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].eventName", is("第二条事件")))
                 .andExpect(jsonPath("$[0].keyword", is("无分类")))
                 .andExpect(jsonPath("$[1].eventName", is("第三条事件")))
                 .andExpect(jsonPath("$[1].keyword", is("无分类")));
-        mockMvc
-                .perform(get("/rs/list?start=1&end=3"))
+        perform(get("/rs/list?start=1&end=3"))
                 .andExpect(jsonPath("$", hasSize(3)))
                 .andExpect(jsonPath("$[0].keyword", is("无分类")))
                 .andExpect(jsonPath("$[1].eventName", is("第二条事件")))
@@ -146,8 +218,7 @@ class RsControllerTest {
         String jsonValue =
                 "{\"eventName\":\"猪肉涨价了\",\"keyword\":\"经济\",\"userId\": " + save.getId() + "}";
 
-        mockMvc
-                .perform(post("/rs/event").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        perform(post("/rs/event").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isCreated());
         List<RsEventDto> all = rsEventRepository.findAll();
         assertNotNull(all);
@@ -161,8 +232,7 @@ class RsControllerTest {
     @Test
     public void shouldAddRsEventWhenUserNotExist() throws Exception {
         String jsonValue = "{\"eventName\":\"猪肉涨价了\",\"keyword\":\"经济\",\"userId\": 100}";
-        mockMvc
-                .perform(post("/rs/event").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        perform(post("/rs/event").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
 
@@ -177,8 +247,7 @@ class RsControllerTest {
                 String.format(
                         "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}",
                         save.getId(), LocalDateTime.now().toString());
-        mockMvc
-                .perform(
+        perform(
                         post("/rs/vote/{id}", rsEventDto.getId())
                                 .content(jsonValue)
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -204,7 +273,7 @@ class RsControllerTest {
                 .build();
         rsEventDto = rsEventRepository.save(rsEventDto);
         String postBody = "{\"amount\":100,\"rank\":1}";
-        mockMvc.perform(post("/rs/buy/" + rsEventDto.getId())
+        perform(post("/rs/buy/" + rsEventDto.getId())
                 .content(postBody)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
@@ -234,7 +303,7 @@ class RsControllerTest {
         tradeRepository.save(tradeDto);
 
         String postBody = "{\"amount\":100,\"rank\":1}";
-        mockMvc.perform(post("/rs/buy/" + rsEventDto.getId())
+        perform(post("/rs/buy/" + rsEventDto.getId())
                 .content(postBody)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
@@ -265,7 +334,7 @@ class RsControllerTest {
                 .build();
         rsEventDto = rsEventRepository.save(rsEventDto);
         String postBody = "{\"amount\":200,\"rank\":1}";
-        mockMvc.perform(post("/rs/buy/" + rsEventDto.getId())
+        perform(post("/rs/buy/" + rsEventDto.getId())
                 .content(postBody)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
@@ -274,6 +343,103 @@ class RsControllerTest {
         assertEquals(rsEventDto.getId(), tradeDto.getRsEventDto().getId());
     }
 
+    @Test
+    public void shouldRecordEveryBidInTradeLedger() throws Exception {
+        userDto = userRepository.save(userDto);
+        RsEventDto first = rsEventRepository.save(RsEventDto.builder()
+                .eventName("event first").keyword("keyword").voteNum(0).user(userDto).build());
+        RsEventDto second = rsEventRepository.save(RsEventDto.builder()
+                .eventName("event second").keyword("keyword").voteNum(0).user(userDto).build());
+        perform(post("/rs/buy/" + first.getId())
+                .content("{\"amount\":100,\"rank\":1,\"userId\":" + userDto.getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(post("/rs/buy/" + second.getId())
+                .content("{\"amount\":50,\"rank\":1,\"userId\":" + userDto.getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        perform(post("/rs/buy/" + second.getId())
+                .content("{\"amount\":150,\"rank\":1,\"userId\":" + userDto.getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        perform(get("/rs/trades?rank=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].amount", is(150)))
+                .andExpect(jsonPath("$[0].accepted", is(true)))
+                .andExpect(jsonPath("$[0].replacedRsEventId", is(first.getId())))
+                .andExpect(jsonPath("$[1].amount", is(50)))
+                .andExpect(jsonPath("$[1].accepted", is(false)))
+                .andExpect(jsonPath("$[2].rsEventId", is(first.getId())));
+        assertFalse(rsEventRepository.findById(first.getId()).isPresent());
+    }
+
+    @Test
+    public void shouldAnswerRetriedVoteAndBuyWithoutRunningThemAgain() throws Exception {
+        userDto = userRepository.save(userDto);
+        RsEventDto rsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .eventName("event retried").keyword("keyword").voteNum(0).user(userDto).build());
+        String vote = "{\"userId\":" + userDto.getId() + ",\"voteNum\":3}";
+        for (int attempt = 0; attempt < 2; attempt++) {
+            perform(post("/rs/vote/" + rsEventDto.getId()).header("Idempotency-Key", "vote-retry")
+                    .content(vote).contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(attempt == 0
+                            ? header().doesNotExist("Idempotent-Replayed")
+                            : header().string("Idempotent-Replayed", "true"));
+        }
+        assertEquals(3, rsEventRepository.findById(rsEventDto.getId()).get().getVoteNum());
+        assertEquals(7, userRepository.findById(userDto.getId()).get().getVoteNum());
+        assertEquals(200, idempotencyKeyRepository.findById(userDto.getId() + ":vote-retry").get().getStatus());
+
+        // keys are per user, so another user's vote under the same key runs
+        UserDto other = userRepository.save(UserDto.builder().voteNum(10).phone("18888888889").gender("male")
+                .email("b@b.com").age(20).userName("other").build());
+        perform(post("/rs/vote/" + rsEventDto.getId()).header("Idempotency-Key", "vote-retry")
+                .content("{\"userId\":" + other.getId() + ",\"voteNum\":3}").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        assertEquals(6, rsEventRepository.findById(rsEventDto.getId()).get().getVoteNum());
+
+        String bid = "{\"amount\":%d,\"rank\":1,\"userId\":" + userDto.getId() + "}";
+        perform(post("/rs/buy/" + rsEventDto.getId()).header("Idempotency-Key", "buy-retry")
+                .content(String.format(bid, 100)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(post("/rs/buy/" + rsEventDto.getId()).header("Idempotency-Key", "buy-retry")
+                .content(String.format(bid, 100)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+        perform(post("/rs/buy/" + rsEventDto.getId()).header("Idempotency-Key", "buy-retry")
+                .content(String.format(bid, 200)).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("idempotency key reused for another request")));
+        assertEquals(1, tradeRecordRepository.findAllByRankOrderByIdDesc(1, PageRequest.of(0, 10)).size());
+    }
+
+    @Test
+    public void shouldRebuildTopBidsFromLedger() throws Exception {
+        userDto = userRepository.save(userDto);
+        RsEventDto kept = rsEventRepository.save(RsEventDto.builder()
+                .eventName("event kept").keyword("keyword").voteNum(0).user(userDto).build());
+        RsEventDto removed = rsEventRepository.save(RsEventDto.builder()
+                .eventName("event removed").keyword("keyword").voteNum(0).user(userDto).build());
+        perform(post("/rs/buy/" + kept.getId())
+                .content("{\"amount\":100,\"rank\":1,\"userId\":" + userDto.getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(post("/rs/buy/" + removed.getId())
+                .content("{\"amount\":100,\"rank\":2,\"userId\":" + userDto.getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        rsEventRepository.deleteById(removed.getId());
+
+        topBidIndex.rebuild();
+
+        assertEquals(new TopBidIndex.Bid(100, kept.getId()), topBidIndex.get(1));
+        assertNull(topBidIndex.get(2));
+    }
+
     @Test
     public void shouldGetRsListAfterTrade() throws Exception {
         userRepository.save(userDto);
@@ -294,14 +460,212 @@ class RsControllerTest {
                 .build());
 
         String postBody = "{\"amount\":200,\"rank\":1}";
-        mockMvc.perform(post("/rs/buy/" + rsEventDto.getId())
+        perform(post("/rs/buy/" + rsEventDto.getId())
                 .content(postBody)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
-        mockMvc.perform(get("/rs/list"))
+        perform(get("/rs/list"))
                 .andExpect(jsonPath("$[0].eventName").value("event 3 with vote 0"))
                 .andExpect(jsonPath("$[1].eventName").value("event 2 with vote 3"))
                 .andExpect(jsonPath("$[2].eventName").value("event 1 with vote 2"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    public void shouldGetHotRsListAfterTrade() throws Exception {
+        userRepository.save(userDto);
+        rsEventRepository.save(RsEventDto.builder()
+                .eventName("old event with many votes")
+                .voteNum(10)
+                .hotScore(1.0)
+                .user(userDto)
+                .build());
+        rsEventRepository.save(RsEventDto.builder()
+                .eventName("event without votes")
+                .voteNum(0)
+                .user(userDto)
+                .build());
+        rsEventRepository.save(RsEventDto.builder()
+                .eventName("recent event with few votes")
+                .voteNum(2)
+                .hotScore(5.0)
+                .user(userDto)
+                .build());
+        RsEventDto rsEventDto = rsEventRepository.save(RsEventDto.builder()
+                .eventName("paid event")
+                .voteNum(0)
+                .user(userDto)
+                .build());
+
+        String postBody = "{\"amount\":200,\"rank\":2}";
+        perform(post("/rs/buy/" + rsEventDto.getId())
+                .content(postBody)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(get("/rs/list?mode=hot"))
+                .andExpect(jsonPath("$[0].eventName").value("recent event with few votes"))
+                .andExpect(jsonPath("$[1].eventName").value("paid event"))
+                .andExpect(jsonPath("$[2].eventName").value("old event with many votes"))
+                .andExpect(jsonPath("$[3].eventName").value("event without votes"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldGetRsListOfKeywordWithItsOwnRankingAndPaidSlots() throws Exception {
+        userDto = userRepository.save(userDto);
+        RsEventDto lowBeef = rsEventRepository.save(RsEventDto.builder()
+                .eventName("牛肉价格").keyword("经济").voteNum(1).user(userDto).build());
+        RsEventDto highPork = rsEventRepository.save(RsEventDto.builder()
+                .eventName("猪肉价格").keyword("经济").voteNum(5).user(userDto).build());
+        rsEventRepository.save(RsEventDto.builder()
+                .eventName("世界杯").keyword("体育").voteNum(9).user(userDto).build());
+
+        perform(get("/rs/list?keyword=经济"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventName", is("猪肉价格")))
+                .andExpect(jsonPath("$[1].eventName", is("牛肉价格")));
+
+        perform(post("/rs/vote/" + lowBeef.getId())
+                .content("{\"userId\":" + userDto.getId() + ",\"voteNum\":6}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(get("/rs/list?keyword=经济"))
+                .andExpect(jsonPath("$[0].eventName", is("牛肉价格")))
+                .andExpect(jsonPath("$[0].voteNum", is(7)));
+
+        perform(post("/rs/buy/" + highPork.getId())
+                .content("{\"amount\":100,\"rank\":1,\"userId\":" + userDto.getId() + "}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(get("/rs/list?keyword=经济&start=1&end=2"))
+                .andExpect(jsonPath("$[0].eventName", is("猪肉价格")))
+                .andExpect(jsonPath("$[1].eventName", is("牛肉价格")));
+        perform(get("/rs/list?keyword=体育"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("世界杯")));
+    }
+
+    @Test
+    public void shouldKeepRolledBackEventOutOfKeywordRanking() throws Exception {
+        userDto = userRepository.save(userDto);
+        rsEventRepository.save(RsEventDto.builder().eventName("牛肉价格").keyword("经济").user(userDto).build());
+        perform(get("/rs/list?keyword=经济")).andExpect(jsonPath("$", hasSize(1)));
+
+        transactionTemplate.execute(status -> {
+            rsEventRepository.save(RsEventDto.builder().eventName("猪肉价格").keyword("经济").user(userDto).build());
+            status.setRollbackOnly();
+            return null;
+        });
+
+        perform(get("/rs/list?keyword=经济"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("牛肉价格")));
+    }
+
+    @Test
+    public void shouldGetRsListAsItWasAtSnapshotTime() throws Exception {
+        leaderboardSnapshotRepository.deleteAll();
+        userDto = userRepository.save(userDto);
+        RsEventDto beef = rsEventRepository.save(RsEventDto.builder()
+                .eventName("牛肉价格").keyword("经济").voteNum(1).user(userDto).build());
+        RsEventDto pork = rsEventRepository.save(RsEventDto.builder()
+                .eventName("猪肉价格").keyword("经济").voteNum(5).user(userDto).build());
+        LocalDateTime evening = LocalDateTime.of(2030, 1, 1, 20, 0);
+
+        assertTrue(leaderboardSnapshots.take(evening).isPresent());
+        beef.setVoteNum(9);
+        rsEventRepository.save(beef);
+        assertFalse(leaderboardSnapshots.take(evening.plusMinutes(5)).get().isKeyframe());
+        assertFalse(leaderboardSnapshots.take(evening.plusMinutes(10)).isPresent());
+        rsEventRepository.deleteById(pork.getId());
+        leaderboardSnapshots.take(evening.plusMinutes(15));
+
+        perform(get("/rs/list").param("at", "2030-01-01T20:01:00"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventName", is("猪肉价格")))
+                .andExpect(jsonPath("$[1].voteNum", is(1)));
+        perform(get("/rs/list").param("at", "2030-01-01T20:12:00").param("start", "2").param("end", "2"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("猪肉价格")));
+        perform(get("/rs/list").param("at", "2030-01-01T20:15:00"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("牛肉价格")))
+                .andExpect(jsonPath("$[0].voteNum", is(9)));
+        perform(get("/rs/list").param("at", "2030-01-01T20:15:00").param("mode", "hot"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldGetErrorWhenModeInvalid() throws Exception {
+        perform(get("/rs/list?mode=cold"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid mode")));
+    }
+
+    @Test
+    public void shouldSearchRsEventsByNameAndKeyword() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        String jsonValue = "{\"eventName\":\"%s\",\"keyword\":\"%s\",\"userId\": " + save.getId() + "}";
+        perform(post("/rs/event")
+                .content(String.format(jsonValue, "猪肉价格上涨", "经济"))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        perform(post("/rs/event")
+                .content(String.format(jsonValue, "牛肉降价", "猪肉市场"))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+        perform(post("/rs/event")
+                .content(String.format(jsonValue, "天气晴朗", "天气"))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        perform(get("/rs/search").param("q", "猪肉"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventName", is("猪肉价格上涨")))
+                .andExpect(jsonPath("$[1].eventName", is("牛肉降价")))
+                .andExpect(status().isOk());
+        perform(get("/rs/search").param("q", "天"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].eventName", is("天气晴朗")));
+    }
+
+    @Test
+    public void shouldGetErrorWhenSearchQueryBlank() throws Exception {
+        perform(get("/rs/search").param("q", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("invalid query")));
+    }
+
+    @Test
+    public void shouldRejectNearDuplicateEvent() throws Exception {
+        UserDto save = userRepository.save(userDto);
+        String jsonValue = "{\"eventName\":\"%s\",\"keyword\":\"经济\",\"userId\": " + save.getId() + "}";
+        perform(post("/rs/event")
+                .content(String.format(jsonValue, "猪肉价格大幅上涨"))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        perform(post("/rs/event")
+                .content(String.format(jsonValue, "猪肉价格大幅上涨了"))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("duplicate event")));
+        assertEquals(1, rsEventRepository.findAll().size());
+
+        rsEventRepository.deleteAll();
+        perform(post("/rs/event")
+                .content(String.format(jsonValue, "猪肉价格大幅上涨了"))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+    }
+
+    // async handlers finish on an executor; replay the dispatch so the response is complete
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions resultActions = mockMvc.perform(request);
+        MvcResult mvcResult = resultActions.andReturn();
+        if (!mvcResult.getRequest().isAsyncStarted()) {
+            return resultActions;
+        }
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
 }
@@ -6,6 +6,8 @@ import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.DuplicateEventIndex;
+import com.thoughtworks.rslist.service.RsEventSearchIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,8 +17,10 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -28,6 +32,8 @@ class UserControllerTest {
   ObjectMapper objectMapper;
   @Autowired UserRepository userRepository;
   @Autowired RsEventRepository rsEventRepository;
+  @Autowired RsEventSearchIndex rsEventSearchIndex;
+  @Autowired DuplicateEventIndex duplicateEventIndex;
 
   @BeforeEach
   void setUp() {
@@ -124,4 +130,21 @@ class UserControllerTest {
     assertEquals(userRepository.findAll().size(), 0);
     assertEquals(rsEventRepository.findAll().size(), 0);
   }
+
+  @Test
+  public void shouldRemoveDeletedUserEventsFromIndexes() throws Exception {
+    UserDto save =
+        userRepository.save(
+            UserDto.builder().voteNum(10).phone("18888888888").age(19).userName("idolice").build());
+    RsEventDto rsEventDto =
+        rsEventRepository.save(
+            RsEventDto.builder().keyword("天气").eventName("北京明天有暴雨").user(save).build());
+    assertEquals(
+        Optional.of(rsEventDto.getId()), duplicateEventIndex.findDuplicate("北京明天有暴雨", "天气"));
+
+    mockMvc.perform(delete("/user/{id}", save.getId())).andExpect(status().isOk());
+
+    assertTrue(rsEventSearchIndex.search("暴雨", 10).isEmpty());
+    assertEquals(Optional.empty(), duplicateEventIndex.findDuplicate("北京明天有暴雨", "天气"));
+  }
 }
@@ -1,25 +1,56 @@
 package com.thoughtworks.rslist.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.thoughtworks.rslist.dto.ArchivedVoteDto;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.dto.VoteSummaryDto;
+import com.thoughtworks.rslist.repository.ArchivedVoteRepository;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.repository.VoteSummaryRepository;
+import com.thoughtworks.rslist.service.VoteArchiver;
+import com.thoughtworks.rslist.service.VoteColumnStore;
+import com.thoughtworks.rslist.service.VoteSummaryService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -31,6 +62,16 @@ class VoteControllerTest {
     RsEventRepository rsEventRepository;
     @Autowired
     VoteRepository voteRepository;
+    @Autowired
+    VoteSummaryRepository voteSummaryRepository;
+    @Autowired
+    ArchivedVoteRepository archivedVoteRepository;
+    @Autowired
+    VoteArchiver voteArchiver;
+    @Autowired
+    VoteSummaryService voteSummaryService;
+    @Autowired
+    VoteColumnStore voteColumnStore;
     UserDto userDto;
     RsEventDto rsEventDto;
 
@@ -49,6 +90,8 @@ class VoteControllerTest {
 
     @AfterEach
     void tearDown() {
+        voteSummaryRepository.deleteAll();
+        archivedVoteRepository.deleteAll();
         voteRepository.deleteAll();
         rsEventRepository.deleteAll();
         userRepository.deleteAll();
@@ -85,7 +128,7 @@ class VoteControllerTest {
 
 
 
-      mockMvc.perform(get("/voteRecord").param("userId",String.valueOf(userDto.getId()))
+      perform(get("/voteRecord").param("userId",String.valueOf(userDto.getId()))
       .param("rsEventId",String.valueOf(rsEventDto.getId())).param("pageIndex", "1"))
               .andExpect(jsonPath("$", hasSize(5)))
               .andExpect(jsonPath("$[0].userId",is(userDto.getId())))
@@ -96,7 +139,7 @@ class VoteControllerTest {
               .andExpect(jsonPath("$[3].voteNum",is(3)))
               .andExpect(jsonPath("$[4].voteNum",is(4)));
 
-      mockMvc.perform(get("/voteRecord").param("userId",String.valueOf(userDto.getId()))
+      perform(get("/voteRecord").param("userId",String.valueOf(userDto.getId()))
               .param("rsEventId",String.valueOf(rsEventDto.getId())).param("pageIndex", "2"))
               .andExpect(jsonPath("$", hasSize(3)))
               .andExpect(jsonPath("$[0].userId",is(userDto.getId())))
@@ -107,4 +150,306 @@ class VoteControllerTest {
 
 
     }
+
+    @Test
+    public void shouldGetVoteRecordAsCborWhenAccepted() throws Exception {
+      voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto)
+              .localDateTime(LocalDateTime.of(2020, 1, 1, 12, 0)).num(1).build());
+
+      MvcResult result = perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1")
+              .accept("application/cbor"))
+              .andExpect(status().isOk())
+              .andExpect(content().contentType("application/cbor"))
+              .andReturn();
+      JsonNode votes = new ObjectMapper(new CBORFactory()).readTree(result.getResponse().getContentAsByteArray());
+      assertEquals(2, votes.size());
+      assertEquals(5, votes.get(0).get("voteNum").asInt());
+      assertEquals(rsEventDto.getId(), votes.get(1).get("rsEventId").asInt());
+      assertEquals("2020-01-01T12:00:00", votes.get(1).get("time").asText());
+    }
+
+    @Test
+    public void shouldAnswerNotModifiedUntilPairGetsAnotherVote() throws Exception {
+      perform(post("/rs/vote/" + rsEventDto.getId())
+              .content("{\"userId\":" + userDto.getId() + ",\"voteNum\":1}")
+              .contentType(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk());
+      MvcResult first = perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1"))
+              .andExpect(status().isOk())
+              .andExpect(header().exists("Last-Modified"))
+              .andReturn();
+      String lastModified = first.getResponse().getHeader("Last-Modified");
+      String etag = first.getResponse().getHeader("ETag");
+
+      perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1")
+              .header("If-Modified-Since", lastModified))
+              .andExpect(status().isNotModified());
+
+      perform(post("/rs/vote/" + rsEventDto.getId())
+              .content("{\"userId\":" + userDto.getId() + ",\"voteNum\":1}")
+              .contentType(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk());
+      perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1")
+              .header("If-None-Match", etag))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(3)));
+    }
+
+    @Test
+    public void shouldChangeValidatorsOnVoteKeepingTotalAndTime() throws Exception {
+      perform(post("/rs/vote/" + rsEventDto.getId())
+              .content("{\"userId\":" + userDto.getId() + ",\"voteNum\":1,\"time\":\"2020-05-21T12:00:00\"}")
+              .contentType(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk());
+      MvcResult first = perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1"))
+              .andExpect(status().isOk())
+              .andReturn();
+      String etag = first.getResponse().getHeader("ETag");
+
+      perform(post("/rs/vote/" + rsEventDto.getId())
+              .content("{\"userId\":" + userDto.getId() + ",\"voteNum\":0,\"time\":\"2020-05-20T12:00:00\"}")
+              .contentType(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk());
+      perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1")
+              .header("If-None-Match", etag))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(3)));
+    }
+
+    @Test
+    public void shouldPageVoteRecordAcrossArchivedAndHotVotes() throws Exception {
+      for (int num = 1; num <= 6; num++) {
+        voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto)
+                .localDateTime(LocalDateTime.of(2020, 1, num, 12, 0)).num(num).build());
+      }
+
+      assertEquals(6, voteArchiver.archiveBefore(LocalDateTime.of(2020, 5, 1, 0, 0)));
+      assertEquals(1, voteRepository.findAll().size());
+      assertEquals(6, archivedVoteRepository.findAll().size());
+
+      perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "1"))
+              .andExpect(jsonPath("$", hasSize(5)))
+              .andExpect(jsonPath("$[0].voteNum", is(1)))
+              .andExpect(jsonPath("$[0].time", is("2020-01-01T12:00:00")))
+              .andExpect(jsonPath("$[4].voteNum", is(5)));
+      perform(get("/voteRecord").param("userId", String.valueOf(userDto.getId()))
+              .param("rsEventId", String.valueOf(rsEventDto.getId())).param("pageIndex", "2"))
+              .andExpect(jsonPath("$", hasSize(2)))
+              .andExpect(jsonPath("$[0].voteNum", is(6)))
+              .andExpect(jsonPath("$[1].voteNum", is(5)))
+              .andExpect(jsonPath("$[1].userId", is(userDto.getId())))
+              .andExpect(jsonPath("$[1].rsEventId", is(rsEventDto.getId())));
+
+      perform(get("/voteRecord/export").param("format", "csv"))
+              .andExpect(content().string(startsWith("userId,rsEventId,time,voteNum\n"
+                      + userDto.getId() + "," + rsEventDto.getId() + ",2020-01-01T12:00:00,1\n")));
+    }
+
+    @Test
+    public void shouldExportVoteRecordsOfUserAsNdjson() throws Exception {
+      RsEventDto other = rsEventRepository.save(
+              RsEventDto.builder().user(userDto).eventName("other event").keyword("keyword").voteNum(0).build());
+      voteRepository.save(VoteDto.builder().user(userDto).rsEvent(other)
+              .localDateTime(LocalDateTime.of(2020, 5, 20, 12, 0)).num(2).build());
+
+      String content = perform(get("/voteRecord/export").param("userId", String.valueOf(userDto.getId())))
+              .andExpect(status().isOk())
+              .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+              .andReturn().getResponse().getContentAsString();
+
+      String[] lines = content.split("\n");
+      assertEquals(2, lines.length);
+      assertTrue(lines[0].contains("\"voteNum\":5"));
+      assertEquals("{\"userId\":" + userDto.getId() + ",\"rsEventId\":" + other.getId()
+              + ",\"time\":\"2020-05-20T12:00:00\",\"voteNum\":2}", lines[1]);
+    }
+
+    @Test
+    public void shouldGiveOnlyExportsTheLongAsyncTimeout() throws Exception {
+      MvcResult export = mockMvc.perform(get("/voteRecord/export")).andReturn();
+      MvcResult summary = mockMvc.perform(get("/voteRecord/summary")
+              .param("userId", String.valueOf(userDto.getId()))).andReturn();
+
+      assertEquals(Duration.ofMinutes(30).toMillis(), export.getRequest().getAsyncContext().getTimeout());
+      assertNotEquals(Duration.ofMinutes(30).toMillis(), summary.getRequest().getAsyncContext().getTimeout());
+      mockMvc.perform(asyncDispatch(export)).andExpect(status().isOk());
+      mockMvc.perform(asyncDispatch(summary)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldExportVoteRecordsInTimeRangeAsCsv() throws Exception {
+      voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto)
+              .localDateTime(LocalDateTime.of(2020, 5, 20, 12, 0)).num(3).build());
+      voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto)
+              .localDateTime(LocalDateTime.of(2020, 5, 21, 12, 0)).num(4).build());
+
+      perform(get("/voteRecord/export")
+              .param("rsEventId", String.valueOf(rsEventDto.getId()))
+              .param("from", "2020-05-20T00:00:00")
+              .param("to", "2020-05-21T00:00:00")
+              .param("format", "csv"))
+              .andExpect(status().isOk())
+              .andExpect(header().string("Content-Disposition", "attachment; filename=votes.csv"))
+              .andExpect(content().string("userId,rsEventId,time,voteNum\n"
+                      + userDto.getId() + "," + rsEventDto.getId() + ",2020-05-20T12:00:00,3\n"));
+    }
+
+    @Test
+    public void shouldAggregateVotesOfEventByGender() throws Exception {
+      // other test contexts share the database and restart its ids, so drop what they left in the columns
+      voteColumnStore.rebuild();
+      UserDto other = userRepository.save(UserDto.builder().userName("other").age(34).email("c@d.com")
+              .gender("male").phone("18888888889").voteNum(10).build());
+      voteRepository.save(VoteDto.builder().user(other).rsEvent(rsEventDto)
+              .localDateTime(LocalDateTime.of(2020, 5, 20, 12, 0)).num(3).build());
+      voteRepository.save(VoteDto.builder().user(other).rsEvent(rsEventDto)
+              .localDateTime(LocalDateTime.of(2020, 5, 20, 13, 0)).num(2).build());
+
+      perform(get("/voteRecord/analytics").param("groupBy", "gender")
+              .param("rsEventId", String.valueOf(rsEventDto.getId())))
+              .andExpect(status().isOk())
+              .andExpect(jsonPath("$", hasSize(2)))
+              .andExpect(jsonPath("$[0].key", is("female")))
+              .andExpect(jsonPath("$[0].votes", is(1)))
+              .andExpect(jsonPath("$[0].voteNum", is(5)))
+              .andExpect(jsonPath("$[1].key", is("male")))
+              .andExpect(jsonPath("$[1].votes", is(2)))
+              .andExpect(jsonPath("$[1].voteNum", is(5)));
+      perform(get("/voteRecord/analytics").param("groupBy", "hour")
+              .param("rsEventId", String.valueOf(rsEventDto.getId()))
+              .param("gender", "male")
+              .param("from", "2020-05-20T00:00:00")
+              .param("to", "2020-05-21T00:00:00"))
+              .andExpect(jsonPath("$", hasSize(2)))
+              .andExpect(jsonPath("$[1].key", is("2020-05-20T13:00")))
+              .andExpect(jsonPath("$[1].voteNum", is(2)));
+      perform(get("/voteRecord/analytics").param("groupBy", "day"))
+              .andExpect(status().isBadRequest())
+              .andExpect(jsonPath("$.error", is("invalid groupBy")));
+    }
+
+    @Test
+    public void shouldGetErrorWhenExportFormatInvalid() throws Exception {
+      perform(get("/voteRecord/export").param("format", "xml"))
+              .andExpect(status().isBadRequest())
+              .andExpect(jsonPath("$.error", is("invalid format")));
+    }
+
+    @Test
+    public void shouldSummarizeVotesPerUserAndPerEvent() throws Exception {
+      UserDto other = userRepository.save(UserDto.builder().userName("other").age(19).email("b@b.com")
+              .gender("male").phone("18888888889").voteNum(10).build());
+      RsEventDto otherEvent = rsEventRepository.save(
+              RsEventDto.builder().user(userDto).eventName("other event").keyword("keyword").voteNum(0).build());
+      vote(userDto, rsEventDto, 2, "2020-05-20T12:00:00");
+      vote(userDto, rsEventDto, 3, "2020-05-21T12:00:00");
+      vote(userDto, otherEvent, 1, "2020-05-20T12:00:00");
+      vote(other, rsEventDto, 4, "2020-05-19T12:00:00");
+
+      perform(get("/voteRecord/summary").param("userId", String.valueOf(userDto.getId())))
+              .andExpect(jsonPath("$", hasSize(2)))
+              .andExpect(jsonPath("$[0].rsEventId", is(rsEventDto.getId())))
+              .andExpect(jsonPath("$[0].totalNum", is(5)))
+              .andExpect(jsonPath("$[0].lastVoteTime", is("2020-05-21T12:00:00")))
+              .andExpect(jsonPath("$[1].rsEventId", is(otherEvent.getId())))
+              .andExpect(jsonPath("$[1].totalNum", is(1)));
+
+      perform(get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEventDto.getId())))
+              .andExpect(jsonPath("$", hasSize(2)))
+              .andExpect(jsonPath("$[0].userId", is(userDto.getId())))
+              .andExpect(jsonPath("$[0].totalNum", is(5)))
+              .andExpect(jsonPath("$[1].userId", is(other.getId())))
+              .andExpect(jsonPath("$[1].totalNum", is(4)));
+
+      perform(get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEventDto.getId()))
+              .param("userId", String.valueOf(other.getId())))
+              .andExpect(jsonPath("$", hasSize(1)))
+              .andExpect(jsonPath("$[0].totalNum", is(4)));
+    }
+
+    @Test
+    public void shouldMergeConcurrentFirstVotesOfPairIntoOneSummary() throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        LocalDateTime time = LocalDateTime.of(2020, 5, 20, 12, 0).plusMinutes(i);
+        futures.add(executor.submit(() -> {
+          start.await();
+          voteSummaryService.record(userDto.getId(), rsEventDto.getId(), 1, time);
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      executor.shutdown();
+
+      VoteSummaryDto summary = voteSummaryService.find(userDto.getId(), rsEventDto.getId()).get();
+      assertEquals(8, summary.getTotalNum());
+      assertEquals(LocalDateTime.of(2020, 5, 20, 12, 7), summary.getLastVoteTime());
+    }
+
+    @Test
+    public void shouldDropSummariesWithDeletedUser() throws Exception {
+      UserDto other = userRepository.save(UserDto.builder().userName("other").age(19).email("b@b.com")
+              .gender("male").phone("18888888889").voteNum(10).build());
+      vote(userDto, rsEventDto, 2, "2020-05-20T12:00:00");
+      vote(other, rsEventDto, 4, "2020-05-19T12:00:00");
+
+      mockMvc.perform(delete("/user/{id}", userDto.getId())).andExpect(status().isOk());
+
+      assertEquals(0, voteSummaryRepository.count());
+    }
+
+    @Test
+    public void shouldDropArchivedVotesWithDeletedUser() throws Exception {
+      UserDto other = userRepository.save(UserDto.builder().userName("other").age(19).email("b@b.com")
+              .gender("male").phone("18888888889").voteNum(10).build());
+      RsEventDto otherEvent = rsEventRepository.save(
+              RsEventDto.builder().user(other).eventName("other event").keyword("keyword").voteNum(0).build());
+      LocalDateTime time = LocalDateTime.of(2020, 4, 1, 12, 0);
+      archivedVoteRepository.save(ArchivedVoteDto.builder().id(-1).userId(userDto.getId())
+              .rsEventId(otherEvent.getId()).num(1).localDateTime(time).build());
+      archivedVoteRepository.save(ArchivedVoteDto.builder().id(-2).userId(other.getId())
+              .rsEventId(rsEventDto.getId()).num(1).localDateTime(time).build());
+      archivedVoteRepository.save(ArchivedVoteDto.builder().id(-3).userId(other.getId())
+              .rsEventId(otherEvent.getId()).num(1).localDateTime(time).build());
+
+      mockMvc.perform(delete("/user/{id}", userDto.getId())).andExpect(status().isOk());
+
+      assertEquals(1, archivedVoteRepository.count());
+      assertTrue(archivedVoteRepository.existsById(-3));
+    }
+
+    @Test
+    public void shouldGetErrorWhenSummaryHasNoFilter() throws Exception {
+      perform(get("/voteRecord/summary"))
+              .andExpect(status().isBadRequest())
+              .andExpect(jsonPath("$.error", is("userId or rsEventId required")));
+    }
+
+  private void vote(UserDto user, RsEventDto rsEvent, int voteNum, String time) throws Exception {
+    perform(post("/rs/vote/{id}", rsEvent.getId())
+            .content(String.format("{\"userId\":%d,\"voteNum\":%d,\"time\":\"%s\"}", user.getId(), voteNum, time))
+            .contentType(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk());
+  }
+
+  private ResultActions perform(RequestBuilder request) throws Exception {
+    ResultActions resultActions = mockMvc.perform(request);
+    MvcResult mvcResult = resultActions.andReturn();
+    if (!mvcResult.getRequest().isAsyncStarted()) {
+      return resultActions;
+    }
+    return mockMvc.perform(asyncDispatch(mvcResult));
+  }
 }
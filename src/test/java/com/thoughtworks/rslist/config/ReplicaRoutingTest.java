@@ -0,0 +1,178 @@
+package com.thoughtworks.rslist.config;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.VoteSummaryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.servlet.http.Cookie;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "rs.datasource.replicas[0].url=" + ReplicaRoutingTest.REPLICA_URL,
+        "rs.datasource.replicas[0].username=sa",
+        "rs.datasource.replicas[0].password=",
+        "rs.datasource.replicas[0].driver-class-name=org.h2.Driver",
+        "rs.datasource.replica-lag=5s"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingTest {
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    @Autowired
+    VoteSummaryService voteSummaryService;
+    UserDto userDto;
+    RsEventDto rsEventDto;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tradeRepository.deleteAll();
+        voteRepository.deleteAll();
+        rsEventRepository.deleteAll();
+        userRepository.deleteAll();
+        userDto = userRepository.save(
+                UserDto.builder().userName("idolice").phone("18888888888").age(19).voteNum(10).build());
+        rsEventDto = rsEventRepository.save(
+                RsEventDto.builder().eventName("replicated event").keyword("keyword").user(userDto).build());
+        replicate();
+    }
+
+    // stands in for replication: copy the primary into the replica as it is right now
+    private void replicate() throws SQLException {
+        File snapshot = new File(System.getProperty("java.io.tmpdir"), "rs-replica-snapshot.sql");
+        try (Connection primary = DriverManager.getConnection(PRIMARY_URL, "sa", "");
+             Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement primaryStatement = primary.createStatement();
+             Statement replicaStatement = replica.createStatement()) {
+            primaryStatement.execute("SCRIPT TO '" + snapshot.getAbsolutePath() + "'");
+            replicaStatement.execute("DROP ALL OBJECTS");
+            replicaStatement.execute("RUNSCRIPT FROM '" + snapshot.getAbsolutePath() + "'");
+        }
+        snapshot.delete();
+    }
+
+    private int countRsEvents(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from rs_event")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    @Test
+    void shouldReadFromReplica() throws Exception {
+        voteSummaryService.record(userDto.getId(), rsEventDto.getId(), 1, LocalDateTime.now());
+
+        perform(get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEventDto.getId())))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    void shouldReadTaggedRankingFromPrimary() throws Exception {
+        rsEventRepository.save(
+                RsEventDto.builder().eventName("not yet replicated").keyword("keyword").user(userDto).build());
+
+        perform(get("/rs/list"))
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void shouldWriteToPrimary() throws Exception {
+        String jsonValue = "{\"eventName\":\"新的事件\",\"keyword\":\"经济\",\"userId\": " + userDto.getId() + "}";
+        perform(post("/rs/event").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        assertEquals(2, countRsEvents(PRIMARY_URL));
+        assertEquals(1, countRsEvents(REPLICA_URL));
+    }
+
+    @Test
+    void shouldReadOwnWritesFromPrimaryAfterVote() throws Exception {
+        String jsonValue = String.format("{\"userId\":%d,\"voteNum\":3}", userDto.getId());
+        Cookie lastWrite = perform(post("/rs/vote/{id}", rsEventDto.getId())
+                .content(jsonValue)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getCookie(ReadYourWritesInterceptor.COOKIE);
+        assertNotNull(lastWrite);
+
+        perform(get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEventDto.getId())).cookie(lastWrite))
+                .andExpect(jsonPath("$[0].totalNum", is(3)));
+        perform(get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEventDto.getId())))
+                .andExpect(jsonPath("$", hasSize(0)));
+        perform(get("/voteRecord")
+                .param("userId", String.valueOf(userDto.getId()))
+                .param("rsEventId", String.valueOf(rsEventDto.getId()))
+                .param("pageIndex", "1")
+                .cookie(lastWrite))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    void shouldReadFromReplicaOnceLagWindowPassed() throws Exception {
+        Cookie staleWrite = new Cookie(ReadYourWritesInterceptor.COOKIE,
+                String.valueOf(System.currentTimeMillis() - 10_000));
+        voteSummaryService.record(userDto.getId(), rsEventDto.getId(), 1, LocalDateTime.now());
+
+        perform(get("/voteRecord/summary").param("rsEventId", String.valueOf(rsEventDto.getId())).cookie(staleWrite))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    private ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions resultActions = mockMvc.perform(request);
+        MvcResult mvcResult = resultActions.andReturn();
+        if (!mvcResult.getRequest().isAsyncStarted()) {
+            return resultActions;
+        }
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+}
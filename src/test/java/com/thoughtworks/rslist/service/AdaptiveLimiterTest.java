@@ -0,0 +1,82 @@
+package com.thoughtworks.rslist.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveLimiterTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void shouldShedBeyondLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1L, limiter.metrics().get("shed"));
+
+        limiter.release(10 * MILLIS, false);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void shouldGrowWhileLatencyIsSteady() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 100);
+
+        saturate(limiter, 10 * MILLIS, 20);
+
+        assertTrue(limiter.getLimit() > 20);
+    }
+
+    @Test
+    void shouldNotGrowWhenMostlyIdle() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 100);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(10 * MILLIS, false);
+        }
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void shouldShrinkWhenLatencyRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(20, 2, 100);
+        saturate(limiter, 10 * MILLIS, 5);
+        int before = limiter.getLimit();
+
+        saturate(limiter, 100 * MILLIS, 5);
+
+        assertTrue(limiter.getLimit() < before / 2);
+    }
+
+    @Test
+    void shouldBackOffOnFailuresDownToMinimum() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(20, 4, 100);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.release(10 * MILLIS, true);
+        }
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    private static void saturate(AdaptiveLimiter limiter, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rttNanos, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.RsListApplication;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteAggregate;
+import com.thoughtworks.rslist.dto.ChangeLogDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.exception.BuyFailedException;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.repository.VoteSummaryRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// two nodes sharing one database; polling is left to the test so each step is deterministic
+class ChangeLogTest {
+    static ConfigurableApplicationContext nodeA;
+    static ConfigurableApplicationContext nodeB;
+
+    UserDto userDto;
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = start("create");
+        nodeB = start("none");
+    }
+
+    private static ConfigurableApplicationContext start(String ddlAuto) {
+        return new SpringApplicationBuilder(RsListApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:change-log;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                        "rs.change-log.poll-interval=3600000",
+                        "rs.change-log.settle=0s")
+                .run();
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        nodeA.getBean(TradeRepository.class).deleteAll();
+        nodeA.getBean(TradeRecordRepository.class).deleteAll();
+        nodeA.getBean(VoteSummaryRepository.class).deleteAll();
+        nodeA.getBean(VoteRepository.class).deleteAll();
+        nodeA.getBean(RsEventRepository.class).deleteAll();
+        nodeA.getBean(UserRepository.class).deleteAll();
+        nodeA.getBean(ChangeLog.class).poll();
+        nodeB.getBean(ChangeLog.class).poll();
+        userDto = nodeA.getBean(UserService.class).register(UserDto.builder().userName("idolice").age(19)
+                .email("a@b.com").gender("female").phone("18888888888").voteNum(10).build());
+    }
+
+    @Test
+    void shouldPatchOtherNodeWithAddedEvent() {
+        String etag = nodeB.getBean(RankingVersion.class).etag("");
+        RsEventDto rsEventDto = addEvent("cross node event");
+
+        assertEquals(0, nodeA.getBean(ChangeLog.class).poll());
+        assertEquals(2, nodeB.getBean(ChangeLog.class).poll());
+
+        assertTrue(nodeB.getBean(RsEventSearchIndex.class).search("cross node", 10).contains(rsEventDto.getId()));
+        assertTrue(nodeB.getBean(DuplicateEventIndex.class).findDuplicate("cross node event", "keyword").isPresent());
+        assertNotEquals(etag, nodeB.getBean(RankingVersion.class).etag(""));
+    }
+
+    @Test
+    void shouldInvalidateOtherNodeRankingOnVote() {
+        RsEventDto rsEventDto = addEvent("voted event");
+        nodeB.getBean(ChangeLog.class).poll();
+        String etag = nodeB.getBean(RankingVersion.class).etag("");
+
+        nodeA.getBean(RsService.class).vote(
+                Vote.builder().userId(userDto.getId()).rsEventId(rsEventDto.getId()).voteNum(2).build(),
+                rsEventDto.getId());
+
+        assertEquals(1, nodeB.getBean(ChangeLog.class).poll());
+        assertNotEquals(etag, nodeB.getBean(RankingVersion.class).etag(""));
+    }
+
+    @Test
+    void shouldJudgeBidsOnOtherNodeAgainstTradeTakenElsewhere() {
+        RsEventDto first = addEvent("first bid event");
+        RsEventDto second = addEvent("second bid event");
+        nodeA.getBean(RsService.class).buy(new Trade(100, 1), first.getId());
+
+        nodeB.getBean(ChangeLog.class).poll();
+
+        assertEquals(new TopBidIndex.Bid(100, first.getId()), nodeB.getBean(TopBidIndex.class).get(1));
+        assertThrows(BuyFailedException.class,
+                () -> nodeB.getBean(RsService.class).buy(new Trade(50, 1), second.getId()));
+    }
+
+    @Test
+    void shouldRemoveEventsOfDeletedUserOnOtherNode() {
+        RsEventDto rsEventDto = addEvent("soon deleted event");
+        nodeB.getBean(ChangeLog.class).poll();
+        assertTrue(nodeB.getBean(RsEventSearchIndex.class).search("soon deleted", 10).contains(rsEventDto.getId()));
+
+        nodeA.getBean(UserService.class).deleteUser(userDto.getId());
+
+        assertEquals(2, nodeB.getBean(ChangeLog.class).poll());
+        assertFalse(nodeB.getBean(RsEventSearchIndex.class).search("soon deleted", 10).contains(rsEventDto.getId()));
+        assertFalse(nodeB.getBean(DuplicateEventIndex.class)
+                .findDuplicate("soon deleted event", "keyword").isPresent());
+        assertFalse(nodeB.getBean(RsEventRepository.class).findById(rsEventDto.getId()).isPresent());
+    }
+
+    @Test
+    void shouldNotReplayVoteAlreadyLoadedByRebuild() {
+        RsEventDto rsEventDto = addEvent("rebuilt event");
+        nodeA.getBean(RsService.class).vote(
+                Vote.builder().userId(userDto.getId()).rsEventId(rsEventDto.getId()).voteNum(2).build(),
+                rsEventDto.getId());
+
+        nodeB.getBean(VoteColumnStore.class).rebuild();
+        nodeB.getBean(ChangeLog.class).poll();
+
+        assertEquals(Collections.singletonList(new VoteAggregate("female", 1, 2)), nodeB.getBean(VoteColumnStore.class)
+                .aggregate(VoteColumnStore.GroupBy.GENDER, null, rsEventDto.getId(), null, null, null));
+    }
+
+    @Test
+    void shouldDropVotesOfDeletedUserOnBothNodes() {
+        RsEventDto rsEventDto = addEvent("voted then deleted event");
+        nodeA.getBean(RsService.class).vote(
+                Vote.builder().userId(userDto.getId()).rsEventId(rsEventDto.getId()).voteNum(2).build(),
+                rsEventDto.getId());
+        nodeB.getBean(ChangeLog.class).poll();
+
+        nodeA.getBean(UserService.class).deleteUser(userDto.getId());
+        nodeB.getBean(ChangeLog.class).poll();
+
+        assertEquals(0, nodeA.getBean(VoteRepository.class).count());
+        for (ConfigurableApplicationContext node : new ConfigurableApplicationContext[]{nodeA, nodeB}) {
+            assertTrue(node.getBean(VoteColumnStore.class)
+                    .aggregate(VoteColumnStore.GroupBy.GENDER, null, rsEventDto.getId(), null, null, null).isEmpty());
+        }
+    }
+
+    @Test
+    void shouldDropVotesOfEventReplacedByBuyOnBothNodes() {
+        RsEventDto replaced = addEvent("outbid event");
+        RsEventDto winner = addEvent("winning bid event");
+        nodeA.getBean(RsService.class).vote(
+                Vote.builder().userId(userDto.getId()).rsEventId(replaced.getId()).voteNum(2).build(),
+                replaced.getId());
+        nodeA.getBean(RsService.class).buy(new Trade(100, 1), replaced.getId());
+        nodeB.getBean(ChangeLog.class).poll();
+
+        nodeA.getBean(RsService.class).buy(new Trade(200, 1), winner.getId());
+        nodeB.getBean(ChangeLog.class).poll();
+
+        for (ConfigurableApplicationContext node : new ConfigurableApplicationContext[]{nodeA, nodeB}) {
+            assertTrue(node.getBean(VoteColumnStore.class)
+                    .aggregate(VoteColumnStore.GroupBy.GENDER, null, replaced.getId(), null, null, null).isEmpty());
+        }
+    }
+
+    @Test
+    void shouldPublishRowThatCommitsBelowOneAlreadyRead() {
+        nodeB.getBean(ChangeLog.class).poll();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(nodeA.getBean(DataSource.class));
+        int id = jdbcTemplate.queryForObject("select next value for hibernate_sequence from system_range(1, 10) "
+                + "order by 1 desc limit 1", Integer.class);
+        insertChange(jdbcTemplate, id);
+        assertEquals(1, nodeB.getBean(ChangeLog.class).poll());
+
+        insertChange(jdbcTemplate, id - 5);
+        assertEquals(1, nodeB.getBean(ChangeLog.class).poll());
+        assertEquals(0, nodeB.getBean(ChangeLog.class).poll());
+    }
+
+    private static void insertChange(JdbcTemplate jdbcTemplate, int id) {
+        jdbcTemplate.update("insert into change_log (id, type, origin, user_id, created_at) values (?, ?, ?, ?, ?)",
+                id, ChangeLogDto.Type.USER_REGISTERED.name(), "elsewhere", id, LocalDateTime.now());
+    }
+
+    private RsEventDto addEvent(String eventName) {
+        return nodeA.getBean(RsService.class).addRsEvent(RsEventDto.builder()
+                .eventName(eventName).keyword("keyword").voteNum(0).user(userDto).build());
+    }
+}
@@ -0,0 +1,73 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class DuplicateEventIndexTest {
+    DuplicateEventIndex duplicateEventIndex;
+
+    @Mock
+    RsEventRepository rsEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        when(rsEventRepository.findAll()).thenReturn(Arrays.asList(
+                RsEventDto.builder().id(1).eventName("猪肉价格大幅上涨").keyword("经济").build(),
+                RsEventDto.builder().id(2).eventName("北京明天有暴雨").keyword("天气").build()));
+        duplicateEventIndex = new DuplicateEventIndex(rsEventRepository, 0.6);
+        duplicateEventIndex.rebuild();
+    }
+
+    @Test
+    void shouldFindSlightlyRenamedEvent() {
+        assertEquals(Optional.of(1), duplicateEventIndex.findDuplicate("猪肉价格大幅上涨!", "经济"));
+        assertEquals(Optional.of(1), duplicateEventIndex.findDuplicate("猪肉价格大幅上涨了", "经济"));
+        assertEquals(Optional.of(2), duplicateEventIndex.findDuplicate("北京明天有暴雨", "天气"));
+    }
+
+    @Test
+    void shouldNotFlagDifferentEvents() {
+        assertEquals(Optional.empty(), duplicateEventIndex.findDuplicate("上海明天晴", "天气"));
+        assertEquals(Optional.empty(), duplicateEventIndex.findDuplicate("牛肉价格下跌", "经济"));
+    }
+
+    @Test
+    void shouldForgetRemovedEvents() {
+        duplicateEventIndex.remove(1);
+
+        assertEquals(Optional.empty(), duplicateEventIndex.findDuplicate("猪肉价格大幅上涨", "经济"));
+    }
+
+    @Test
+    void shouldFindAddedEvents() {
+        duplicateEventIndex.add(RsEventDto.builder().id(3).eventName("新款手机发布").keyword("科技").build());
+
+        assertEquals(Optional.of(3), duplicateEventIndex.findDuplicate("新款手机发布会", "科技"));
+    }
+
+    @Test
+    void shouldLetOnlyOneOfTwoNearDuplicatesReserve() {
+        OptionalInt reservation = duplicateEventIndex.reserve("新款手机发布", "科技");
+
+        assertTrue(reservation.isPresent());
+        assertFalse(duplicateEventIndex.reserve("新款手机发布会", "科技").isPresent());
+        assertFalse(duplicateEventIndex.reserve("猪肉价格大幅上涨了", "经济").isPresent());
+
+        duplicateEventIndex.remove(reservation.getAsInt());
+        assertTrue(duplicateEventIndex.reserve("新款手机发布会", "科技").isPresent());
+    }
+}
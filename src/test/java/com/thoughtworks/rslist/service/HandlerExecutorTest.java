@@ -0,0 +1,79 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.config.ReplicaRoutingDataSource;
+import com.thoughtworks.rslist.exception.ExecutorBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HandlerExecutorTest {
+    HandlerExecutor readExecutor;
+    HandlerExecutor writeExecutor;
+    CountDownLatch release;
+
+    @BeforeEach
+    void setUp() {
+        readExecutor = new HandlerExecutor("read", 2, 4, null);
+        writeExecutor = new HandlerExecutor("write", 1, 1, null);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+        ReplicaRoutingDataSource.reset();
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFull() throws Exception {
+        CompletableFuture<Boolean> running = writeExecutor.submit(this::block);
+        CompletableFuture<Boolean> queued = writeExecutor.submit(this::block);
+        CompletableFuture<Boolean> rejected = writeExecutor.submit(this::block);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ExecutorBusyException);
+        assertEquals(1L, writeExecutor.metrics().get("rejected"));
+        assertEquals(1, writeExecutor.metrics().get("queueDepth"));
+
+        release.countDown();
+        assertTrue(running.get(1, TimeUnit.SECONDS));
+        assertTrue(queued.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldServeReadsWhileWritesAreStalled() throws Exception {
+        writeExecutor.submit(this::block);
+        writeExecutor.submit(this::block);
+
+        assertEquals("list", readExecutor.submit(() -> "list").get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldCarryReplicaChoiceToWorker() throws Exception {
+        ReplicaRoutingDataSource.useReplicas();
+        assertTrue(readExecutor.submit(ReplicaRoutingDataSource::isUsingReplicas).get(1, TimeUnit.SECONDS));
+
+        ReplicaRoutingDataSource.reset();
+        assertFalse(readExecutor.submit(ReplicaRoutingDataSource::isUsingReplicas).get(1, TimeUnit.SECONDS));
+    }
+
+    private boolean block() {
+        try {
+            return release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.thoughtworks.rslist.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotnessCalculatorTest {
+    HotnessCalculator hotnessCalculator;
+    LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        hotnessCalculator = new HotnessCalculator(Duration.ofHours(1));
+        now = LocalDateTime.of(2020, 6, 1, 12, 0);
+    }
+
+    @Test
+    void shouldHalveScoreAfterOneHalfLife() {
+        Double score = hotnessCalculator.addVote(null, 8, now.minusHours(1));
+
+        assertEquals(4, hotnessCalculator.decayedScore(score, now), 1e-9);
+    }
+
+    @Test
+    void shouldSumDecayedVotes() {
+        Double score = hotnessCalculator.addVote(null, 4, now.minusHours(2));
+        score = hotnessCalculator.addVote(score, 3, now);
+
+        assertEquals(4, hotnessCalculator.decayedScore(score, now), 1e-9);
+    }
+
+    @Test
+    void shouldRankRecentVotesAboveOlderOnes() {
+        Double old = hotnessCalculator.addVote(null, 10, now.minusHours(5));
+        Double recent = hotnessCalculator.addVote(null, 2, now);
+
+        assertTrue(recent > old);
+    }
+
+    @Test
+    void shouldIgnoreEmptyVote() {
+        assertNull(hotnessCalculator.addVote(null, 0, now));
+        assertEquals(0, hotnessCalculator.decayedScore(null, now));
+    }
+
+    @Test
+    void shouldRejectNonPositiveHalfLife() {
+        assertThrows(IllegalArgumentException.class, () -> new HotnessCalculator(Duration.ZERO));
+    }
+}
@@ -0,0 +1,89 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class KeywordLeaderboardsTest {
+    KeywordLeaderboards keywordLeaderboards;
+
+    @Mock
+    RsEventRepository rsEventRepository;
+    @Mock
+    TradeRepository tradeRepository;
+
+    UserDto userDto = UserDto.builder().id(1).build();
+    RsEventDto pork = RsEventDto.builder().id(1).eventName("猪肉").keyword("经济").voteNum(5).user(userDto).build();
+    RsEventDto beef = RsEventDto.builder().id(2).eventName("牛肉").keyword("经济").voteNum(3).user(userDto).build();
+    RsEventDto rice = RsEventDto.builder().id(3).eventName("大米").keyword("经济").voteNum(1).user(userDto).build();
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        when(rsEventRepository.findAllByKeyword("经济")).thenReturn(Arrays.asList(pork, beef, rice));
+        when(tradeRepository.findAllByRsEventDtoKeyword("经济")).thenReturn(Collections.singletonList(
+                TradeDto.builder().rank(2).amount(10).rsEventDto(rice).build()));
+        keywordLeaderboards = new KeywordLeaderboards(rsEventRepository, tradeRepository, Duration.ofMinutes(10), 2);
+    }
+
+    @Test
+    void shouldLoadOnlyTheAskedKeywordOnce() {
+        assertEquals(Arrays.asList("猪肉", "大米", "牛肉"), names(keywordLeaderboards.list("经济", RsEventRanking.order(null))));
+        keywordLeaderboards.list("经济", RsEventRanking.order(null));
+
+        verify(rsEventRepository, times(1)).findAllByKeyword("经济");
+        verify(rsEventRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldPatchLoadedPartitionAndIgnoreUnloadedOnes() {
+        keywordLeaderboards.list("经济", RsEventRanking.order(null));
+        beef.setVoteNum(9);
+        keywordLeaderboards.upsert(beef);
+        keywordLeaderboards.upsert(RsEventDto.builder().id(4).eventName("世界杯").keyword("体育").user(userDto).build());
+        keywordLeaderboards.remove(pork);
+
+        assertEquals(Arrays.asList("牛肉", "大米"), names(keywordLeaderboards.list("经济", RsEventRanking.order(null))));
+        assertFalse(keywordLeaderboards.isLoaded("体育"));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyReadPartitionsBeyondLimit() {
+        keywordLeaderboards.list("经济", RsEventRanking.order(null));
+        keywordLeaderboards.list("体育", RsEventRanking.order(null));
+        keywordLeaderboards.list("天气", RsEventRanking.order(null));
+
+        keywordLeaderboards.evictCold();
+
+        assertFalse(keywordLeaderboards.isLoaded("经济"));
+        assertTrue(keywordLeaderboards.isLoaded("体育"));
+        assertTrue(keywordLeaderboards.isLoaded("天气"));
+        verify(rsEventRepository, times(3)).findAllByKeyword(anyString());
+    }
+
+    private static List<String> names(List<RsEvent> rsEvents) {
+        return rsEvents.stream().map(RsEvent::getEventName).collect(Collectors.toList());
+    }
+}
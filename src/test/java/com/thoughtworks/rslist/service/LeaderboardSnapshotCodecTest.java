@@ -0,0 +1,59 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.service.LeaderboardSnapshotCodec.Entry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardSnapshotCodecTest {
+    Entry pork = new Entry(1, "猪肉价格", "经济", 1, 9, 3);
+    Entry beef = new Entry(2, "牛肉价格", "经济", 1, 5, 2);
+    Entry rice = new Entry(3, "大米价格", "经济", 2, 1, 1);
+
+    @Test
+    void shouldRoundTripKeyframe() {
+        List<Entry> entries = Arrays.asList(pork, beef, rice);
+
+        assertEquals(entries, LeaderboardSnapshotCodec.decodeKeyframe(LeaderboardSnapshotCodec.encodeKeyframe(entries)));
+        assertEquals(Collections.emptyList(),
+                LeaderboardSnapshotCodec.decodeKeyframe(LeaderboardSnapshotCodec.encodeKeyframe(Collections.emptyList())));
+    }
+
+    @Test
+    void shouldApplyVotesAdditionsRemovalsAndMoves() {
+        List<Entry> previous = Arrays.asList(pork, beef, rice);
+        Entry votedRice = new Entry(3, "大米价格", "经济", 2, 12, 2);
+        Entry wheat = new Entry(4, "小麦价格", "粮食", 3, 0, 0);
+        List<Entry> current = Arrays.asList(votedRice, pork, wheat);
+
+        byte[] delta = LeaderboardSnapshotCodec.encodeDelta(previous, current);
+
+        assertEquals(current, LeaderboardSnapshotCodec.applyDelta(previous, delta));
+        assertNull(LeaderboardSnapshotCodec.encodeDelta(current, new ArrayList<>(current)));
+    }
+
+    @Test
+    void shouldKeepDeltaOfOneMoveSmallOnLongList() {
+        List<Entry> previous = new ArrayList<>();
+        for (int id = 1; id <= 10000; id++) {
+            previous.add(new Entry(id, "事件" + id, "关键词" + id % 50, id % 100, 20000 - id, id % 7));
+        }
+        List<Entry> current = new ArrayList<>(previous);
+        Entry voted = current.remove(5000);
+        current.add(0, new Entry(voted.getId(), voted.getEventName(), voted.getKeyword(), voted.getUserId(),
+                30000, voted.getUniqueVoters() + 1));
+
+        byte[] delta = LeaderboardSnapshotCodec.encodeDelta(previous, current);
+
+        assertEquals(current, LeaderboardSnapshotCodec.applyDelta(previous, delta));
+        assertTrue(delta.length < 64, "delta took " + delta.length + " bytes");
+        assertTrue(LeaderboardSnapshotCodec.encodeKeyframe(current).length > 1000 * delta.length);
+    }
+}
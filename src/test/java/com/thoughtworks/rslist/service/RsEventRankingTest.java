@@ -0,0 +1,52 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RsEventRankingTest {
+    RsEventDto pork = RsEventDto.builder().id(1).eventName("猪肉").voteNum(3).hotScore(1.0).build();
+    RsEventDto beef = RsEventDto.builder().id(200).eventName("牛肉").voteNum(5).hotScore(0.5).build();
+    RsEventDto rice = RsEventDto.builder().id(3000).eventName("大米").voteNum(3).build();
+    RsEventDto fish = RsEventDto.builder().id(40000).eventName("鱼").voteNum(-1).hotScore(2.0).build();
+    List<RsEventDto> rsEventDtos = Arrays.asList(pork, beef, rice, fish);
+
+    @Test
+    void shouldRankByVotesKeepingTiesInOrder() {
+        assertEquals(Arrays.asList("牛肉", "猪肉", "大米", "鱼"),
+                names(RsEventRanking.merge(rsEventDtos, Collections.emptyMap(), RsEventRanking.order(null))));
+        assertEquals(Arrays.asList("鱼", "猪肉", "牛肉", "大米"),
+                names(RsEventRanking.merge(rsEventDtos, Collections.emptyMap(), RsEventRanking.order("hot"))));
+    }
+
+    @Test
+    void shouldPutPaidEventsAtTheirRanks() {
+        List<TradeDto> tradeDtos = Arrays.asList(
+                TradeDto.builder().rank(1).rsEventDto(fish).build(),
+                TradeDto.builder().rank(3).rsEventDto(rice).build());
+        assertEquals(Arrays.asList("鱼", "牛肉", "大米", "猪肉"),
+                names(RsEventRanking.mergeTrades(rsEventDtos, tradeDtos, RsEventRanking.order(null))));
+    }
+
+    @Test
+    void shouldRankEventsPaidPastTheEndLikeTheRest() {
+        Map<Integer, Integer> paidRanks = new HashMap<>();
+        paidRanks.put(beef.getId(), 9);
+        paidRanks.put(fish.getId(), 2);
+        assertEquals(Arrays.asList("牛肉", "鱼", "猪肉", "大米"),
+                names(RsEventRanking.merge(rsEventDtos, paidRanks, RsEventRanking.order(null))));
+    }
+
+    private static List<String> names(List<RsEventDto> rsEventDtos) {
+        return rsEventDtos.stream().map(RsEventDto::getEventName).collect(Collectors.toList());
+    }
+}
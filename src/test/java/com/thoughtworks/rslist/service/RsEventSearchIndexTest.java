@@ -0,0 +1,70 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class RsEventSearchIndexTest {
+    RsEventSearchIndex rsEventSearchIndex;
+
+    @Mock
+    RsEventRepository rsEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        when(rsEventRepository.findAll()).thenReturn(Arrays.asList(
+                RsEventDto.builder().id(1).eventName("猪肉涨价了").keyword("经济").voteNum(1).build(),
+                RsEventDto.builder().id(2).eventName("今日股市").keyword("经济").voteNum(5).build(),
+                RsEventDto.builder().id(3).eventName("Pork prices rise").keyword("economy").voteNum(0).build()));
+        rsEventSearchIndex = new RsEventSearchIndex(rsEventRepository);
+        rsEventSearchIndex.rebuild();
+    }
+
+    @Test
+    void shouldRankNameMatchAboveKeywordMatch() {
+        rsEventSearchIndex.add(RsEventDto.builder().id(4).eventName("经济新闻").keyword("其他").voteNum(0).build());
+
+        assertEquals(Arrays.asList(4, 2, 1), rsEventSearchIndex.search("经济", 10));
+    }
+
+    @Test
+    void shouldRankByVoteNumWhenMatchIsEqual() {
+        assertEquals(Arrays.asList(2, 1), rsEventSearchIndex.search("经济", 10));
+    }
+
+    @Test
+    void shouldFollowVoteNumUpdates() {
+        rsEventSearchIndex.updateVoteNum(1, 10);
+
+        assertEquals(Arrays.asList(1, 2), rsEventSearchIndex.search("经济", 10));
+    }
+
+    @Test
+    void shouldMatchCaseInsensitivePartialWords() {
+        assertEquals(Collections.singletonList(3), rsEventSearchIndex.search("PORK", 10));
+        assertEquals(Collections.singletonList(3), rsEventSearchIndex.search("econ", 10));
+    }
+
+    @Test
+    void shouldNotFindRemovedEvents() {
+        rsEventSearchIndex.remove(1);
+
+        assertEquals(Collections.emptyList(), rsEventSearchIndex.search("猪肉", 10));
+        assertEquals(Collections.singletonList(2), rsEventSearchIndex.search("经济", 10));
+    }
+
+    @Test
+    void shouldLimitResults() {
+        assertEquals(Collections.singletonList(2), rsEventSearchIndex.search("经济", 1));
+    }
+}
@@ -0,0 +1,205 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeRecordDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.dto.VoteDto;
+import com.thoughtworks.rslist.exception.BuyFailedException;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
+import com.thoughtworks.rslist.repository.TradeRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Votes and bids from many threads at once on a few users, events and ranks, then checks what no
+ * interleaving may break: every vote spent is on exactly one event and in exactly one vote row, no
+ * balance goes negative, and each rank's trade is its highest accepted bid. Bids go to their own
+ * events, so the voted events are never outbid off the list, and balances and bid events grow with
+ * the operation count so most operations succeed. Sizes and the seed can be raised through system
+ * properties, e.g. {@code -Drs.stress.threads=64 -Drs.stress.operations=100000}, to measure throughput
+ * after changing the write path.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "rs.change-log.poll-interval=3600000",
+        "rs.snapshot.interval=3600000"})
+class RsServiceStressTest {
+    private static final Logger log = LoggerFactory.getLogger(RsServiceStressTest.class);
+    private static final int USERS = 8;
+    private static final int EVENTS = 16;
+    private static final int RANKS = 4;
+    // a vote outcome when the balance ran out, a bid outcome when its event was outbid off the list
+    private static final Set<String> EXPECTED_FAILURES = new HashSet<>(Arrays.asList(
+            "failed RuntimeException", "failed NoSuchElementException"));
+
+    @Autowired
+    RsService rsService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    RsEventRepository rsEventRepository;
+    @Autowired
+    VoteRepository voteRepository;
+    @Autowired
+    TradeRepository tradeRepository;
+    @Autowired
+    TradeRecordRepository tradeRecordRepository;
+    @Autowired
+    TopBidIndex topBidIndex;
+
+    @Test
+    void shouldKeepVoteAndBuyInvariantsUnderConcurrency() throws InterruptedException {
+        int threads = Integer.getInteger("rs.stress.threads", 16);
+        int operations = Integer.getInteger("rs.stress.operations", 3000);
+        long seed = Long.getLong("rs.stress.seed", System.nanoTime());
+        // four in five operations are votes of two on average, spread evenly over the users
+        int balance = 2 * operations / USERS;
+        List<UserDto> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(UserDto.builder().userName("stress" + i).age(20).gender("male")
+                    .email("a@b.com").phone("18888888888").voteNum(balance).build()));
+        }
+        List<RsEventDto> rsEvents = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            rsEvents.add(rsEventRepository.save(RsEventDto.builder().eventName("stress event " + i)
+                    .keyword("stress").voteNum(0).user(users.get(i % USERS)).build()));
+        }
+        // each bid that takes a rank from another event removes that event
+        List<RsEventDto> bidEvents = new ArrayList<>();
+        for (int i = 0; i < Math.max(EVENTS, operations / 10); i++) {
+            bidEvents.add(rsEventRepository.save(RsEventDto.builder().eventName("stress bid event " + i)
+                    .keyword("stress").voteNum(0).user(users.get(i % USERS)).build()));
+        }
+
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed + t);
+            int share = operations / threads + (t < operations % threads ? 1 : 0);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < share; i++) {
+                    String outcome;
+                    int userId = users.get(random.nextInt(USERS)).getId();
+                    try {
+                        if (random.nextInt(5) > 0) {
+                            int rsEventId = rsEvents.get(random.nextInt(EVENTS)).getId();
+                            rsService.vote(Vote.builder().userId(userId).rsEventId(rsEventId)
+                                    .voteNum(1 + random.nextInt(3)).build(), rsEventId);
+                            outcome = "vote";
+                        } else {
+                            int rsEventId = bidEvents.get(random.nextInt(bidEvents.size())).getId();
+                            // bids rise over the run, so later ones tend to win
+                            rsService.buy(Trade.builder().amount(1 + i * 10 + random.nextInt(1000))
+                                    .rank(1 + random.nextInt(RANKS)).userId(userId).build(), rsEventId);
+                            outcome = "buy";
+                        }
+                    } catch (BuyFailedException | PessimisticLockingFailureException e) {
+                        outcome = "buy outbid";
+                    } catch (RuntimeException e) {
+                        outcome = "failed " + e.getClass().getSimpleName();
+                    }
+                    outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+                }
+            });
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long votes = count(outcomes, "vote");
+        long buys = count(outcomes, "buy");
+        log.info("{} operations on {} threads in {}s, seed {}: {} succeeded ({} ops/s), {} refused or failed "
+                        + "({} ops/s): {}", operations, threads, String.format("%.2f", seconds), seed,
+                votes + buys, String.format("%.0f", (votes + buys) / seconds), operations - votes - buys,
+                String.format("%.0f", (operations - votes - buys) / seconds), outcomes);
+        Set<String> unexpected = new HashSet<>(outcomes.keySet());
+        unexpected.removeIf(outcome -> !outcome.startsWith("failed ") || EXPECTED_FAILURES.contains(outcome));
+        assertEquals(Collections.emptySet(), unexpected, "unexpected failures, seed " + seed);
+        assertTrue(votes >= operations / 2, "only " + votes + " votes succeeded, seed " + seed);
+        assertTrue(buys >= operations / 100, "only " + buys + " buys succeeded, seed " + seed);
+
+        Map<Integer, Integer> votedByUser = new HashMap<>();
+        Map<Integer, Integer> votedOnEvent = new HashMap<>();
+        for (VoteDto voteDto : voteRepository.findAll()) {
+            votedByUser.merge(voteDto.getUser().getId(), voteDto.getNum(), Integer::sum);
+            votedOnEvent.merge(voteDto.getRsEvent().getId(), voteDto.getNum(), Integer::sum);
+        }
+        for (UserDto userDto : userRepository.findAll()) {
+            assertTrue(userDto.getVoteNum() >= 0, "user " + userDto.getId() + " overspent, seed " + seed);
+            assertEquals(balance - userDto.getVoteNum(), votedByUser.getOrDefault(userDto.getId(), 0),
+                    "votes spent by user " + userDto.getId() + ", seed " + seed);
+        }
+        // events with votes can't be deleted, so every vote row still has its event
+        List<RsEventDto> remaining = rsEventRepository.findAll();
+        for (RsEventDto rsEventDto : remaining) {
+            assertEquals(votedOnEvent.getOrDefault(rsEventDto.getId(), 0), rsEventDto.getVoteNum(),
+                    "votes on event " + rsEventDto.getId() + ", seed " + seed);
+        }
+        assertEquals(votedOnEvent.values().stream().mapToInt(Integer::intValue).sum(),
+                remaining.stream().mapToInt(RsEventDto::getVoteNum).sum(), "votes on removed events, seed " + seed);
+
+        // a bid only loses its rank to a higher one or with its event, so the holder is the highest
+        // accepted bid whose event is still there
+        Map<Integer, Integer> highestAccepted = new HashMap<>();
+        for (TradeRecordDto record : tradeRecordRepository.findAll()) {
+            if (record.isAccepted() && rsEventRepository.existsById(record.getRsEventId())) {
+                highestAccepted.merge(record.getRank(), record.getAmount(), Math::max);
+            }
+        }
+        for (int rank = 1; rank <= RANKS; rank++) {
+            Optional<TradeDto> trade = tradeRepository.findByRank(rank);
+            if (!highestAccepted.containsKey(rank)) {
+                assertFalse(trade.isPresent(), "rank " + rank + " has a trade without a bid, seed " + seed);
+                continue;
+            }
+            assertTrue(trade.isPresent(), "rank " + rank + " lost its trade, seed " + seed);
+            assertEquals(highestAccepted.get(rank), trade.get().getAmount(),
+                    "rank " + rank + " is not held by its highest bid, seed " + seed);
+            assertEquals(new TopBidIndex.Bid(trade.get().getAmount(), trade.get().getRsEventDto().getId()),
+                    topBidIndex.get(rank));
+        }
+    }
+
+    private static long count(Map<String, LongAdder> outcomes, String outcome) {
+        LongAdder adder = outcomes.get(outcome);
+        return adder == null ? 0 : adder.sum();
+    }
+}
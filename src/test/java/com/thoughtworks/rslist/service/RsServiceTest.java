@@ -4,10 +4,13 @@ import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.TradeDto;
+import com.thoughtworks.rslist.dto.TradeRecordDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.dto.VoteDto;
 import com.thoughtworks.rslist.exception.BuyFailedException;
+import com.thoughtworks.rslist.repository.ArchivedVoteRepository;
 import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.TradeRecordRepository;
 import com.thoughtworks.rslist.repository.TradeRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
@@ -15,11 +18,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -34,15 +43,33 @@ class RsServiceTest {
     @Mock
     VoteRepository voteRepository;
     @Mock
+    ArchivedVoteRepository archivedVoteRepository;
+    @Mock
     TradeRepository tradeRepository;
+    @Mock
+    TradeRecordRepository tradeRecordRepository;
+    @Mock
+    UniqueVoterCounter uniqueVoterCounter;
+    @Mock
+    VoteSummaryService voteSummaryService;
+    @Mock
+    VoteColumnStore voteColumnStore;
+    @Mock
+    ChangeLog changeLog;
 
+    TopBidIndex topBidIndex;
     LocalDateTime localDateTime;
     Vote vote;
 
     @BeforeEach
     void setUp() {
         initMocks(this);
-        rsService = new RsService(rsEventRepository, userRepository, voteRepository, tradeRepository);
+        topBidIndex = new TopBidIndex(tradeRecordRepository, tradeRepository);
+        rsService = new RsService(rsEventRepository, userRepository, voteRepository, archivedVoteRepository,
+                tradeRepository, tradeRecordRepository, topBidIndex,
+                new HotnessCalculator(Duration.ofHours(6)),
+                new HeavyHitterTracker(16, Duration.ofMinutes(10), 10),
+                uniqueVoterCounter, voteSummaryService, voteColumnStore, changeLog);
         localDateTime = LocalDateTime.now();
         vote = Vote.builder().voteNum(2).rsEventId(1).time(localDateTime).userId(1).build();
     }
@@ -70,8 +97,9 @@ class RsServiceTest {
                         .user(userDto)
                         .build();
 
-        when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
+        when(rsEventRepository.findForUpdateById(anyInt())).thenReturn(Optional.of(rsEventDto));
         when(userRepository.findById(anyInt())).thenReturn(Optional.of(userDto));
+        when(userRepository.spendVotes(1, 2)).thenReturn(1);
         // when
         rsService.vote(vote, 1);
         // then
@@ -83,14 +111,15 @@ class RsServiceTest {
                                 .user(userDto)
                                 .rsEvent(rsEventDto)
                                 .build());
-        verify(userRepository).save(userDto);
+        verify(userRepository).spendVotes(1, 2);
         verify(rsEventRepository).save(rsEventDto);
+        verify(voteSummaryService).record(2, 1, 2, localDateTime);
     }
 
     @Test
     void shouldThrowExceptionWhenUserNotExist() {
         // given
-        when(rsEventRepository.findById(anyInt())).thenReturn(Optional.empty());
+        when(rsEventRepository.findForUpdateById(anyInt())).thenReturn(Optional.empty());
         when(userRepository.findById(anyInt())).thenReturn(Optional.empty());
         //when&then
         assertThrows(
@@ -109,8 +138,7 @@ class RsServiceTest {
         RsEventDto rsEventDto = RsEventDto.builder()
                 .id(rsEventId)
                 .build();
-        when(rsEventRepository.findById(rsEventId)).thenReturn(Optional.of(rsEventDto));
-        when(tradeRepository.findByRank(rank)).thenReturn(Optional.empty());
+        when(rsEventRepository.findForUpdateById(rsEventId)).thenReturn(Optional.of(rsEventDto));
         Trade trade = new Trade(amount, rank);
 
         //when
@@ -123,22 +151,23 @@ class RsServiceTest {
                         .rank(rank)
                         .rsEventDto(rsEventDto)
                         .build());
+        verify(tradeRecordRepository).save(argThat(TradeRecordDto::isAccepted));
+        assertEquals(new TopBidIndex.Bid(amount, rsEventId), topBidIndex.get(rank));
     }
 
     @Test
     void shouldThrowBuyFailedExceptionWhenAmountLess() {
         //given
         int rank = 1;
-        TradeDto tradeDto = TradeDto.builder()
-                .amount(100)
-                .rank(rank)
-                .rsEventDto(new RsEventDto())
-                .build();
-        when(tradeRepository.findByRank(rank)).thenReturn(Optional.of(tradeDto));
-        when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(new RsEventDto()));
+        topBidIndex.claim(rank, new TopBidIndex.Bid(100, 2));
+        when(rsEventRepository.findForUpdateById(anyInt())).thenReturn(Optional.of(new RsEventDto()));
         Trade trade = new Trade(10, rank);
         //when & then
         assertThrows(BuyFailedException.class, () -> rsService.buy(trade, 1));
+        verify(tradeRepository, never()).findForUpdateByRank(anyInt());
+        verify(tradeRepository, never()).save(any());
+        verify(tradeRecordRepository).save(argThat(tradeRecordDto -> !tradeRecordDto.isAccepted()));
+        assertEquals(new TopBidIndex.Bid(100, 2), topBidIndex.get(rank));
     }
 
     @Test
@@ -146,24 +175,44 @@ class RsServiceTest {
         //given
         int rank = 1;
         RsEventDto oldRsEvent = RsEventDto.builder().id(1).build();
-        TradeDto tradeDto = TradeDto.builder()
-                .amount(10)
-                .rank(rank)
-                .rsEventDto(oldRsEvent)
-                .build();
+        topBidIndex.claim(rank, new TopBidIndex.Bid(10, oldRsEvent.getId()));
         RsEventDto newRsEvent = RsEventDto.builder().id(2).build();
-        when(tradeRepository.findByRank(rank)).thenReturn(Optional.of(tradeDto));
-        when(rsEventRepository.findById(newRsEvent.getId())).thenReturn(Optional.of(newRsEvent));
+        when(rsEventRepository.findForUpdateById(oldRsEvent.getId())).thenReturn(Optional.of(oldRsEvent));
+        when(rsEventRepository.findForUpdateById(newRsEvent.getId())).thenReturn(Optional.of(newRsEvent));
+        when(tradeRepository.findForUpdateByRank(rank)).thenReturn(
+                Optional.of(TradeDto.builder().amount(10).rank(rank).rsEventDto(oldRsEvent).build()));
         Trade trade = new Trade(100, rank);
         //when
         rsService.buy(trade, newRsEvent.getId());
         //then
+        verify(voteRepository).deleteByRsEventIdIn(Collections.singleton(oldRsEvent.getId()));
         verify(rsEventRepository).delete(oldRsEvent);
+        verify(archivedVoteRepository).deleteByRsEventIdIn(Collections.singleton(oldRsEvent.getId()));
+        verify(voteSummaryService).deleteByRsEvents(Collections.singleton(oldRsEvent.getId()));
         verify(tradeRepository)
                 .save(TradeDto.builder()
                         .amount(100)
                         .rank(rank)
                         .rsEventDto(newRsEvent)
                         .build());
+        verify(tradeRecordRepository).save(argThat(tradeRecordDto ->
+                tradeRecordDto.isAccepted() && tradeRecordDto.getReplacedRsEventId() == oldRsEvent.getId()));
+    }
+
+    @Test
+    void shouldKeepUncommittedCompetitorWhenNoTradeHoldsRank() {
+        //given
+        int rank = 1;
+        topBidIndex.claim(rank, new TopBidIndex.Bid(10, 1));
+        RsEventDto newRsEvent = RsEventDto.builder().id(2).build();
+        when(rsEventRepository.findForUpdateById(newRsEvent.getId())).thenReturn(Optional.of(newRsEvent));
+        when(tradeRepository.findForUpdateByRank(rank)).thenReturn(Optional.empty());
+        //when
+        rsService.buy(new Trade(100, rank), newRsEvent.getId());
+        //then
+        verify(rsEventRepository).findForUpdateById(1);
+        verify(rsEventRepository, never()).delete(any());
+        verify(tradeRecordRepository).save(argThat(tradeRecordDto ->
+                tradeRecordDto.isAccepted() && tradeRecordDto.getReplacedRsEventId() == null));
     }
 }
@@ -0,0 +1,88 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void shouldAllowBurstThenRefillAtRate() {
+        UserRateLimiter rateLimiter = new UserRateLimiter(2, 3, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.acquire(1, 0));
+        }
+        assertEquals(SECOND / 2, rateLimiter.acquire(1, 0));
+        assertEquals(0, rateLimiter.acquire(1, SECOND / 2));
+        assertTrue(rateLimiter.acquire(1, SECOND / 2) > 0);
+    }
+
+    @Test
+    void shouldLimitEachKeySeparately() {
+        UserRateLimiter rateLimiter = new UserRateLimiter(1, 1, 100);
+
+        assertEquals(0, rateLimiter.acquire(1, 0));
+        assertTrue(rateLimiter.acquire(1, 0) > 0);
+        assertEquals(0, rateLimiter.acquire(2, 0));
+        assertEquals(0, rateLimiter.acquire("127.0.0.1", 0));
+    }
+
+    @Test
+    void shouldStayBoundedAndKeepBusyBuckets() {
+        UserRateLimiter rateLimiter = new UserRateLimiter(1, 1, 4);
+        rateLimiter.acquire(0, 0);
+        for (int key = 1; key < 100; key++) {
+            rateLimiter.acquire(key, 10 * SECOND);
+        }
+        assertTrue(rateLimiter.size() <= 4);
+
+        rateLimiter = new UserRateLimiter(1, 1, 4);
+        rateLimiter.acquire(1, 0);
+        rateLimiter.acquire(2, 0);
+        rateLimiter.acquire(3, 0);
+        rateLimiter.acquire(4, 2 * SECOND);
+        rateLimiter.acquire(5, 2 * SECOND);
+        assertTrue(rateLimiter.acquire(4, 2 * SECOND) > 0);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedBucketsInsteadOfRefusingNewKeys() {
+        UserRateLimiter rateLimiter = new UserRateLimiter(1, 1, 2);
+        rateLimiter.acquire(1, 0);
+        rateLimiter.acquire(2, SECOND / 2);
+
+        assertEquals(0, rateLimiter.acquire(3, SECOND / 2));
+        assertTrue(rateLimiter.acquire(2, SECOND / 2) > 0);
+        assertEquals(2, rateLimiter.size());
+    }
+
+    @Test
+    void shouldSweepOncePerQuarterOfMaxKeys() {
+        UserRateLimiter rateLimiter = new UserRateLimiter(1, 1, 8);
+        for (int key = 0; key < 8; key++) {
+            rateLimiter.acquire(key, key);
+        }
+
+        rateLimiter.acquire(8, 8);
+        assertEquals(7, rateLimiter.size());
+        assertTrue(rateLimiter.acquire(2, 8) > 0);
+        assertEquals(0, rateLimiter.acquire(0, 8));
+        assertEquals(8, rateLimiter.size());
+    }
+
+    @Test
+    void shouldReportRetryAfterInWholeSeconds() {
+        UserRateLimiter rateLimiter = new UserRateLimiter(0.25, 1, 100);
+        rateLimiter.check(1);
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class, () -> rateLimiter.check(1));
+        assertEquals(4, e.getRetryAfterSeconds());
+    }
+}
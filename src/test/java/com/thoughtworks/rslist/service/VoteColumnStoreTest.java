@@ -0,0 +1,112 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.VoteAggregate;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class VoteColumnStoreTest {
+    VoteColumnStore voteColumnStore;
+
+    @Mock
+    DataSource dataSource;
+    @Mock
+    PlatformTransactionManager transactionManager;
+    @Mock
+    ChangeLog changeLog;
+
+    LocalDateTime noon = LocalDateTime.of(2020, 5, 20, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        initMocks(this);
+        voteColumnStore = new VoteColumnStore(dataSource, transactionManager, changeLog, 4, 1000);
+    }
+
+    @Test
+    void shouldGroupVotesByGenderAcrossChunks() {
+        int rows = 3 * VoteColumnStore.CHUNK_SIZE + 7;
+        for (int i = 0; i < rows; i++) {
+            int userId = i % 3;
+            voteColumnStore.append(userId, userId == 2 ? null : userId == 0 ? "female" : "male", 20 + userId * 10,
+                    i % 5, 1 + i % 2, noon);
+        }
+
+        List<VoteAggregate> aggregates =
+                voteColumnStore.aggregate(VoteColumnStore.GroupBy.GENDER, null, null, null, null, null);
+
+        assertEquals(rows, voteColumnStore.size());
+        assertEquals(Arrays.asList(
+                new VoteAggregate("unknown", count(rows, 2), sum(rows, 2)),
+                new VoteAggregate("female", count(rows, 0), sum(rows, 0)),
+                new VoteAggregate("male", count(rows, 1), sum(rows, 1))), aggregates);
+    }
+
+    @Test
+    void shouldGroupFilteredVotesByHourAndAgeBand() {
+        voteColumnStore.append(1, "female", 19, 1, 2, noon);
+        voteColumnStore.append(1, "female", 19, 1, 3, noon.plusMinutes(59));
+        voteColumnStore.append(2, "male", 34, 1, 4, noon.plusHours(2));
+        voteColumnStore.append(2, "male", 34, 2, 5, noon.plusHours(2));
+        voteColumnStore.append(3, "male", 45, 1, 6, noon.plusDays(1));
+
+        assertEquals(Arrays.asList(
+                new VoteAggregate("2020-05-20T12:00", 2, 5),
+                new VoteAggregate("2020-05-20T14:00", 1, 4)),
+                voteColumnStore.aggregate(VoteColumnStore.GroupBy.HOUR, null, 1, null, noon, noon.plusHours(3)));
+        assertEquals(Arrays.asList(
+                new VoteAggregate("30-39", 2, 9),
+                new VoteAggregate("40-49", 1, 6)),
+                voteColumnStore.aggregate(VoteColumnStore.GroupBy.AGE_BAND, null, null, "male", null, null));
+        assertTrue(voteColumnStore.aggregate(VoteColumnStore.GroupBy.AGE_BAND, null, null, "other", null, null)
+                .isEmpty());
+        assertEquals(1, voteColumnStore.aggregate(VoteColumnStore.GroupBy.GENDER, 3, null, null, null, null).size());
+    }
+
+    @Test
+    void shouldKeepSparseUserIdsAndDropVotesOfRemovedUser() {
+        voteColumnStore.append(2_000_000_000, "female", 19, 1, 2, noon);
+        voteColumnStore.append(7, "male", 34, 1, 3, noon);
+        voteColumnStore.append(7, "male", 34, 2, 4, noon);
+        voteColumnStore.append(8, "male", 45, 2, 5, noon);
+
+        assertEquals(Arrays.asList(new VoteAggregate("female", 1, 2)),
+                voteColumnStore.aggregate(VoteColumnStore.GroupBy.GENDER, 2_000_000_000, null, null, null, null));
+
+        voteColumnStore.removeVotes(7, Arrays.asList(1));
+
+        assertEquals(Arrays.asList(new VoteAggregate("male", 1, 5)),
+                voteColumnStore.aggregate(VoteColumnStore.GroupBy.GENDER, null, null, null, null, null));
+        assertTrue(voteColumnStore.aggregate(VoteColumnStore.GroupBy.GENDER, 7, null, null, null, null).isEmpty());
+    }
+
+    @Test
+    void shouldRejectHourlyGroupingOverTooLongRange() {
+        assertThrows(RequestNotValidException.class, () -> voteColumnStore.aggregate(
+                VoteColumnStore.GroupBy.HOUR, null, null, null, noon, noon.plusYears(2)));
+    }
+
+    private long count(int rows, int userId) {
+        return (rows - userId + 2) / 3;
+    }
+
+    private long sum(int rows, int userId) {
+        long sum = 0;
+        for (int i = userId; i < rows; i += 3) {
+            sum += 1 + i % 2;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,75 @@
+package com.thoughtworks.rslist.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    // three standard errors at precision 10
+    private static final double ERROR_BOUND = 3 * 1.04 / Math.sqrt(1024);
+
+    @Test
+    void shouldCountSmallCardinalitiesExactly() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for (int i = 0; i < 20; i++) {
+            hyperLogLog.add(i);
+            hyperLogLog.add(i);
+        }
+
+        assertEquals(20, hyperLogLog.estimate());
+    }
+
+    @Test
+    void shouldEstimateWithinErrorBound() {
+        for (int cardinality : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog hyperLogLog = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                hyperLogLog.add(i * 31 + 7);
+            }
+
+            double error = Math.abs(hyperLogLog.estimate() - cardinality) / (double) cardinality;
+            assertTrue(error < ERROR_BOUND, "cardinality " + cardinality + " error " + error);
+        }
+    }
+
+    @Test
+    void shouldSerializeSparseSketchCompactly() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for (int i = 0; i < 10; i++) {
+            hyperLogLog.add(i);
+        }
+
+        byte[] bytes = hyperLogLog.toBytes();
+
+        assertEquals(1 + 2 * 10, bytes.length);
+        assertEquals(10, HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    void shouldSerializeDenseSketchWithinOneKilobyte() {
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            hyperLogLog.add(i);
+        }
+
+        byte[] bytes = hyperLogLog.toBytes();
+
+        assertEquals(1 + 1024, bytes.length);
+        assertEquals(hyperLogLog.estimate(), HyperLogLog.fromBytes(bytes).estimate());
+    }
+
+    @Test
+    void shouldMergeSketches() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 30; i++) {
+            left.add(i);
+            right.add(i + 15);
+        }
+
+        left.merge(right);
+
+        assertEquals(45, left.estimate());
+    }
+}
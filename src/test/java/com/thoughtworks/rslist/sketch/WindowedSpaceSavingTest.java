@@ -0,0 +1,55 @@
+package com.thoughtworks.rslist.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowedSpaceSavingTest {
+
+    @Test
+    void shouldKeepHeavyHittersWhenKeysExceedCapacity() {
+        SpaceSaving spaceSaving = new SpaceSaving(8);
+        for (int i = 0; i < 1000; i++) {
+            spaceSaving.add(1, 2);
+            spaceSaving.add(100 + i, 1);
+            spaceSaving.add(2, 1);
+        }
+
+        List<Counter> top = spaceSaving.top(2);
+
+        assertEquals(1, top.get(0).getKey());
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 2000);
+        assertTrue(top.get(0).getCount() >= 2000);
+        assertEquals(2, top.get(1).getKey());
+    }
+
+    @Test
+    void shouldMergeBucketsWithinWindow() {
+        WindowedSpaceSaving windowed = new WindowedSpaceSaving(8, 1000, 10);
+        windowed.add(1, 5, 0);
+        windowed.add(1, 5, 500);
+        windowed.add(2, 3, 900);
+
+        List<Counter> top = windowed.top(10, 950);
+
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).getKey());
+        assertEquals(10, top.get(0).getCount());
+        assertEquals(3, top.get(1).getCount());
+    }
+
+    @Test
+    void shouldForgetCountsOutsideWindow() {
+        WindowedSpaceSaving windowed = new WindowedSpaceSaving(8, 1000, 10);
+        windowed.add(1, 5, 0);
+        windowed.add(2, 1, 1500);
+
+        List<Counter> top = windowed.top(10, 1500);
+
+        assertEquals(1, top.size());
+        assertEquals(2, top.get(0).getKey());
+    }
+}